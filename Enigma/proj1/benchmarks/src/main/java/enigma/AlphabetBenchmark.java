@@ -0,0 +1,60 @@
+package enigma;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of Alphabet.toInt, in nanoseconds per character.
+ *  @author Won Shil Park
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AlphabetBenchmark {
+
+    /** Number of characters converted per invocation. */
+    static final int CHARS = 1024;
+
+    /** Size of the alphabet. */
+    @Param({ "26", "256", "1024" })
+    public int size;
+
+    /** Make the alphabet and characters to convert. */
+    @Setup
+    public void setUp() {
+        Random random = new Random(Fixtures.SEED);
+        _alphabet = Fixtures.alphabet(size);
+        _chars = Fixtures.message(_alphabet, CHARS, random).toCharArray();
+    }
+
+    /** Convert CHARS characters to indices. */
+    @Benchmark
+    @OperationsPerInvocation(CHARS)
+    public int toInt() {
+        int sum = 0;
+        for (char c : _chars) {
+            sum += _alphabet.toInt(c);
+        }
+        return sum;
+    }
+
+    /** The alphabet. */
+    private Alphabet _alphabet;
+    /** Characters to convert. */
+    private char[] _chars;
+}
@@ -0,0 +1,93 @@
+package enigma;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of converting many short messages, each with its own
+ *  machine: one Machine.convert per message, a BatchMachine, and a
+ *  VectorBatchMachine.  A thousand machines on a large alphabet need more
+ *  than the default heap.
+ *  @author Won Shil Park
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "--add-modules=jdk.incubator.vector",
+                                    "-Xmx4g" })
+@State(Scope.Thread)
+public class BatchBenchmark {
+
+    /** Size of the alphabet. */
+    @Param({ "26", "256" })
+    public int size;
+
+    /** Number of messages. */
+    @Param({ "64", "1024" })
+    public int messages;
+
+    /** Length of each message. */
+    @Param({ "16", "256" })
+    public int length;
+
+    /** Make random machines and messages. */
+    @Setup
+    public void setUp() {
+        Random random = new Random(Fixtures.SEED);
+        Alphabet alpha = Fixtures.alphabet(size);
+        _machines = new Machine[messages];
+        _messages = new String[messages];
+        for (int k = 0; k < messages; k += 1) {
+            _machines[k] = Fixtures.machine(alpha, random);
+            _messages[k] = Fixtures.message(alpha, length, random);
+        }
+        _scalar = new BatchMachine(_machines);
+        _vector = BatchMachine.of(_machines);
+        if (!BatchMachine.vectorized()) {
+            throw new IllegalStateException("no vector engine");
+        }
+    }
+
+    /** Convert each message with its own machine. */
+    @Benchmark
+    public String[] machines() {
+        String[] result = new String[messages];
+        for (int k = 0; k < messages; k += 1) {
+            result[k] = _machines[k].convert(_messages[k]);
+        }
+        return result;
+    }
+
+    /** Convert the messages with a BatchMachine. */
+    @Benchmark
+    public String[] scalarBatch() {
+        return _scalar.convert(_messages);
+    }
+
+    /** Convert the messages with a VectorBatchMachine. */
+    @Benchmark
+    public String[] vectorBatch() {
+        return _vector.convert(_messages);
+    }
+
+    /** One machine per message, whose rotors advance throughout. */
+    private Machine[] _machines;
+    /** The messages. */
+    private String[] _messages;
+    /** A batch of copies of _machines, converting one lane at a time. */
+    private BatchMachine _scalar;
+    /** A batch of copies of _machines, converting with vectors. */
+    private BatchMachine _vector;
+}
@@ -0,0 +1,420 @@
+package enigma;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Random;
+
+import static enigma.EnigmaException.*;
+
+/** Generator of synthetic configurations and inputs for Main, for
+ *  end-to-end measurements (see Throughput).  A configuration has a
+ *  catalog of many rotors on an alphabet of any even size; an input has
+ *  many setting lines, each followed by a block of message lines of
+ *  varied length, some of them very long, in which some characters are
+ *  in lower case and some are not in the alphabet at all, and so are
+ *  passed through.  The same options and seed always give the same
+ *  files.
+ *  @author Won Shil Park
+ */
+public final class Corpus {
+
+    /** Write a configuration and an input as specified by ARGS.
+     *  ARGS[0] names the configuration file to write, and ARGS[1] the
+     *  input file.  Exits with code 1 after an error.
+     *  Options are arguments starting with "--", and may appear anywhere:
+     *    --alphabet=N    Use an alphabet of N characters, which must be
+     *                    even: the first N upper-case letters if N <= 26,
+     *                    and otherwise N CJK ideographs, starting at
+     *                    U+4E00 (default: 26).
+     *    --rotors=N      Offer N moving rotors, and a tenth as many fixed
+     *                    rotors and reflectors (default: 100).
+     *    --slots=N       Configure N rotor slots (default: 5).
+     *    --pawls=N       Configure N pawls (default: 3).
+     *    --plugs=N       Give each setting line N plugboard pairs
+     *                    (default: 10).
+     *    --size=N        Write N bytes of input, or a little more;
+     *                    N may end in k, m, or g (default: 16m).
+     *    --line=N        Make message lines 1 to 2N characters long
+     *                    (default: 64).
+     *    --block=N       Follow each setting line with 1 to 2N message
+     *                    lines (default: 20).
+     *    --long=N        Make every K-th message line N characters long,
+     *                    or none if N is 0 (default: 1m).
+     *    --long-every=K  See --long (default: 10000).
+     *    --pass=P        Make about P percent of the characters of
+     *                    messages pass-through characters: blanks, digits,
+     *                    and punctuation (default: 10).
+     *    --seed=N        Seed for all random choices (default: 61). */
+    public static void main(String... args) {
+        try {
+            new Corpus(args).write();
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** A generator as specified by ARGS (see main). */
+    private Corpus(String[] args) {
+        ArrayList<String> files = new ArrayList<>();
+        int size = UPPER.length();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                files.add(arg);
+                continue;
+            }
+            int eq = arg.indexOf('=');
+            String name = eq == -1 ? arg : arg.substring(0, eq);
+            String value = eq == -1 ? null : arg.substring(eq + 1);
+            if (value == null) {
+                throw error("missing value in option %s", arg);
+            }
+            switch (name) {
+            case "--alphabet":
+                size = intValue(arg, value, 2);
+                break;
+            case "--rotors":
+                _rotors = intValue(arg, value, 1);
+                break;
+            case "--slots":
+                _slots = intValue(arg, value, 2);
+                break;
+            case "--pawls":
+                _pawls = intValue(arg, value, 1);
+                break;
+            case "--plugs":
+                _plugs = intValue(arg, value, 0);
+                break;
+            case "--size":
+                _size = optionValue(arg, value, 1, Long.MAX_VALUE);
+                break;
+            case "--line":
+                _line = intValue(arg, value, 1);
+                break;
+            case "--block":
+                _block = intValue(arg, value, 1);
+                break;
+            case "--long":
+                _long = intValue(arg, value, 0);
+                break;
+            case "--long-every":
+                _longEvery = intValue(arg, value, 1);
+                break;
+            case "--pass":
+                _pass = intValue(arg, value, 0);
+                if (_pass > 100) {
+                    throw error("bad value in option %s", arg);
+                }
+                break;
+            case "--seed":
+                _random = new Random(intValue(arg, value, 0));
+                break;
+            default:
+                throw error("unknown option %s", arg);
+            }
+        }
+        if (files.size() != 2) {
+            throw error("need a configuration file and an input file");
+        }
+        if (size % 2 != 0 || size > CJK_LAST - CJK_FIRST + 1) {
+            throw error("alphabet size must be even and at most %d",
+                        CJK_LAST - CJK_FIRST + 1);
+        }
+        if (_pawls >= _slots || _pawls > _rotors) {
+            throw error("need fewer pawls than slots, and enough rotors");
+        }
+        _plugs = Math.min(_plugs, size / 2);
+        _configName = files.get(0);
+        _inputName = files.get(1);
+        _chars = new char[size];
+        for (int k = 0; k < size; k += 1) {
+            _chars[k] = size <= UPPER.length() ? UPPER.charAt(k)
+                : (char) (CJK_FIRST + k);
+        }
+        _order = Fixtures.shuffled(size, _random);
+        _moving = _rotors;
+        _fixed = Math.max(_slots - _pawls - 1, _rotors / FEWER);
+        _reflectors = Math.max(1, _rotors / FEWER);
+    }
+
+    /** Return VALUE, the value given in command-line option OPTION, as an
+     *  int of at least MIN (see optionValue). */
+    private static int intValue(String option, String value, int min) {
+        return (int) optionValue(option, value, min, Integer.MAX_VALUE);
+    }
+
+    /** Return VALUE, the value given in command-line option OPTION, as a
+     *  number from MIN to MAX, optionally followed by k, m, or g for
+     *  multiples of 2**10, 2**20, or 2**30. */
+    private static long optionValue(String option, String value, int min,
+                                    long max) {
+        int shift = 0;
+        String digits = value.toLowerCase();
+        if (digits.endsWith("k")) {
+            shift = 10;
+        } else if (digits.endsWith("m")) {
+            shift = 20;
+        } else if (digits.endsWith("g")) {
+            shift = 30;
+        }
+        if (shift > 0) {
+            digits = digits.substring(0, digits.length() - 1);
+        }
+        try {
+            long result = Long.parseLong(digits);
+            if (result >= min && result <= (max >> shift)) {
+                return result << shift;
+            }
+        } catch (NumberFormatException excp) {
+            /* Fall through to the error below. */
+        }
+        throw error("bad value in option %s", option);
+    }
+
+    /** Write the configuration and the input, and report their sizes on
+     *  the standard output. */
+    private void write() {
+        try {
+            try (Writer out = writer(_configName)) {
+                writeConfig(out);
+            }
+            try (Writer out = writer(_inputName)) {
+                writeInput(out);
+            }
+        } catch (IOException excp) {
+            throw error("could not write: %s", excp.getMessage());
+        }
+        System.out.printf("%s: %d rotors%n%s: %d bytes, %d setting lines,"
+                          + " %d messages%n",
+                          _configName, _moving + _fixed + _reflectors,
+                          _inputName, _written, _settings, _messages);
+    }
+
+    /** Return a UTF-8 writer to the file named NAME. */
+    private static Writer writer(String name) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(
+                                      Files.newOutputStream(Paths.get(name)),
+                                      StandardCharsets.UTF_8),
+                                  BUFFER_SIZE);
+    }
+
+    /** Write my configuration to OUT: the reflectors, fixed rotors, and
+     *  moving rotors, named R1, R2, ..., F1, ..., and M1, ..., with their
+     *  cycles broken into continuation lines. */
+    private void writeConfig(Writer out) throws IOException {
+        out.write(_chars);
+        out.write(String.format("%n %d %d%n", _slots, _pawls));
+        for (int k = 1; k <= _reflectors; k += 1) {
+            out.write(" R" + k + " R");
+            writePairs(out, _chars.length / 2, true);
+        }
+        for (int k = 1; k <= _fixed; k += 1) {
+            out.write(" F" + k + " N");
+            writeCycles(out);
+        }
+        for (int k = 1; k <= _moving; k += 1) {
+            out.write(" M" + k + " M");
+            int notches = 1 + _random.nextInt(Math.min(MAX_NOTCHES,
+                                                       _chars.length));
+            shuffle(notches);
+            for (int i = 0; i < notches; i += 1) {
+                out.write(_chars[_order[i]]);
+            }
+            writeCycles(out);
+        }
+    }
+
+    /** Write the cycles of a random permutation of my alphabet, and end
+     *  the line. */
+    private void writeCycles(Writer out) throws IOException {
+        shuffle(_chars.length);
+        int column = CONFIG_WIDTH;
+        out.write(" (");
+        for (int k = 0; k < _chars.length; k += 1) {
+            if (k > 0 && _random.nextInt(CYCLE_BREAK) == 0) {
+                out.write(')');
+                if (column <= 0) {
+                    out.write(String.format("%n  "));
+                    column = CONFIG_WIDTH;
+                }
+                out.write('(');
+            }
+            out.write(_chars[_order[k]]);
+            column -= 1;
+        }
+        out.write(String.format(")%n"));
+    }
+
+    /** Write N random pairs of characters of my alphabet as cycles,
+     *  followed by the end of a line if CONFIG, in which case long lists
+     *  are broken into continuation lines.  Return the length of the
+     *  cycles in UTF-8. */
+    private long writePairs(Writer out, int n, boolean config)
+        throws IOException {
+        shuffle(2 * n);
+        int column = CONFIG_WIDTH;
+        long length = 0;
+        for (int k = 0; k < n; k += 1) {
+            if (config && column <= 0) {
+                out.write(String.format("%n "));
+                column = CONFIG_WIDTH;
+            }
+            out.write(' ');
+            out.write('(');
+            out.write(_chars[_order[2 * k]]);
+            out.write(_chars[_order[2 * k + 1]]);
+            out.write(')');
+            column -= PAIR_WIDTH;
+            length += PAIR_WIDTH - 2 + utf8Length(_chars[_order[2 * k]])
+                + utf8Length(_chars[_order[2 * k + 1]]);
+        }
+        if (config) {
+            out.write(String.format("%n"));
+        }
+        return length;
+    }
+
+    /** Write my input to OUT: setting lines, each followed by a block of
+     *  message lines, until at least _size bytes are written. */
+    private void writeInput(Writer out) throws IOException {
+        char[] line = new char[Math.max(2 * _line, _long)];
+        String[] names = new String[_slots];
+        while (_written < _size) {
+            names[0] = "R" + (1 + _random.nextInt(_reflectors));
+            int fixed = _slots - _pawls - 1;
+            pick(names, 1, fixed, "F", _fixed);
+            pick(names, 1 + fixed, _pawls, "M", _moving);
+            StringBuilder setting = new StringBuilder("*");
+            for (String name : names) {
+                setting.append(' ').append(name);
+            }
+            setting.append(' ');
+            for (int i = 1; i < _slots; i += 1) {
+                setting.append(_chars[_random.nextInt(_chars.length)]);
+            }
+            String text = setting.toString();
+            out.write(text);
+            _written += text.getBytes(StandardCharsets.UTF_8).length
+                + writePairs(out, _plugs, false) + 1;
+            out.write('\n');
+            _settings += 1;
+
+            for (int n = 1 + _random.nextInt(2 * _block); n > 0; n -= 1) {
+                _messages += 1;
+                int length = _long > 0 && _messages % _longEvery == 0
+                    ? _long : 1 + _random.nextInt(2 * _line);
+                for (int k = 0; k < length; k += 1) {
+                    line[k] = randomChar();
+                }
+                out.write(line, 0, length);
+                out.write('\n');
+                _written += utf8Length(line, length) + 1;
+            }
+        }
+    }
+
+    /** Store in NAMES[START .. START+N-1] the names of N different rotors
+     *  chosen at random from PREFIX1 to PREFIX<TOTAL>. */
+    private void pick(String[] names, int start, int n, String prefix,
+                      int total) {
+        for (int i = start; i < start + n; i += 1) {
+            String name;
+            boolean used;
+            do {
+                name = prefix + (1 + _random.nextInt(total));
+                used = false;
+                for (int j = start; j < i; j += 1) {
+                    used |= names[j].equals(name);
+                }
+            } while (used);
+            names[i] = name;
+        }
+    }
+
+    /** Return a random character of a message: a pass-through character
+     *  with probability _pass percent, and otherwise a character of my
+     *  alphabet, in lower case one time in four when it has one. */
+    private char randomChar() {
+        if (_random.nextInt(100) < _pass) {
+            return PASS.charAt(_random.nextInt(PASS.length()));
+        }
+        char c = _chars[_random.nextInt(_chars.length)];
+        return (_random.nextInt(4) == 0) ? Character.toLowerCase(c) : c;
+    }
+
+    /** Move N different random indices of my alphabet to the front of
+     *  _order. */
+    private void shuffle(int n) {
+        for (int k = 0; k < n; k += 1) {
+            int j = k + _random.nextInt(_order.length - k);
+            int t = _order[k];
+            _order[k] = _order[j];
+            _order[j] = t;
+        }
+    }
+
+    /** Return the length in UTF-8 of the first N characters of CHARS, none
+     *  of which is a surrogate. */
+    private static long utf8Length(char[] chars, int n) {
+        long result = 0;
+        for (int k = 0; k < n; k += 1) {
+            result += utf8Length(chars[k]);
+        }
+        return result;
+    }
+
+    /** Return the length in UTF-8 of C, which is not a surrogate. */
+    private static int utf8Length(char c) {
+        return c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+    }
+
+    /** The upper-case letters. */
+    private static final String UPPER = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    /** First and last characters of alphabets larger than UPPER. */
+    private static final char CJK_FIRST = '\u4e00', CJK_LAST = '\u9fff';
+    /** Characters that are in no alphabet I generate. */
+    private static final String PASS = " 0123456789.,;:!?-'\"";
+    /** There are this many times fewer fixed rotors and reflectors than
+     *  moving rotors. */
+    private static final int FEWER = 10;
+    /** Largest number of notches on a moving rotor. */
+    private static final int MAX_NOTCHES = 3;
+    /** A random permutation starts a new cycle after about one character
+     *  in this many. */
+    private static final int CYCLE_BREAK = 8;
+    /** Approximate number of characters of cycles per configuration
+     *  line. */
+    private static final int CONFIG_WIDTH = 64;
+    /** Characters in " (XY)". */
+    private static final int PAIR_WIDTH = 5;
+    /** Size of output buffers, in characters. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Source of all random choices. */
+    private Random _random = new Random(Fixtures.SEED);
+    /** The characters of my alphabet. */
+    private final char[] _chars;
+    /** A permutation of the indices of _chars, shuffled in part for each
+     *  random choice of distinct characters. */
+    private final int[] _order;
+    /** Names of the files to write. */
+    private final String _configName, _inputName;
+    /** Numbers of moving rotors, fixed rotors, and reflectors. */
+    private final int _moving, _fixed, _reflectors;
+    /** Options (see main). */
+    private int _rotors = 100, _slots = 5, _pawls = 3, _plugs = 10,
+        _line = 64, _block = 20, _long = 1 << 20, _pass = 10;
+    /** Options (see main). */
+    private long _size = 16 << 20, _longEvery = 10000;
+    /** Bytes of input written so far. */
+    private long _written;
+    /** Setting lines and message lines written so far. */
+    private long _settings, _messages;
+}
@@ -0,0 +1,128 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/** Alphabets, permutations, and machines of a given size, made at random
+ *  for the benchmarks.
+ *  @author Won Shil Park
+ */
+final class Fixtures {
+
+    /** Seed used by the benchmarks. */
+    static final long SEED = 61;
+
+    /** Not instantiable. */
+    private Fixtures() {
+    }
+
+    /** Return an alphabet of SIZE characters: the upper-case letters if
+     *  SIZE is 26, and otherwise SIZE consecutive characters starting at
+     *  U+0100, none of which are blanks or parentheses. */
+    static Alphabet alphabet(int size) {
+        if (size == UPPER_STRING.length()) {
+            return new Alphabet(UPPER_STRING);
+        }
+        StringBuilder chars = new StringBuilder();
+        for (int k = 0; k < size; k += 1) {
+            chars.append((char) (FIRST_CHAR + k));
+        }
+        return new Alphabet(chars.toString());
+    }
+
+    /** Return the cycles of a random permutation of ALPHA, using
+     *  RANDOM. */
+    static String cycles(Alphabet alpha, Random random) {
+        int[] order = shuffled(alpha.size(), random);
+        StringBuilder result = new StringBuilder("(");
+        for (int k = 0; k < order.length; k += 1) {
+            if (k > 0 && random.nextInt(CYCLE_BREAK) == 0) {
+                result.append(")(");
+            }
+            result.appendCodePoint(alpha.toCodePoint(order[k]));
+        }
+        return result.append(')').toString();
+    }
+
+    /** Return the cycles of a random permutation of ALPHA, whose size
+     *  must be even, that swaps the characters in PAIRS pairs, or every
+     *  character if PAIRS is negative, using RANDOM. */
+    static String pairs(Alphabet alpha, int pairs, Random random) {
+        int[] order = shuffled(alpha.size(), random);
+        if (pairs < 0) {
+            pairs = order.length / 2;
+        }
+        StringBuilder result = new StringBuilder();
+        for (int k = 0; k < pairs; k += 1) {
+            result.append('(')
+                .appendCodePoint(alpha.toCodePoint(order[2 * k]))
+                .appendCodePoint(alpha.toCodePoint(order[2 * k + 1]))
+                .append(')');
+        }
+        return result.toString();
+    }
+
+    /** Return a 5-slot, 3-pawl machine on ALPHA with random rotors
+     *  inserted and a plugboard of ten random pairs, made using RANDOM.
+     *  Each moving rotor has one notch. */
+    static Machine machine(Alphabet alpha, Random random) {
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("R",
+                       new Permutation(pairs(alpha, -1, random), alpha)));
+        rotors.add(new FixedRotor("F",
+                       new Permutation(cycles(alpha, random), alpha)));
+        String[] moving = { "I", "II", "III" };
+        for (String name : moving) {
+            String notch = Character.toString(
+                alpha.toCodePoint(random.nextInt(alpha.size())));
+            rotors.add(new MovingRotor(name,
+                           new Permutation(cycles(alpha, random), alpha),
+                           notch));
+        }
+        Machine m = new Machine(alpha, 5, 3, rotors);
+        m.insertRotors(new String[] { "R", "F", "I", "II", "III" });
+        int[] setting = new int[4];
+        for (int i = 0; i < setting.length; i += 1) {
+            setting[i] = random.nextInt(alpha.size());
+        }
+        m.setRotors(setting);
+        m.setPlugboard(new Permutation(pairs(alpha, PLUGS, random), alpha));
+        return m;
+    }
+
+    /** Return a random message of LENGTH characters from ALPHA, using
+     *  RANDOM. */
+    static String message(Alphabet alpha, int length, Random random) {
+        StringBuilder result = new StringBuilder();
+        for (int k = 0; k < length; k += 1) {
+            result.appendCodePoint(alpha.toCodePoint(
+                                       random.nextInt(alpha.size())));
+        }
+        return result.toString();
+    }
+
+    /** Return the numbers 0 .. N-1 in a random order, using RANDOM. */
+    static int[] shuffled(int n, Random random) {
+        int[] result = new int[n];
+        for (int k = 0; k < n; k += 1) {
+            result[k] = k;
+        }
+        for (int k = n - 1; k > 0; k -= 1) {
+            int j = random.nextInt(k + 1);
+            int t = result[k];
+            result[k] = result[j];
+            result[j] = t;
+        }
+        return result;
+    }
+
+    /** The upper-case letters. */
+    private static final String UPPER_STRING = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    /** First character of alphabets other than UPPER_STRING. */
+    private static final char FIRST_CHAR = '\u0100';
+    /** A random permutation starts a new cycle after about one character
+     *  in this many. */
+    private static final int CYCLE_BREAK = 8;
+    /** Number of plugboard pairs. */
+    private static final int PLUGS = 10;
+}
@@ -0,0 +1,66 @@
+package enigma;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of Machine.convert on single characters, for several sizes
+ *  of alphabet.  The machines have five slots, three moving rotors, and
+ *  ten plugboard pairs.
+ *  @author Won Shil Park
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MachineBenchmark {
+
+    /** Number of characters converted per invocation. */
+    static final int CHARS = 1024;
+
+    /** Size of the alphabet. */
+    @Param({ "26", "256", "1024" })
+    public int size;
+
+    /** Make a random machine and input. */
+    @Setup
+    public void setUp() {
+        Random random = new Random(Fixtures.SEED);
+        Alphabet alpha = Fixtures.alphabet(size);
+        _machine = Fixtures.machine(alpha, random);
+        _chars = new int[CHARS];
+        for (int k = 0; k < CHARS; k += 1) {
+            _chars[k] = random.nextInt(size);
+        }
+    }
+
+    /** Convert CHARS characters, one at a time, as indices. */
+    @Benchmark
+    @OperationsPerInvocation(CHARS)
+    public int convertInt() {
+        int sum = 0;
+        for (int c : _chars) {
+            sum += _machine.convert(c);
+        }
+        return sum;
+    }
+
+    /** The machine, whose rotors advance throughout. */
+    private Machine _machine;
+    /** Indices of the characters to convert. */
+    private int[] _chars;
+}
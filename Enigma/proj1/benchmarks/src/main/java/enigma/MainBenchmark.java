@@ -0,0 +1,88 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** End-to-end benchmark of Main: reading testing/correct/default.conf,
+ *  then converting a file of message lines under one setting line and
+ *  writing the result to a file.  The testing directory is found at the
+ *  path given by the system property enigma.testing (default: "testing",
+ *  relative to the directory in which the benchmarks are run).
+ *  @author Won Shil Park
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class MainBenchmark {
+
+    /** Number of message lines. */
+    @Param({ "10", "10000" })
+    public int lines;
+
+    /** Characters per message line. */
+    static final int LINE_LENGTH = 64;
+
+    /** Write the input file, and find the configuration. */
+    @Setup
+    public void setUp() throws IOException {
+        Path testing = Paths.get(System.getProperty("enigma.testing",
+                                                    "testing"));
+        _config = testing.resolve("correct").resolve("default.conf");
+        if (!Files.isReadable(_config)) {
+            throw new IOException("cannot read " + _config
+                                  + "; set -Denigma.testing");
+        }
+        _input = Files.createTempFile("enigma-bench", ".in");
+        _output = Files.createTempFile("enigma-bench", ".out");
+        Random random = new Random(Fixtures.SEED);
+        Alphabet alpha = new Alphabet();
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(
+                                                   _input))) {
+            out.println("* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)");
+            for (int k = 0; k < lines; k += 1) {
+                out.println(Fixtures.message(alpha, LINE_LENGTH, random));
+            }
+        }
+    }
+
+    /** Remove the input and output files. */
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(_input);
+        Files.deleteIfExists(_output);
+    }
+
+    /** Run Main on the configuration and input. */
+    @Benchmark
+    public void main() {
+        Main.main(_config.toString(), _input.toString(), _output.toString());
+    }
+
+    /** The configuration file. */
+    private Path _config;
+    /** The input file. */
+    private Path _input;
+    /** The output file. */
+    private Path _output;
+}
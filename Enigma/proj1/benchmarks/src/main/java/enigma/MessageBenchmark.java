@@ -0,0 +1,57 @@
+package enigma;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of Machine.convert on messages of several lengths, for
+ *  several sizes of alphabet, as in MachineBenchmark.
+ *  @author Won Shil Park
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MessageBenchmark {
+
+    /** Size of the alphabet. */
+    @Param({ "26", "256", "1024" })
+    public int size;
+
+    /** Length of the message. */
+    @Param({ "16", "1024", "65536" })
+    public int length;
+
+    /** Make a random machine and message. */
+    @Setup
+    public void setUp() {
+        Random random = new Random(Fixtures.SEED);
+        Alphabet alpha = Fixtures.alphabet(size);
+        _machine = Fixtures.machine(alpha, random);
+        _message = Fixtures.message(alpha, length, random);
+    }
+
+    /** Convert a message of LENGTH characters. */
+    @Benchmark
+    public String convertString() {
+        return _machine.convert(_message);
+    }
+
+    /** The machine, whose rotors advance throughout. */
+    private Machine _machine;
+    /** The message. */
+    private String _message;
+}
@@ -0,0 +1,93 @@
+package enigma;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of Permutation.permute and invert, and of
+ *  Rotor.convertForward, in nanoseconds per character.
+ *  @author Won Shil Park
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PermutationBenchmark {
+
+    /** Number of characters converted per invocation. */
+    static final int CHARS = 1024;
+
+    /** Size of the alphabet. */
+    @Param({ "26", "256", "1024" })
+    public int size;
+
+    /** Make a random permutation, a rotor using it at a random setting,
+     *  and characters to convert. */
+    @Setup
+    public void setUp() {
+        Random random = new Random(Fixtures.SEED);
+        Alphabet alpha = Fixtures.alphabet(size);
+        _perm = new Permutation(Fixtures.cycles(alpha, random), alpha);
+        _rotor = new MovingRotor("I", _perm,
+                                 Character.toString(alpha.toCodePoint(0)));
+        _rotor.set(random.nextInt(size));
+        _chars = new int[CHARS];
+        for (int k = 0; k < CHARS; k += 1) {
+            _chars[k] = random.nextInt(size);
+        }
+    }
+
+    /** Permute CHARS characters. */
+    @Benchmark
+    @OperationsPerInvocation(CHARS)
+    public int permute() {
+        int sum = 0;
+        for (int c : _chars) {
+            sum += _perm.permute(c);
+        }
+        return sum;
+    }
+
+    /** Invert CHARS characters. */
+    @Benchmark
+    @OperationsPerInvocation(CHARS)
+    public int invert() {
+        int sum = 0;
+        for (int c : _chars) {
+            sum += _perm.invert(c);
+        }
+        return sum;
+    }
+
+    /** Convert CHARS characters forward through a rotor. */
+    @Benchmark
+    @OperationsPerInvocation(CHARS)
+    public int convertForward() {
+        int sum = 0;
+        for (int c : _chars) {
+            sum += _rotor.convertForward(c);
+        }
+        return sum;
+    }
+
+    /** The permutation. */
+    private Permutation _perm;
+    /** A rotor whose permutation is _perm. */
+    private Rotor _rotor;
+    /** Indices of the characters to convert. */
+    private int[] _chars;
+}
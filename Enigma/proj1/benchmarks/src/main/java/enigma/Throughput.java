@@ -0,0 +1,377 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static enigma.EnigmaException.*;
+
+/** End-to-end throughput measurement of Main.  Each run starts a new JVM
+ *  running Main on a configuration and an input (such as those written by
+ *  Corpus), and measures its elapsed time, including the start of the
+ *  JVM, and its peak resident set size (on Linux, the largest value of
+ *  VmHWM in /proc/PID/status, which is sampled every few milliseconds
+ *  until the run ends).  The median time of several runs gives the
+ *  throughput, in megabytes (10**6 bytes) of input and message lines per
+ *  second, which may be recorded in a baseline file or checked against
+ *  one.
+ *  @author Won Shil Park
+ */
+public final class Throughput {
+
+    /** Measure the throughput of Main as specified by ARGS, and report it
+     *  on the standard output.
+     *  ARGS[0] is the name of a configuration file, and ARGS[1] the name
+     *  of an input file, for Main.  Exits with code 1 after an error,
+     *  including a run that falls behind the baseline.
+     *  Options are arguments starting with "--", and may appear anywhere:
+     *    --runs=N        Run Main N times (default: 3).
+     *    --main=OPTION   Pass OPTION, such as --mapped, to Main.  May be
+     *                    repeated.
+     *    --jvm=ARG       Pass ARG, such as -Xmx1g, to the JVM that runs
+     *                    Main.  May be repeated.
+     *    --output=FILE   Have Main write to FILE (default: /dev/null if
+     *                    there is one, and otherwise a temporary file).
+     *    --baseline=FILE Check the results against those recorded in FILE,
+     *                    a properties file, under the name given by
+     *                    --name.
+     *    --name=NAME     Name of the results in the baseline (default: the
+     *                    last component of ARGS[1]).
+     *    --tolerance=P   Fail if megabytes or messages per second are more
+     *                    than P percent below the baseline (default: 10).
+     *    --record        Record the results in the baseline file instead
+     *                    of checking them. */
+    public static void main(String... args) {
+        try {
+            new Throughput(args).run();
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** A measurement as specified by ARGS (see main). */
+    private Throughput(String[] args) {
+        ArrayList<String> files = new ArrayList<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                files.add(arg);
+                continue;
+            }
+            int eq = arg.indexOf('=');
+            String name = eq == -1 ? arg : arg.substring(0, eq);
+            String value = eq == -1 ? null : arg.substring(eq + 1);
+            if (name.equals("--record")) {
+                if (value != null) {
+                    throw error("bad value in option %s", arg);
+                }
+                _record = true;
+                continue;
+            }
+            if (value == null) {
+                throw error("missing value in option %s", arg);
+            }
+            switch (name) {
+            case "--runs":
+                _runs = optionValue(arg, value, 1);
+                break;
+            case "--main":
+                _mainOptions.add(value);
+                break;
+            case "--jvm":
+                _jvmArgs.add(value);
+                break;
+            case "--output":
+                _output = Paths.get(value);
+                break;
+            case "--baseline":
+                _baseline = Paths.get(value);
+                break;
+            case "--name":
+                _name = value;
+                break;
+            case "--tolerance":
+                _tolerance = optionValue(arg, value, 0);
+                break;
+            default:
+                throw error("unknown option %s", arg);
+            }
+        }
+        if (files.size() != 2) {
+            throw error("need a configuration file and an input file");
+        }
+        if (_record && _baseline == null) {
+            throw error("--record needs --baseline");
+        }
+        _config = Paths.get(files.get(0));
+        _input = Paths.get(files.get(1));
+        if (_name == null) {
+            _name = _input.getFileName().toString();
+        }
+    }
+
+    /** Return VALUE, the value given in command-line option OPTION, as an
+     *  integer of at least MIN. */
+    private static int optionValue(String option, String value, int min) {
+        try {
+            int result = Integer.parseInt(value);
+            if (result >= min) {
+                return result;
+            }
+        } catch (NumberFormatException excp) {
+            /* Fall through to the error below. */
+        }
+        throw error("bad value in option %s", option);
+    }
+
+    /** Perform my runs, report them, and record or check the results. */
+    private void run() {
+        long bytes = countBytes();
+        long messages = countMessages();
+        Path output = _output;
+        boolean temporary = false;
+        try {
+            if (output == null && Files.isWritable(DEV_NULL)) {
+                output = DEV_NULL;
+            } else if (output == null) {
+                output = Files.createTempFile("enigma-throughput", ".out");
+                temporary = true;
+            }
+            long[] nanos = new long[_runs];
+            long peak = -1;
+            for (int k = 0; k < _runs; k += 1) {
+                long[] result = runMain(output);
+                nanos[k] = result[0];
+                peak = Math.max(peak, result[1]);
+                report("run " + (k + 1), bytes, messages, nanos[k],
+                       result[1]);
+            }
+            Arrays.sort(nanos);
+            long median = nanos[_runs / 2];
+            report("median", bytes, messages, median, peak);
+            double seconds = median / 1e9;
+            double mbps = bytes / 1e6 / seconds;
+            double msgs = messages / seconds;
+            if (_record) {
+                record(mbps, msgs, peak);
+            } else if (_baseline != null) {
+                check(mbps, msgs);
+            }
+        } catch (IOException excp) {
+            throw error("%s", excp);
+        } finally {
+            if (temporary) {
+                try {
+                    Files.deleteIfExists(output);
+                } catch (IOException excp) {
+                    /* Leave it. */
+                }
+            }
+        }
+    }
+
+    /** Run Main once on my files, writing to OUTPUT, and return its
+     *  elapsed time in nanoseconds and its peak resident set size in
+     *  kilobytes (or -1 if unknown). */
+    private long[] runMain(Path output) throws IOException {
+        ArrayList<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin",
+                              "java").toString());
+        command.add("-Dfile.encoding=UTF-8");
+        command.addAll(_jvmArgs);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(Main.class.getName());
+        command.addAll(_mainOptions);
+        command.add(_config.toString());
+        command.add(_input.toString());
+        command.add(output.toString());
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).inheritIO().start();
+        Path status = Paths.get("/proc", Long.toString(process.pid()),
+                                "status");
+        long peak = -1;
+        try {
+            while (!process.waitFor(POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                peak = Math.max(peak, highWater(status));
+            }
+        } catch (InterruptedException excp) {
+            process.destroyForcibly();
+            throw error("interrupted");
+        }
+        long elapsed = System.nanoTime() - start;
+        if (process.exitValue() != 0) {
+            throw error("Main exited with code %d", process.exitValue());
+        }
+        return new long[] { elapsed, peak };
+    }
+
+    /** Return the peak resident set size, in kilobytes, reported by the
+     *  process status file STATUS, or -1 if it cannot be read. */
+    private static long highWater(Path status) {
+        try {
+            for (String line : Files.readAllLines(status)) {
+                if (line.startsWith("VmHWM:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", ""));
+                }
+            }
+        } catch (IOException | NumberFormatException excp) {
+            /* Fall through to the result below. */
+        }
+        return -1;
+    }
+
+    /** Return the size of my input in bytes. */
+    private long countBytes() {
+        try {
+            return Files.size(_input);
+        } catch (IOException excp) {
+            throw error("could not open %s", _input);
+        }
+    }
+
+    /** Return the number of message lines (lines that are not setting
+     *  lines) in my input. */
+    private long countMessages() {
+        long count = 0;
+        boolean lineStart = true, message = false;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        try (FileChannel in = FileChannel.open(_input)) {
+            while (in.read(buffer) >= 0) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    byte b = buffer.get();
+                    if (lineStart) {
+                        message = b != '*';
+                    }
+                    lineStart = b == '\n';
+                    if (lineStart && message) {
+                        count += 1;
+                    }
+                }
+                buffer.clear();
+            }
+        } catch (IOException excp) {
+            throw error("could not open %s", _input);
+        }
+        return !lineStart && message ? count + 1 : count;
+    }
+
+    /** Print a line reporting a run, or the summary of runs, named LABEL
+     *  that took NANOS nanoseconds to convert BYTES bytes of input
+     *  holding MESSAGES messages, with a peak resident set size of PEAK
+     *  kilobytes (unknown if negative). */
+    private static void report(String label, long bytes, long messages,
+                               long nanos, long peak) {
+        double seconds = nanos / 1e9;
+        System.out.printf("%-8s %9.3f s  %9.2f MB/s  %12.0f messages/s"
+                          + "  peak RSS %s%n",
+                          label + ":", seconds, bytes / 1e6 / seconds,
+                          messages / seconds,
+                          peak < 0 ? "unknown" : peak + " kB");
+    }
+
+    /** Record MBPS megabytes and MSGS messages per second, and a peak
+     *  resident set size of PEAK kilobytes, under my name in my baseline
+     *  file, keeping the other results there. */
+    private void record(double mbps, double msgs, long peak)
+        throws IOException {
+        Properties baseline = new Properties();
+        if (Files.exists(_baseline)) {
+            baseline = loadBaseline();
+        }
+        baseline.setProperty(_name + MBPS, String.format("%.2f", mbps));
+        baseline.setProperty(_name + MSGS, String.format("%.0f", msgs));
+        if (peak >= 0) {
+            baseline.setProperty(_name + RSS, Long.toString(peak));
+        }
+        try (Writer out = Files.newBufferedWriter(_baseline)) {
+            baseline.store(out, "Throughput of Main (see enigma.Throughput)");
+        }
+        System.out.printf("recorded %s in %s%n", _name, _baseline);
+    }
+
+    /** Check MBPS megabytes and MSGS messages per second against those
+     *  recorded under my name in my baseline file. */
+    private void check(double mbps, double msgs) throws IOException {
+        Properties baseline = loadBaseline();
+        String mbpsBase = baseline.getProperty(_name + MBPS),
+            msgsBase = baseline.getProperty(_name + MSGS);
+        if (mbpsBase == null || msgsBase == null) {
+            throw error("no baseline for %s in %s", _name, _baseline);
+        }
+        String slower = compare("MB/s", mbps, Double.parseDouble(mbpsBase));
+        if (slower == null) {
+            slower = compare("messages/s", msgs,
+                             Double.parseDouble(msgsBase));
+        }
+        if (slower != null) {
+            throw error("%s: %s", _name, slower);
+        }
+    }
+
+    /** Report MEASURED units of UNIT against BASE, and return a
+     *  description of the regression if MEASURED is more than _tolerance
+     *  percent below BASE, or null if not. */
+    private String compare(String unit, double measured, double base) {
+        double change = 100 * (measured - base) / base;
+        System.out.printf("%-10s %+.1f%% against the baseline of %.2f%n",
+                          unit + ":", change, base);
+        if (change < -_tolerance) {
+            return String.format("%.2f %s is %.1f%% below the baseline of"
+                                 + " %.2f (tolerance %d%%)", measured, unit,
+                                 -change, base, _tolerance);
+        }
+        return null;
+    }
+
+    /** Return the contents of my baseline file. */
+    private Properties loadBaseline() throws IOException {
+        Properties result = new Properties();
+        try (Reader in = Files.newBufferedReader(_baseline)) {
+            result.load(in);
+        } catch (IllegalArgumentException excp) {
+            throw error("malformed baseline %s", _baseline);
+        }
+        return result;
+    }
+
+    /** Suffixes of the names of recorded results. */
+    private static final String MBPS = ".mbps", MSGS = ".messages",
+        RSS = ".rss";
+    /** Where output is discarded, on systems that have it. */
+    private static final Path DEV_NULL = Paths.get("/dev/null");
+    /** Interval between samples of the resident set size. */
+    private static final long POLL_MILLIS = 10;
+    /** Size of the buffer for counting messages. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** The configuration and input files. */
+    private final Path _config, _input;
+    /** Output file for Main, or null for the default. */
+    private Path _output;
+    /** Baseline file, or null if none. */
+    private Path _baseline;
+    /** Name of my results in the baseline. */
+    private String _name;
+    /** Options for Main, and arguments for its JVM. */
+    private final List<String> _mainOptions = new ArrayList<>(),
+        _jvmArgs = new ArrayList<>();
+    /** Number of runs, and percentage by which a run may fall behind the
+     *  baseline. */
+    private int _runs = 3, _tolerance = 10;
+    /** True iff I record results rather than checking them. */
+    private boolean _record;
+}
@@ -1,17 +1,29 @@
 package enigma;
 
+import static enigma.EnigmaException.*;
+
 /** An alphabet of encodable characters.  Provides a mapping from characters
- *  to and from indices into the alphabet.
+ *  to and from indices into the alphabet.  Characters are Unicode code
+ *  points, so an alphabet may contain supplementary characters; the
+ *  char-based methods apply to the usual case of characters in the Basic
+ *  Multilingual Plane.
  *  @author Won Shil Park
  */
 class Alphabet {
     /** A new alphabet containing CHARS.  Character number #k has index
      *  K (numbering from 0). No character may be duplicated. */
     Alphabet(String chars) {
-        _chars = chars;
-        charList = new char[chars.length()];
-        for (int i = 0; i < chars.length(); i++) {
-            charList[i] = _chars.charAt(i);
+        charList = chars.codePoints().toArray();
+        int lo = Integer.MAX_VALUE, hi = Integer.MIN_VALUE;
+        for (int cp : charList) {
+            lo = Math.min(lo, cp);
+            hi = Math.max(hi, cp);
+        }
+        if (charList.length > 0
+            && (long) hi - lo < DIRECT_SLACK + 4L * charList.length) {
+            buildDirect(lo, hi);
+        } else {
+            buildHashed();
         }
     }
 
@@ -20,46 +32,131 @@ class Alphabet {
         this("ABCDEFGHIJKLMNOPQRSTUVWXYZ");
     }
 
+    /** Index the characters of this alphabet with a table covering the
+     *  code points LO..HI directly. */
+    private void buildDirect(int lo, int hi) {
+        _low = lo;
+        _direct = new int[hi - lo + 1];
+        for (int i = 0; i < charList.length; i += 1) {
+            int k = charList[i] - lo;
+            if (_direct[k] != 0) {
+                throw duplicate(charList[i]);
+            }
+            _direct[k] = i + 1;
+        }
+    }
+
+    /** Index the characters of this alphabet with an open-addressed hash
+     *  table, for alphabets whose code points are too spread out for a
+     *  direct table. */
+    private void buildHashed() {
+        int capacity = Integer.highestOneBit(2 * charList.length + 1) << 1;
+        _keys = new int[capacity];
+        _values = new int[capacity];
+        _shift = Integer.numberOfLeadingZeros(capacity - 1);
+        for (int i = 0; i < charList.length; i += 1) {
+            int slot = slot(charList[i]);
+            while (_values[slot] != 0) {
+                if (_keys[slot] == charList[i]) {
+                    throw duplicate(charList[i]);
+                }
+                slot = (slot + 1) & (capacity - 1);
+            }
+            _keys[slot] = charList[i];
+            _values[slot] = i + 1;
+        }
+    }
+
+    /** Return the home slot of code point CP in _keys. */
+    private int slot(int cp) {
+        return (cp * HASH_MULTIPLIER) >>> _shift;
+    }
+
+    /** Return the error reported for a repeated code point CP. */
+    private static EnigmaException duplicate(int cp) {
+        return error("character '%s' repeated in alphabet",
+                     Character.toString(cp));
+    }
+
     /** Returns the size of the alphabet. */
     int size() {
-        return _chars.length();
+        return charList.length;
     }
 
     /** Returns true if CH is in this alphabet. */
     boolean contains(char ch) {
-        return _chars.contains(String.valueOf(ch));
+        return indexOf(ch) >= 0;
     }
 
     /** Returns character number INDEX in the alphabet, where
-     *  0 <= INDEX < size(). */
+     *  0 <= INDEX < size().  That character must not be a supplementary
+     *  character (see toCodePoint). */
     char toChar(int index) {
+        int cp = toCodePoint(index);
+        if (Character.isSupplementaryCodePoint(cp)) {
+            throw error("alphabet character %d is not a single char", index);
+        }
+        return (char) cp;
+    }
+
+    /** Returns the code point of character number INDEX in the alphabet,
+     *  where 0 <= INDEX < size(). */
+    int toCodePoint(int index) {
         if (index < 0 || index >= size()) {
             throw EnigmaException.error("Alphabet"
                     + " index is out of bounds.");
-        } else {
-            return charList[index];
         }
+        return charList[index];
     }
 
     /** Returns the index of character CH which must be in
      *  the alphabet. This is the inverse of toChar(). */
     int toInt(char ch) {
-        boolean insideAlpha = false;
-        int index = 0;
-        for (int i = 0; i < charList.length; i++) {
-            if (charList[i] == ch) {
-                insideAlpha = true;
-                index = i;
-            }
-        }
-        if (!insideAlpha) {
-            throw EnigmaException.error("Char"
-                    + ch + "not in alphabet");
+        int index = indexOf(ch);
+        if (index < 0) {
+            throw error("character '%c' not in alphabet", ch);
         }
         return index;
     }
-    /** Characters of alphabet. */
-    private String _chars;
-    /** List of characters. */
-    private char[] charList;
+
+    /** Returns the index of code point CP in this alphabet, or -1 if CP
+     *  is not in it.  Takes constant time. */
+    int indexOf(int cp) {
+        if (_direct != null) {
+            int k = cp - _low;
+            return k >= 0 && k < _direct.length ? _direct[k] - 1 : -1;
+        }
+        int mask = _keys.length - 1;
+        for (int slot = slot(cp); _values[slot] != 0;
+             slot = (slot + 1) & mask) {
+            if (_keys[slot] == cp) {
+                return _values[slot] - 1;
+            }
+        }
+        return -1;
+    }
+
+    /** Alphabets whose code points span fewer than this many code points
+     *  beyond four per character are indexed directly. */
+    private static final int DIRECT_SLACK = 256;
+
+    /** Fibonacci hashing multiplier for the hashed index. */
+    private static final int HASH_MULTIPLIER = 0x9E3779B9;
+
+    /** List of characters, as code points. */
+    private int[] charList;
+
+    /** Smallest code point in the alphabet, when _direct is in use. */
+    private int _low;
+    /** If non-null, _direct[cp - _low] is one more than the index of code
+     *  point CP, or 0 if CP is absent. */
+    private int[] _direct;
+
+    /** Code points of the hashed index. */
+    private int[] _keys;
+    /** One more than the index of the corresponding entry of _keys, or 0
+     *  for an empty slot. */
+    private int[] _values;
+    /** Shift that reduces a hash to an index into _keys. */
+    private int _shift;
 }
@@ -0,0 +1,79 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the Alphabet class.
+ *  @author Won Shil Park
+ */
+public class AlphabetTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Check that ALPHA maps each of the code points in CHARS to its
+     *  position in CHARS and back, and that it has no other characters
+     *  among the code points 0..0x30000. TESTID is used in error
+     *  messages. */
+    private void checkAlphabet(String testId, Alphabet alpha, String chars) {
+        int[] cps = chars.codePoints().toArray();
+        assertEquals(testId + " (wrong size)", cps.length, alpha.size());
+        for (int i = 0; i < cps.length; i += 1) {
+            assertEquals(msg(testId, "wrong index of %x", cps[i]),
+                         i, alpha.indexOf(cps[i]));
+            assertEquals(msg(testId, "wrong code point at %d", i),
+                         cps[i], alpha.toCodePoint(i));
+        }
+        int members = 0;
+        for (int cp = 0; cp < 0x30000; cp += 1) {
+            if (alpha.indexOf(cp) >= 0) {
+                members += 1;
+            }
+        }
+        assertEquals(testId + " (extra members)", cps.length, members);
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkUpper() {
+        checkAlphabet("upper", UPPER, UPPER_STRING);
+        assertTrue(UPPER.contains('Q'));
+        assertFalse(UPPER.contains('q'));
+        assertEquals('Z', UPPER.toChar(UPPER.toInt('Z')));
+    }
+
+    @Test
+    public void checkSparse() {
+        String chars = "AZ09.\u00e9\u4e2d\uac00"
+            + Character.toString(0x1F600) + Character.toString(0x2A6D6);
+        checkAlphabet("sparse", new Alphabet(chars), chars);
+    }
+
+    @Test
+    public void checkLarge() {
+        StringBuilder chars = new StringBuilder();
+        for (int cp = 0x1F000; chars.length() < 8000; cp += 3) {
+            chars.appendCodePoint(cp);
+        }
+        checkAlphabet("large", new Alphabet(chars.toString()),
+                      chars.toString());
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkDuplicate() {
+        new Alphabet("ABCA");
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkNotInAlphabet() {
+        UPPER.toInt('a');
+    }
+}
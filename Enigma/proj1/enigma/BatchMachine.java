@@ -0,0 +1,298 @@
+package enigma;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+import static enigma.EnigmaException.*;
+
+/** A set of Enigma machines, one per lane, that convert many independent
+ *  messages together, a character from each lane at a time.  The machines
+ *  may have different rotors, settings, and plugboards, but share an
+ *  alphabet and numbers of slots and pawls.  Their state is kept as
+ *  structures of arrays: for each slot, the setting of its rotor in every
+ *  lane, and the position in a common pool of that rotor's tables.  Each
+ *  step of the conversion is then one loop over the lanes, doing the same
+ *  arithmetic and lookups for each, in the form a vector unit performs
+ *  with gathers.  The results are those of Machine.
+ *
+ *  This class does each step one lane at a time.  VectorBatchMachine,
+ *  built by Maven in module vector with the incubating Vector API, does
+ *  it for many lanes per instruction; of() makes one whenever that class
+ *  and the jdk.incubator.vector module are present at run time, and an
+ *  instance of this class otherwise.
+ *  @author Won Shil Park
+ */
+class BatchMachine {
+
+    /** A batch whose lanes start as copies of the configured MACHINES,
+     *  whose alphabets may not contain supplementary characters. */
+    BatchMachine(Machine... machines) {
+        if (machines.length == 0) {
+            throw error("no machines in batch");
+        }
+        Machine first = machines[0];
+        _lanes = machines.length;
+        _slots = first.numRotors();
+        _firstMoving = _slots - first.numPawls();
+        _size = first.alphabet().size();
+        if (!first.charsOnly()) {
+            throw error("batch alphabets must not have supplementary"
+                        + " characters");
+        }
+        _keyMachine = first;
+        _chars = new char[_size];
+        for (int k = 0; k < _size; k += 1) {
+            _chars[k] = first.alphabet().toChar(k);
+        }
+        _posn = new int[_slots][_lanes];
+        _forward = new int[_slots][_lanes];
+        _backward = new int[_slots][_lanes];
+        _notches = new int[_slots][_lanes];
+        _plug = new int[_lanes];
+        IdentityHashMap<Object, Integer> bases = new IdentityHashMap<>();
+        for (int lane = 0; lane < _lanes; lane += 1) {
+            Machine m = machines[lane];
+            if (m.alphabet() != first.alphabet()
+                || m.numRotors() != _slots
+                || m.numPawls() != first.numPawls()) {
+                throw error("machines in a batch must have the same"
+                            + " alphabet, slots, and pawls");
+            }
+            for (int i = 0; i < _slots; i += 1) {
+                Rotor r = m.rotor(i);
+                if (r == null) {
+                    throw error("machine in batch has no rotors");
+                }
+                _forward[i][lane] = add(bases, m.forwardTable(i));
+                _backward[i][lane] = add(bases, m.inverseTable(i));
+                if (!bases.containsKey(r)) {
+                    int[] notches = new int[_size];
+                    for (int k = 0; k < _size; k += 1) {
+                        notches[k] = r.atNotch(k) ? 1 : 0;
+                    }
+                    bases.put(r, add(bases, notches));
+                }
+                _notches[i][lane] = bases.get(r);
+                _posn[i][lane] = m.setting(i);
+            }
+            _plug[lane] = add(bases, m.plugboard().forwardTable());
+        }
+        _pool = Arrays.copyOf(_pool, _poolSize);
+        _current = new int[_lanes];
+        _atNotch = new int[_slots][_lanes];
+    }
+
+    /** Return a batch whose lanes start as copies of MACHINES, as for
+     *  BatchMachine(MACHINES), converting with vector instructions if
+     *  they are available. */
+    static BatchMachine of(Machine... machines) {
+        if (VECTOR_ENGINE != null) {
+            try {
+                return VECTOR_ENGINE.newInstance((Object) machines);
+            } catch (InvocationTargetException excp) {
+                if (excp.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) excp.getCause();
+                }
+                throw error("internal error: %s", excp.getCause());
+            } catch (ReflectiveOperationException excp) {
+                /* Fall back to this class. */
+            }
+        }
+        return new BatchMachine(machines);
+    }
+
+    /** Return true iff of() makes batches that convert with vector
+     *  instructions. */
+    static boolean vectorized() {
+        return VECTOR_ENGINE != null;
+    }
+
+    /** Return the constructor of VectorBatchMachine, or null if it or the
+     *  jdk.incubator.vector module is missing. */
+    private static Constructor<? extends BatchMachine> vectorEngine() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector")
+            .isEmpty()) {
+            return null;
+        }
+        try {
+            return Class.forName("enigma.VectorBatchMachine")
+                .asSubclass(BatchMachine.class)
+                .getDeclaredConstructor(Machine[].class);
+        } catch (ReflectiveOperationException | LinkageError excp) {
+            return null;
+        }
+    }
+
+    /** Return the position of TABLE in _pool, appending it first unless
+     *  BASES records its position already. */
+    private int add(IdentityHashMap<Object, Integer> bases, int[] table) {
+        Integer base = bases.get(table);
+        if (base != null) {
+            return base;
+        }
+        if (_poolSize + table.length > _pool.length) {
+            _pool = Arrays.copyOf(_pool,
+                                  2 * Math.max(_pool.length, table.length));
+        }
+        System.arraycopy(table, 0, _pool, _poolSize, table.length);
+        bases.put(table, _poolSize);
+        _poolSize += table.length;
+        return _poolSize - table.length;
+    }
+
+    /** Return the number of lanes. */
+    int lanes() {
+        return _lanes;
+    }
+
+    /** Return the setting of the rotor in slot K of lane LANE. */
+    int setting(int lane, int k) {
+        return _posn[k][lane];
+    }
+
+    /** Convert IN[lane], an index in the alphabet, in each lane for which
+     *  it is not negative, advancing that lane's machine first, and store
+     *  the result in OUT[lane].  Other lanes are left alone. */
+    void convert(int[] in, int[] out) {
+        convert(in, out, 0, _lanes);
+    }
+
+    /** Do the work of convert(IN, OUT) for lanes LO .. HI-1 only. */
+    final void convert(int[] in, int[] out, int lo, int hi) {
+        final int n = _size, last = _slots - 1;
+        final int[] pool = _pool;
+        for (int i = _firstMoving; i <= last; i += 1) {
+            final int[] posn = _posn[i], notches = _notches[i];
+            final int[] atNotch = _atNotch[i];
+            for (int lane = lo; lane < hi; lane += 1) {
+                atNotch[lane] = pool[notches[lane] + posn[lane]]
+                    & (in[lane] >= 0 ? 1 : 0);
+            }
+        }
+        for (int i = _firstMoving; i <= last; i += 1) {
+            final int[] posn = _posn[i];
+            for (int lane = lo; lane < hi; lane += 1) {
+                int move;
+                if (i == last) {
+                    move = in[lane] >= 0 ? 1 : 0;
+                } else {
+                    move = _atNotch[i + 1][lane]
+                        | (i > _firstMoving ? _atNotch[i][lane] : 0);
+                }
+                int p = posn[lane] + move;
+                posn[lane] = p == n ? 0 : p;
+            }
+        }
+        int[] c = _current;
+        for (int lane = lo; lane < hi; lane += 1) {
+            c[lane] = pool[_plug[lane] + Math.max(in[lane], 0)];
+        }
+        for (int j = last; j >= 0; j -= 1) {
+            through(c, _forward[j], _posn[j], lo, hi);
+        }
+        for (int j = 1; j <= last; j += 1) {
+            through(c, _backward[j], _posn[j], lo, hi);
+        }
+        for (int lane = lo; lane < hi; lane += 1) {
+            if (in[lane] >= 0) {
+                out[lane] = pool[_plug[lane] + c[lane]];
+            }
+        }
+    }
+
+    /** Replace C[lane] in each lane with the result of passing it through
+     *  the table at position BASE[lane] in the pool, at setting
+     *  POSN[lane], for lanes LO .. HI-1. */
+    private void through(int[] c, int[] base, int[] posn, int lo, int hi) {
+        final int n = _size;
+        final int[] pool = _pool;
+        for (int lane = lo; lane < hi; lane += 1) {
+            int p = posn[lane];
+            int k = c[lane] + p;
+            int e = pool[base[lane] + (k >= n ? k - n : k)] - p;
+            c[lane] = e < 0 ? e + n : e;
+        }
+    }
+
+    /** Return the conversions of MSGS, one per lane, as for
+     *  Machine.convert(String), advancing each lane's machine. */
+    String[] convert(String... msgs) {
+        if (msgs.length != _lanes) {
+            throw error("need one message per lane");
+        }
+        char[][] text = new char[_lanes][];
+        int length = 0;
+        for (int lane = 0; lane < _lanes; lane += 1) {
+            text[lane] = msgs[lane].toCharArray();
+            length = Math.max(length, text[lane].length);
+        }
+        int[] in = new int[_lanes], out = new int[_lanes];
+        for (int t = 0; t < length; t += 1) {
+            for (int lane = 0; lane < _lanes; lane += 1) {
+                char[] chars = text[lane];
+                int key = t < chars.length ? _keyMachine.keyOf(chars[t]) : -1;
+                if (key < 0 && t < chars.length) {
+                    chars[t] = (char) ~key;
+                }
+                in[lane] = key;
+            }
+            convert(in, out);
+            for (int lane = 0; lane < _lanes; lane += 1) {
+                if (in[lane] >= 0) {
+                    text[lane][t] = _chars[out[lane]];
+                }
+            }
+        }
+        String[] result = new String[_lanes];
+        for (int lane = 0; lane < _lanes; lane += 1) {
+            result[lane] = new String(text[lane]);
+        }
+        return result;
+    }
+
+    /** The constructor of VectorBatchMachine, or null if it cannot be
+     *  used. */
+    private static final Constructor<? extends BatchMachine> VECTOR_ENGINE =
+        vectorEngine();
+
+    /* The state below, other than scratch space, is shared with
+     * VectorBatchMachine. */
+
+    /** Number of lanes. */
+    final int _lanes;
+    /** Number of rotor slots in each lane. */
+    final int _slots;
+    /** Slot of the leftmost moving rotor in each lane. */
+    final int _firstMoving;
+    /** Size of the alphabet. */
+    final int _size;
+    /** A machine whose keyOf gives the alphabet index of a char. */
+    private final Machine _keyMachine;
+    /** _chars[k] is character #K of the alphabet. */
+    private final char[] _chars;
+    /** The tables of all rotors and plugboards in use, end to end. */
+    int[] _pool = new int[0];
+    /** Number of entries of _pool in use while it is built. */
+    private int _poolSize;
+    /** _posn[i][lane] is the setting of the rotor in slot I of LANE. */
+    final int[][] _posn;
+    /** _forward[i][lane] is the position in _pool of the forward table
+     *  of the rotor in slot I of LANE. */
+    final int[][] _forward;
+    /** As for _forward, for inverse tables. */
+    final int[][] _backward;
+    /** _notches[i][lane] is the position in _pool of a table holding 1 at
+     *  the notched settings of the rotor in slot I of LANE, and 0 at
+     *  others. */
+    final int[][] _notches;
+    /** _plug[lane] is the position in _pool of the plugboard table of
+     *  LANE. */
+    final int[] _plug;
+    /** _atNotch[i][lane] is 1 iff the rotor in slot I of LANE is at a notch
+     *  as the current key press begins (and the lane is converting). */
+    private final int[][] _atNotch;
+    /** Character being converted in each lane. */
+    private final int[] _current;
+}
@@ -0,0 +1,111 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import static enigma.MachineTest.navalMachine;
+import static enigma.TestUtils.UPPER;
+
+/** The suite of all JUnit tests for the BatchMachine class.
+ *  @author Won Shil Park
+ */
+public class BatchMachineTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return a naval machine with rotors, settings, and plugboard chosen
+     *  using RANDOM. */
+    static Machine randomMachine(Random random) {
+        String[] moving = { "I", "II", "III", "IV", "V" };
+        for (int i = moving.length - 1; i > 0; i -= 1) {
+            int j = random.nextInt(i + 1);
+            String t = moving[i];
+            moving[i] = moving[j];
+            moving[j] = t;
+        }
+        Machine m = navalMachine();
+        m.insertRotors(new String[] {
+            random.nextBoolean() ? "B" : "C",
+            random.nextBoolean() ? "Beta" : "Gamma",
+            moving[0], moving[1], moving[2] });
+        StringBuilder setting = new StringBuilder();
+        for (int i = 0; i < 4; i += 1) {
+            setting.append((char) ('A' + random.nextInt(26)));
+        }
+        m.setRotors(setting.toString());
+        StringBuilder plug = new StringBuilder();
+        for (int i = random.nextInt(4); i > 0; i -= 1) {
+            char a = (char) ('A' + 2 * i), b = (char) ('A' + 2 * i + 1);
+            plug.append('(').append(a).append(b).append(')');
+        }
+        m.setPlugboard(new Permutation(plug.toString(), UPPER));
+        return m;
+    }
+
+    /** Return a random message of up to MAXLENGTH characters, some not
+     *  in the alphabet or in lower case, using RANDOM. */
+    static String randomMessage(Random random, int maxLength) {
+        String chars = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcxyz .,!\n";
+        StringBuilder result = new StringBuilder();
+        for (int i = random.nextInt(maxLength + 1); i > 0; i -= 1) {
+            result.append(chars.charAt(random.nextInt(chars.length())));
+        }
+        return result.toString();
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkAgainstMachines() {
+        Random random = new Random(61);
+        for (int trial = 0; trial < 20; trial += 1) {
+            int lanes = 1 + random.nextInt(40);
+            Machine[] machines = new Machine[lanes];
+            String[] msgs = new String[lanes];
+            for (int lane = 0; lane < lanes; lane += 1) {
+                machines[lane] = randomMachine(random);
+                msgs[lane] = randomMessage(random, 2000);
+            }
+            BatchMachine batch = new BatchMachine(machines);
+            String[] first = batch.convert(msgs);
+            String[] second = batch.convert(msgs);
+            for (int lane = 0; lane < lanes; lane += 1) {
+                assertEquals(machines[lane].convert(msgs[lane]), first[lane]);
+                assertEquals(machines[lane].convert(msgs[lane]),
+                             second[lane]);
+                for (int k = 1; k < machines[lane].numRotors(); k += 1) {
+                    assertEquals(machines[lane].setting(k),
+                                 batch.setting(lane, k));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void checkDoubleStep() {
+        Machine m = navalMachine();
+        m.insertRotors(new String[] { "B", "Beta", "I", "II", "III" });
+        m.setRotors("AADU");
+        BatchMachine batch = new BatchMachine(m, m);
+        String[] result = batch.convert("", "ABC");
+        assertEquals("", result[0]);
+        assertEquals(m.convert("ABC"), result[1]);
+        assertEquals(3, batch.setting(0, 3));
+        assertEquals(1, batch.setting(1, 2));
+        assertEquals(5, batch.setting(1, 3));
+        assertEquals(23, batch.setting(1, 4));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkNoRotors() {
+        new BatchMachine(navalMachine());
+    }
+}
@@ -0,0 +1,717 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static enigma.EnigmaException.*;
+
+/** Known-plaintext key search in the manner of the Turing-Welchman bombe.
+ *
+ *  A crib (a guess at plaintext) aligned with part of a ciphertext gives,
+ *  at each crib position I, a pair of letters P and C with
+ *  S(C) = E_I(S(P)), where S is the plugboard and E_I is the substitution
+ *  made by the rotors alone on that key press.  The pairs form the crib's
+ *  "menu": a graph on letters whose edges are labelled by position.  For
+ *  a given rotor order and start setting, a hypothesis S(T) = X for the
+ *  menu's test letter T implies values of S for its neighbours, and so
+ *  on through the menu, and by the symmetry of the plugboard (the
+ *  "diagonal board"), S(X) = T as well.  All the hypotheses reached from
+ *  one are true or false together, so if they give some letter two
+ *  values, all of them are rejected at once.  Loops in the menu are what
+ *  make rejection likely.  Hypotheses that survive are "stops": candidate
+ *  rotor orders, start settings, and partial plugboards.
+ *
+ *  Each rotor order and setting of the leftmost rotor is searched as a
+ *  separate task, so that a pool of threads shares the work.  A task
+ *  holds only its rotor order and setting; the working storage of a
+ *  search is allocated once for each thread that runs tasks.  The
+ *  plugboard is assumed to swap pairs of letters, as an Enigma's
+ *  plugboard does, and only the part of the menu connected to the test
+ *  letter is used.
+ *  @author Won Shil Park
+ */
+public final class Bombe {
+
+    /** Search for the settings of the machine described by a
+     *  configuration file, given a ciphertext and a crib, as specified by
+     *  ARGS, and print the stops found, one per line, as setting lines
+     *  with the plugboard pairs the stop implies.
+     *  ARGS[0] is the name of a configuration file, as for Main.
+     *  ARGS[1] is the ciphertext and ARGS[2] the crib, in which blanks
+     *  are ignored.  Exits with code 1 after an error.
+     *  Options are arguments starting with "--", and may appear anywhere:
+     *    --threads=N     Search on N threads (default: one per
+     *                    processor).
+     *    --offset=K      The crib starts at character K of the
+     *                    ciphertext (default: 0).
+     *    --order=NAMES   Search only the rotor order NAMES, rotor names
+     *                    separated by blanks or commas, starting with the
+     *                    reflector (default: all orders allowed by the
+     *                    configuration). */
+    public static void main(String... args) {
+        try {
+            run(args);
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Perform the search specified by ARGS (see main). */
+    private static void run(String[] args) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        int offset = 0;
+        String[] order = null;
+        ArrayList<String> files = new ArrayList<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                files.add(arg);
+                continue;
+            }
+            String value = Options.requiredValue(arg);
+            switch (Options.name(arg)) {
+            case "--threads":
+                threads = Options.intValue(arg, value, 1);
+                break;
+            case "--offset":
+                offset = Options.intValue(arg, value, 0);
+                break;
+            case "--order":
+                order = value.trim().split("[\\s,]+");
+                break;
+            default:
+                throw error("unknown option %s", arg);
+            }
+        }
+        if (files.size() != 3) {
+            throw error("need a configuration file, ciphertext, and crib");
+        }
+
+        Machine machine = Main.readConfig(files.get(0));
+        Bombe bombe = new Bombe(machine, files.get(1), files.get(2), offset);
+        if (bombe.loops() == 0) {
+            System.err.println("Warning: the menu has no loops");
+        }
+        List<String[]> orders;
+        if (order != null) {
+            orders = new ArrayList<>();
+            machine.insertRotors(order);
+            orders.add(order);
+        } else {
+            orders = bombe.orders();
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (Future<List<Stop>> result : bombe.submit(pool, orders)) {
+                for (Stop stop : Bombe.await(result)) {
+                    System.out.println(stop);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+            System.out.flush();
+        }
+    }
+
+    /** A search over the rotors available to MACHINE, whose alphabet may
+     *  have at most MAX_SIZE characters, for settings that could convert
+     *  CRIB to the part of CIPHERTEXT starting at character OFFSET (not
+     *  counting blanks). */
+    Bombe(Machine machine, String ciphertext, String crib, int offset) {
+        _machine = machine;
+        _alphabet = machine.alphabet();
+        _size = _alphabet.size();
+        if (_size > MAX_SIZE) {
+            throw error("alphabet too large for a bombe search");
+        }
+        int[] cipher = indices(ciphertext), plain = indices(crib);
+        if (plain.length == 0) {
+            throw error("empty crib");
+        }
+        if (offset + plain.length > cipher.length) {
+            throw error("crib does not fit in the ciphertext");
+        }
+        _offset = offset;
+        _length = plain.length;
+        buildMenu(plain, Arrays.copyOfRange(cipher, offset,
+                                            offset + plain.length));
+    }
+
+    /** Return the alphabet indices of the characters of TEXT other than
+     *  blanks, in upper case. */
+    private int[] indices(String text) {
+        int[] result = new int[text.length()];
+        int n = 0;
+        for (int k = 0; k < text.length(); ) {
+            int cp = text.codePointAt(k);
+            k += Character.charCount(cp);
+            if (Character.isWhitespace(cp)) {
+                continue;
+            }
+            int c = _alphabet.indexOf(Character.toUpperCase(cp));
+            if (c < 0) {
+                throw error("character '%s' not in alphabet",
+                            Character.toString(cp));
+            }
+            result[n] = c;
+            n += 1;
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /** Build the menu of crib PLAIN over ciphertext CIPHER, which have the
+     *  same length, choose its test letter, and count its loops. */
+    private void buildMenu(int[] plain, int[] cipher) {
+        int n = _size;
+        int[] degree = new int[n];
+        for (int i = 0; i < _length; i += 1) {
+            degree[plain[i]] += 1;
+            degree[cipher[i]] += 1;
+        }
+        _adjStart = new int[n + 1];
+        for (int a = 0; a < n; a += 1) {
+            _adjStart[a + 1] = _adjStart[a] + degree[a];
+        }
+        _adjOther = new int[2 * _length];
+        _adjPosn = new int[2 * _length];
+        _adjForward = new boolean[2 * _length];
+        int[] fill = Arrays.copyOf(_adjStart, n);
+        for (int i = 0; i < _length; i += 1) {
+            int p = plain[i], c = cipher[i];
+            _adjOther[fill[p]] = c;
+            _adjPosn[fill[p]] = i;
+            _adjForward[fill[p]] = true;
+            fill[p] += 1;
+            _adjOther[fill[c]] = p;
+            _adjPosn[fill[c]] = i;
+            fill[c] += 1;
+        }
+
+        int[] component = new int[n];
+        Arrays.fill(component, -1);
+        int bestEdges = -1;
+        for (int a = 0; a < n; a += 1) {
+            if (degree[a] == 0 || component[a] >= 0) {
+                continue;
+            }
+            int letters = 0, ends = 0, test = a;
+            int[] stack = new int[n];
+            int top = 0;
+            stack[top++] = a;
+            component[a] = a;
+            while (top > 0) {
+                int b = stack[--top];
+                letters += 1;
+                ends += degree[b];
+                if (degree[b] > degree[test]) {
+                    test = b;
+                }
+                for (int e = _adjStart[b]; e < _adjStart[b + 1]; e += 1) {
+                    int d = _adjOther[e];
+                    if (component[d] < 0) {
+                        component[d] = a;
+                        stack[top++] = d;
+                    }
+                }
+            }
+            if (ends / 2 > bestEdges) {
+                bestEdges = ends / 2;
+                _test = test;
+                _loops = ends / 2 - letters + 1;
+            }
+        }
+    }
+
+    /** Return the number of independent loops in the part of my menu
+     *  connected to its test letter. */
+    int loops() {
+        return _loops;
+    }
+
+    /** Return the index of my menu's test letter. */
+    int testLetter() {
+        return _test;
+    }
+
+    /** Return all the arrangements of rotors, each a list of rotor names
+     *  starting with the reflector, that my machine accepts. */
+    List<String[]> orders() {
+        return orders(_machine);
+    }
+
+    /** Return all the arrangements of rotors, each a list of rotor names
+     *  starting with the reflector, that MACHINE accepts. */
+    static List<String[]> orders(Machine machine) {
+        ArrayList<Rotor> reflectors = new ArrayList<>(),
+            fixed = new ArrayList<>(), moving = new ArrayList<>();
+        for (Rotor r : machine.availableRotors()) {
+            if (r.reflecting()) {
+                reflectors.add(r);
+            } else if (r.rotates()) {
+                moving.add(r);
+            } else {
+                fixed.add(r);
+            }
+        }
+        int slots = machine.numRotors(), pawls = machine.numPawls();
+        List<String[]> result = new ArrayList<>();
+        String[] order = new String[slots];
+        for (Rotor r : reflectors) {
+            order[0] = r.name();
+            arrange(order, 1, slots - pawls, fixed, moving, result);
+        }
+        return result;
+    }
+
+    /** Add to RESULT each completion of ORDER from slot K on, using
+     *  distinct rotors from FIXED in slots before FIRSTMOVING and from
+     *  MOVING in the rest. */
+    private static void arrange(String[] order, int k, int firstMoving,
+                                List<Rotor> fixed, List<Rotor> moving,
+                                List<String[]> result) {
+        if (k == order.length) {
+            result.add(order.clone());
+            return;
+        }
+        List<Rotor> choices = k < firstMoving ? fixed : moving;
+        for (Rotor r : choices) {
+            boolean used = false;
+            for (int j = 1; j < k; j += 1) {
+                used |= order[j].equals(r.name());
+            }
+            if (!used) {
+                order[k] = r.name();
+                arrange(order, k + 1, firstMoving, fixed, moving, result);
+            }
+        }
+    }
+
+    /** Submit to POOL a task for each rotor order in ORDERS and setting of
+     *  the leftmost rotor (not counting the reflector), and return their
+     *  results in order. */
+    List<Future<List<Stop>>> submit(ExecutorService pool,
+                                    List<String[]> orders) {
+        Machine m = _machine.copy();
+        List<Future<List<Stop>>> result = new ArrayList<>();
+        for (String[] order : orders) {
+            Rotor[] rotors = rotors(m, order);
+            for (int first = 0; first < _size; first += 1) {
+                result.add(pool.submit(new Scan(order, rotors, first)));
+            }
+        }
+        return result;
+    }
+
+    /** Return the stops for all settings of the rotor order ORDER,
+     *  searching on the current thread. */
+    List<Stop> search(String[] order) {
+        Rotor[] rotors = rotors(_machine.copy(), order);
+        Workspace workspace = new Workspace();
+        List<Stop> result = new ArrayList<>();
+        for (int first = 0; first < _size; first += 1) {
+            result.addAll(workspace.scan(order, rotors, first));
+        }
+        return result;
+    }
+
+    /** Return the rotors of rotor order ORDER, checking it by inserting
+     *  them in M. */
+    private static Rotor[] rotors(Machine m, String[] order) {
+        m.insertRotors(order);
+        Rotor[] result = new Rotor[order.length];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = m.rotor(i);
+        }
+        return result;
+    }
+
+    /** Return the stops computed by RESULT, waiting for them if
+     *  needed. */
+    static List<Stop> await(Future<List<Stop>> result) {
+        try {
+            return result.get();
+        } catch (ExecutionException excp) {
+            if (excp.getCause() instanceof EnigmaException) {
+                throw (EnigmaException) excp.getCause();
+            }
+            throw error("internal error: %s", excp.getCause());
+        } catch (InterruptedException excp) {
+            throw error("interrupted");
+        }
+    }
+
+    /** A candidate setting found by the search. */
+    static final class Stop {
+
+        /** A stop at rotor order ROTORS, with the settings SETTING (as for
+         *  Machine.setRotors), where the plugboard is as given by the
+         *  cycles STECKERS as far as they are known. */
+        Stop(String[] rotors, String setting, String steckers) {
+            _rotors = rotors;
+            _setting = setting;
+            _steckers = steckers;
+        }
+
+        /** Return my rotor order, starting with the reflector. */
+        String[] rotors() {
+            return _rotors.clone();
+        }
+
+        /** Return my rotor settings, as for Machine.setRotors. */
+        String setting() {
+            return _setting;
+        }
+
+        /** Return the plugboard pairs that I imply, as cycles. */
+        String steckers() {
+            return _steckers;
+        }
+
+        /** Return me as a setting line. */
+        @Override
+        public String toString() {
+            String line = "* " + String.join(" ", _rotors) + " " + _setting;
+            return _steckers.isEmpty() ? line : line + " " + _steckers;
+        }
+
+        /** Rotor order. */
+        private final String[] _rotors;
+        /** Rotor settings. */
+        private final String _setting;
+        /** Implied plugboard pairs. */
+        private final String _steckers;
+    }
+
+    /** The search of all start settings of one rotor order that have a
+     *  given setting of the leftmost rotor.  A Scan holds no working
+     *  storage of its own: it uses that of the thread running it. */
+    private final class Scan implements Callable<List<Stop>> {
+
+        /** A scan of rotor order ORDER, whose rotors are ROTORS, with its
+         *  leftmost rotor (not counting the reflector) at setting FIRST. */
+        Scan(String[] order, Rotor[] rotors, int first) {
+            _order = order;
+            _rotors = rotors;
+            _first = first;
+        }
+
+        @Override
+        public List<Stop> call() {
+            return _workspaces.get().scan(_order, _rotors, _first);
+        }
+
+        /** Rotor order. */
+        private final String[] _order;
+        /** The rotors of _order, shared with the other scans of it. */
+        private final Rotor[] _rotors;
+        /** Setting of slot 1 in all the start settings I search. */
+        private final int _first;
+    }
+
+    /** Working storage for scans, used by one thread at a time. */
+    private final class Workspace {
+
+        /** Storage for scans of my crib on my machine's rotors. */
+        Workspace() {
+            int n = _size;
+            _slots = _machine.numRotors();
+            _forward = new int[_slots][];
+            _backward = new int[_slots][];
+            _notches = new boolean[_slots][n];
+            _fast = new int[_length];
+            _core = new int[_length][n];
+            _coreInverse = new int[_length][n];
+            _coreKey = new int[_length][_slots];
+            _mark = new int[n * n];
+            _letterStamp = new int[n];
+            _value = new int[n];
+            _stack = new int[2 * n * n];
+        }
+
+        /** Return the stops among all start settings of rotor order
+         *  ORDER, whose rotors are ROTORS, that have its leftmost rotor
+         *  (not counting the reflector) at setting FIRST. */
+        List<Stop> scan(String[] order, Rotor[] rotors, int first) {
+            if (rotors != _rotors) {
+                wire(order, rotors);
+            }
+            List<Stop> stops = new ArrayList<>();
+            int[] start = new int[_slots], posn = new int[_slots];
+            start[1] = first;
+            do {
+                System.arraycopy(start, 0, posn, 0, _slots);
+                _jump.jump(posn, _offset);
+                for (int i = 0; i < _length; i += 1) {
+                    _jump.step(posn);
+                    position(i, posn);
+                }
+                test(start, stops);
+            } while (advance(start));
+            return stops;
+        }
+
+        /** Make ORDER, whose rotors are ROTORS, the rotor order that I
+         *  scan. */
+        private void wire(String[] order, Rotor[] rotors) {
+            int firstMoving = _slots;
+            for (int i = _slots - 1; i >= 0; i -= 1) {
+                Rotor r = rotors[i];
+                _forward[i] = r.permutation().forwardTable();
+                _backward[i] = r.permutation().inverseTable();
+                if (r.rotates()) {
+                    firstMoving = i;
+                }
+                for (int k = 0; k < _size; k += 1) {
+                    _notches[i][k] = r.atNotch(k);
+                }
+            }
+            _lastOffsets = rotors[_slots - 1].offsets();
+            _jump = new JumpAhead(_size, firstMoving, _notches);
+            for (int[] key : _coreKey) {
+                key[0] = -1;
+            }
+            _order = order;
+            _rotors = rotors;
+        }
+
+        /** Advance START, the settings of all my slots, to the next start
+         *  setting with the same setting of slot 1, as an odometer with the
+         *  last slot changing fastest.  Return false if there is none. */
+        private boolean advance(int[] start) {
+            for (int i = _slots - 1; i >= 2; i -= 1) {
+                start[i] += 1;
+                if (start[i] < _size) {
+                    return true;
+                }
+                start[i] = 0;
+            }
+            return false;
+        }
+
+        /** Record that the rotors are at settings POSN on crib position I,
+         *  recomputing the substitution made by the rotors other than the
+         *  last if those have moved since it was last computed. */
+        private void position(int i, int[] posn) {
+            final int last = _slots - 1, n = _size;
+            _fast[i] = posn[last];
+            int[] key = _coreKey[i];
+            boolean same = true;
+            for (int j = 0; j < last && same; j += 1) {
+                same = key[j] == posn[j];
+            }
+            if (same) {
+                return;
+            }
+            System.arraycopy(posn, 0, key, 0, _slots);
+            int[] core = _core[i], inverse = _coreInverse[i];
+            for (int c = 0; c < n; c += 1) {
+                int e = c;
+                for (int j = last - 1; j >= 0; j -= 1) {
+                    e = apply(_forward[j], posn[j], e);
+                }
+                for (int j = 1; j < last; j += 1) {
+                    e = apply(_backward[j], posn[j], e);
+                }
+                core[c] = e;
+                inverse[e] = c;
+            }
+        }
+
+        /** Return the result of passing C through a rotor whose table at
+         *  setting 0 is TABLE, at setting P. */
+        private int apply(int[] table, int p, int c) {
+            final int n = _size;
+            int k = c + p;
+            int e = table[k >= n ? k - n : k] - p;
+            return e < 0 ? e + n : e;
+        }
+
+        /** Return the substitution made by all the rotors on crib position
+         *  I applied to C if FORWARD, and otherwise its inverse. */
+        private int scramble(int i, int c, boolean forward) {
+            final int last = _slots - 1, p = _fast[i];
+            int[] core = forward ? _core[i] : _coreInverse[i];
+            if (_lastOffsets != null) {
+                return _lastOffsets.backward(p,
+                           core[_lastOffsets.forward(p, c)]);
+            }
+            return apply(_backward[last], p,
+                         core[apply(_forward[last], p, c)]);
+        }
+
+        /** Test each hypothesis for the test letter at start settings
+         *  START, whose crib positions have been recorded, adding the
+         *  stops found to STOPS. */
+        private void test(int[] start, List<Stop> stops) {
+            final int n = _size;
+            if (_stamp > Integer.MAX_VALUE - n - 1) {
+                Arrays.fill(_mark, 0);
+                Arrays.fill(_letterStamp, 0);
+                _stamp = 0;
+            }
+            int base = _stamp + 1;
+            for (int x = 0; x < n; x += 1) {
+                if (_mark[_test * n + x] >= base) {
+                    continue;
+                }
+                _stamp += 1;
+                if (consistent(x, base)) {
+                    stops.add(stop(start));
+                }
+            }
+        }
+
+        /** Return true iff the hypothesis that the plugboard takes the test
+         *  letter to X implies no contradiction, marking all the
+         *  hypotheses it implies with _stamp.  Hypotheses marked with
+         *  stamps from BASE up to _stamp have already been rejected. */
+        private boolean consistent(int x, int base) {
+            _top = 0;
+            if (!imply(_test, x, base)) {
+                return false;
+            }
+            while (_top > 0) {
+                int v = _stack[--_top], a = _stack[--_top];
+                if (!imply(v, a, base)) {
+                    return false;
+                }
+                for (int e = _adjStart[a]; e < _adjStart[a + 1]; e += 1) {
+                    int w = scramble(_adjPosn[e], v, _adjForward[e]);
+                    if (!imply(_adjOther[e], w, base)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        /** Record the hypothesis that the plugboard takes letter A to V,
+         *  and push it on _stack if it is new.  Return false if it
+         *  contradicts the hypotheses already made under _stamp, or has
+         *  already been rejected. */
+        private boolean imply(int a, int v, int base) {
+            int pair = a * _size + v;
+            int mark = _mark[pair];
+            if (mark == _stamp) {
+                return true;
+            }
+            if (mark >= base
+                || (_letterStamp[a] == _stamp && _value[a] != v)) {
+                return false;
+            }
+            _mark[pair] = _stamp;
+            _letterStamp[a] = _stamp;
+            _value[a] = v;
+            _stack[_top++] = a;
+            _stack[_top++] = v;
+            return true;
+        }
+
+        /** Return the stop at start settings START for the hypotheses
+         *  marked with _stamp. */
+        private Stop stop(int[] start) {
+            StringBuilder setting = new StringBuilder();
+            for (int i = 1; i < _slots; i += 1) {
+                setting.appendCodePoint(_alphabet.toCodePoint(start[i]));
+            }
+            StringBuilder steckers = new StringBuilder();
+            for (int a = 0; a < _size; a += 1) {
+                int v = _value[a];
+                if (_letterStamp[a] == _stamp && a < v) {
+                    if (steckers.length() > 0) {
+                        steckers.append(' ');
+                    }
+                    steckers.append('(')
+                        .appendCodePoint(_alphabet.toCodePoint(a))
+                        .appendCodePoint(_alphabet.toCodePoint(v))
+                        .append(')');
+                }
+            }
+            return new Stop(_order.clone(), setting.toString(),
+                            steckers.toString());
+        }
+
+        /** Number of rotor slots. */
+        private final int _slots;
+        /** The rotor order being scanned. */
+        private String[] _order;
+        /** The rotors of _order. */
+        private Rotor[] _rotors;
+        /** _forward[i] is the forward table of the rotor in slot I. */
+        private final int[][] _forward;
+        /** _backward[i] is the inverse table of the rotor in slot I. */
+        private final int[][] _backward;
+        /** _notches[i][k] is true iff the rotor in slot I has a notch at
+         *  setting K. */
+        private final boolean[][] _notches;
+        /** Offset tables of the rotor in the last slot, or null. */
+        private OffsetTables _lastOffsets;
+        /** Steps the rotors. */
+        private JumpAhead _jump;
+        /** _fast[i] is the setting of the last rotor on crib position I. */
+        private final int[] _fast;
+        /** _core[i] is the substitution made on crib position I by the
+         *  rotors other than the last. */
+        private final int[][] _core;
+        /** _coreInverse[i] is the inverse of _core[i]. */
+        private final int[][] _coreInverse;
+        /** _coreKey[i] holds the settings for which _core[i] was
+         *  computed. */
+        private final int[][] _coreKey;
+        /** _mark[a * size + v] is the stamp of the last test to imply
+         *  that the plugboard takes letter A to V. */
+        private final int[] _mark;
+        /** _letterStamp[a] is the stamp of the last test to give letter A
+         *  a value. */
+        private final int[] _letterStamp;
+        /** _value[a] is the value given to letter A by the test
+         *  _letterStamp[a]. */
+        private final int[] _value;
+        /** Pairs of letter and value waiting to be followed. */
+        private final int[] _stack;
+        /** Number of entries of _stack in use. */
+        private int _top;
+        /** Stamp of the current test. */
+        private int _stamp;
+    }
+
+    /** Largest alphabet searched. */
+    static final int MAX_SIZE = 1024;
+
+    /** The configured machine whose rotors are searched. */
+    private final Machine _machine;
+    /** Its alphabet. */
+    private final Alphabet _alphabet;
+    /** Size of the alphabet. */
+    private final int _size;
+    /** Number of characters of ciphertext before the crib. */
+    private final int _offset;
+    /** Length of the crib. */
+    private final int _length;
+    /** The edges of the menu at letter A, as indices into _adjOther,
+     *  _adjPosn, and _adjForward, are _adjStart[a] to
+     *  _adjStart[a + 1] - 1. */
+    private int[] _adjStart;
+    /** The letter at the other end of each edge. */
+    private int[] _adjOther;
+    /** The crib position of each edge. */
+    private int[] _adjPosn;
+    /** True for edges leading from a crib letter to a ciphertext
+     *  letter. */
+    private boolean[] _adjForward;
+    /** The working storage of each thread running scans, allocated when
+     *  the thread first runs one. */
+    private final ThreadLocal<Workspace> _workspaces =
+        ThreadLocal.withInitial(Workspace::new);
+    /** The test letter. */
+    private int _test;
+    /** Number of loops in the menu around the test letter. */
+    private int _loops;
+}
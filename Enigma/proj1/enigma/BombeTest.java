@@ -0,0 +1,243 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.TemporaryFolder;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static enigma.TestUtils.NAVALA;
+import static enigma.TestUtils.UPPER;
+
+/** The suite of all JUnit tests for the Bombe class.
+ *  @author Won Shil Park
+ */
+public class BombeTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /** Directory for configurations and output. */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return a 4-slot, 3-pawl machine with reflector B and naval rotors
+     *  I-V available. */
+    static Machine shortNaval() {
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        String[] moving = { "I", "II", "III", "IV", "V" };
+        String notches = "QEVJZ";
+        for (int i = 0; i < moving.length; i += 1) {
+            rotors.add(new MovingRotor(moving[i],
+                           new Permutation(NAVALA.get(moving[i]), UPPER),
+                           notches.substring(i, i + 1)));
+        }
+        rotors.add(new Reflector("B", new Permutation(NAVALA.get("B"),
+                                                      UPPER)));
+        return new Machine(UPPER, 4, 3, rotors);
+    }
+
+    /** Return a 4-slot machine with a 6-character alphabet and two
+     *  reflectors, a fixed rotor, and three moving rotors available. */
+    private static Machine smallMachine() {
+        Alphabet alpha = new Alphabet("ABCDEF");
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("R", new Permutation("(AD)(BF)(CE)",
+                                                      alpha)));
+        rotors.add(new Reflector("S", new Permutation("(AB)(CD)(EF)",
+                                                      alpha)));
+        rotors.add(new FixedRotor("N", new Permutation("(ACE)", alpha)));
+        rotors.add(new MovingRotor("L", new Permutation("(ABC)", alpha),
+                                   "A"));
+        rotors.add(new MovingRotor("M", new Permutation("(AFBE)", alpha),
+                                   "CD"));
+        rotors.add(new MovingRotor("F", new Permutation("(AEDC)", alpha),
+                                   "B"));
+        return new Machine(alpha, 4, 2, rotors);
+    }
+
+    /** Return the cycles of a random permutation of the characters of
+     *  ALPHA from RANDOM: one long cycle, or pairs if REFLECTING. */
+    private static String randomCycles(List<Character> alpha,
+                                       boolean reflecting, Random random) {
+        ArrayList<Character> chars = new ArrayList<>(alpha);
+        Collections.shuffle(chars, random);
+        StringBuilder cycles = new StringBuilder("(");
+        for (int i = 0; i < chars.size(); i += 1) {
+            if (reflecting && i > 0 && i % 2 == 0) {
+                cycles.append(") (");
+            }
+            cycles.append(chars.get(i));
+        }
+        return cycles.append(")").toString();
+    }
+
+    /** Return true iff STOP is at rotor order ORDER and settings SETTING,
+     *  with steckers that are all cycles of PLUGBOARD. */
+    private static boolean matches(Bombe.Stop stop, String[] order,
+                                   String setting, Permutation plugboard) {
+        if (!String.join(" ", stop.rotors()).equals(String.join(" ", order))
+            || !stop.setting().equals(setting)) {
+            return false;
+        }
+        Alphabet alpha = plugboard.alphabet();
+        String steckers = stop.steckers();
+        for (int k = 0; k < steckers.length(); k += 5) {
+            int a = alpha.toInt(steckers.charAt(k + 1)),
+                b = alpha.toInt(steckers.charAt(k + 2));
+            if (plugboard.permute(a) != b) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Return true iff some stop in STOPS matches ORDER, SETTING, and
+     *  PLUGBOARD (see matches). */
+    private static boolean found(List<Bombe.Stop> stops, String[] order,
+                                 String setting, Permutation plugboard) {
+        for (Bombe.Stop stop : stops) {
+            if (matches(stop, order, setting, plugboard)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkNavalStop() {
+        Machine m = shortNaval();
+        String[] order = { "B", "III", "I", "V" };
+        Permutation plugboard =
+            new Permutation("(HQ) (EX) (IP) (TR) (BY) (AK)", UPPER);
+        m.insertRotors(order);
+        m.setRotors("QDV");
+        m.setPlugboard(plugboard);
+        String crib = "WETTERVORHERSAGEBISKAYA";
+        String ciphertext = m.convert("XYZZY" + crib + "HEUTE");
+        Bombe bombe = new Bombe(shortNaval(), ciphertext, crib, 5);
+        assertTrue(bombe.loops() > 0);
+        List<Bombe.Stop> stops = bombe.search(order);
+        assertTrue(found(stops, order, "QDV", plugboard));
+        assertTrue(stops.size() < 10);
+    }
+
+    @Test
+    public void checkAllOrders() throws Exception {
+        Machine m = smallMachine();
+        Bombe bombe = new Bombe(m, "ABCDEF", "BCDEFA", 0);
+        List<String[]> orders = bombe.orders();
+        assertEquals(2 * 3 * 2, orders.size());
+
+        Random random = new Random(61);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            for (int trial = 0; trial < 10; trial += 1) {
+                String[] order = orders.get(random.nextInt(orders.size()));
+                String setting = "", plain = "";
+                for (int i = 0; i < 3; i += 1) {
+                    setting += "ABCDEF".charAt(random.nextInt(6));
+                }
+                for (int i = 0; i < 30; i += 1) {
+                    plain += "ABCDEF".charAt(random.nextInt(6));
+                }
+                Permutation plugboard =
+                    new Permutation("(AE)", m.alphabet());
+                m.insertRotors(order);
+                m.setRotors(setting);
+                m.setPlugboard(plugboard);
+                bombe = new Bombe(m, m.convert(plain), plain, 0);
+                List<Bombe.Stop> stops = new ArrayList<>();
+                for (Future<List<Bombe.Stop>> result
+                         : bombe.submit(pool, orders)) {
+                    stops.addAll(Bombe.await(result));
+                }
+                assertTrue(found(stops, order, setting, plugboard));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void checkMenu() {
+        Bombe bombe = new Bombe(shortNaval(), "ABC DA", "BCAAB", 0);
+        assertEquals(2, bombe.loops());
+        assertEquals(0, bombe.testLetter());
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkCribTooLong() {
+        new Bombe(shortNaval(), "ABCDE", "ABCD", 2);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkBadCharacter() {
+        new Bombe(shortNaval(), "ABCDE", "AB3", 0);
+    }
+
+    @Test
+    public void checkCatalogInBoundedHeap() throws Exception {
+        ArrayList<Character> alpha = new ArrayList<>();
+        for (char c = '!'; alpha.size() < 64; c += 1) {
+            if ("()*".indexOf(c) == -1 && !Character.isLowerCase(c)) {
+                alpha.add(c);
+            }
+        }
+        StringBuilder config = new StringBuilder();
+        for (char c : alpha) {
+            config.append(c);
+        }
+        config.append("\n 3 2\n");
+        Random random = new Random(61);
+        config.append(" Z R ").append(randomCycles(alpha, true, random))
+            .append("\n");
+        for (int i = 0; i < 6; i += 1) {
+            config.append(" R").append(i).append(" M")
+                .append(alpha.get(random.nextInt(alpha.size()))).append(" ")
+                .append(randomCycles(alpha, false, random)).append("\n");
+        }
+        Path conf = folder.getRoot().toPath().resolve("wide.conf");
+        Files.write(conf, config.toString().getBytes(StandardCharsets.UTF_8));
+
+        Machine m = Main.readConfig(conf.toString());
+        String[] order = { "Z", "R4", "R1" };
+        m.insertRotors(order);
+        m.setRotors("Q7");
+        String crib = "ENIGMA+BOMBE=ULTRA.SEARCHED";
+        String ciphertext = m.convert(crib);
+
+        /* Holding every task's working storage at once, as 30 rotor
+         * orders times 64 first settings, would need well over this
+         * heap. */
+        File output = folder.newFile("stops.txt");
+        Process bombe = new ProcessBuilder(
+            Paths.get(System.getProperty("java.home"), "bin", "java")
+                .toString(), "-Xmx24m",
+            "-cp", System.getProperty("java.class.path"), "enigma.Bombe",
+            "--threads=2", conf.toString(), ciphertext, crib)
+            .redirectErrorStream(true).redirectOutput(output).start();
+        assertEquals(0, bombe.waitFor());
+        List<String> stops = Files.readAllLines(output.toPath());
+        assertTrue(stops.contains("* Z R4 R1 Q7"));
+    }
+}
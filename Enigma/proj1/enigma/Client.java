@@ -0,0 +1,298 @@
+package enigma;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static enigma.EnigmaException.*;
+
+/** A client of a Server on this host, for testing it.  See Server for the
+ *  protocol.
+ *  @author Won Shil Park
+ */
+public final class Client {
+
+    /** Send lines of input for Main to a Server, as specified by ARGS.
+     *  ARGS[0] is optional; when present, it names the input file, and
+     *  otherwise input comes from the standard input.  In one session,
+     *  the converted messages are written to the standard output as Main
+     *  writes them; after an error, the client reports it and exits with
+     *  code 1, as Main does.
+     *  Options are arguments starting with "--", and may appear anywhere:
+     *    --port=N        Connect to the server on port N (required).
+     *    --sessions=N    Instead, open N sessions at once, send the whole
+     *                    input in each, one request at a time, and report
+     *                    the rate of requests and their latencies. */
+    public static void main(String... args) {
+        try {
+            run(args);
+            return;
+        } catch (EnigmaException excp) {
+            System.out.flush();
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Perform the requests specified by ARGS (see main). */
+    private static void run(String[] args) {
+        int port = -1, sessions = 0;
+        ArrayList<String> files = new ArrayList<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                files.add(arg);
+            } else if (Options.name(arg).equals("--port")) {
+                port = Options.intValue(arg, Options.requiredValue(arg), 1);
+            } else if (Options.name(arg).equals("--sessions")) {
+                sessions = Options.intValue(arg, Options.requiredValue(arg),
+                                            1);
+            } else {
+                throw error("unknown option %s", arg);
+            }
+        }
+        if (port < 0 || files.size() > 1) {
+            throw error("need --port and at most one input file");
+        }
+        try (BufferedReader input = new BufferedReader(new InputStreamReader(
+                 files.isEmpty() ? System.in : open(files.get(0))))) {
+            if (sessions == 0) {
+                Client client = new Client(port);
+                try {
+                    stream(client, input);
+                } finally {
+                    client.close();
+                }
+            } else {
+                ArrayList<String> lines = new ArrayList<>();
+                for (String line = input.readLine(); line != null;
+                     line = input.readLine()) {
+                    lines.add(line);
+                }
+                load(port, lines, sessions);
+            }
+        } catch (IOException excp) {
+            throw error("could not read input: %s", excp.getMessage());
+        }
+    }
+
+    /** Return a stream reading the file named NAME. */
+    private static InputStream open(String name) {
+        try {
+            return new FileInputStream(name);
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
+    /** Send each line of INPUT to CLIENT, and write the messages in its
+     *  replies to the standard output.  Lines are sent on another thread
+     *  while replies arrive, at most WINDOW requests ahead of them. */
+    private static void stream(Client client, BufferedReader input) {
+        BlockingQueue<Integer> sent = new ArrayBlockingQueue<>(WINDOW);
+        Thread sender = new Thread(() -> {
+            try {
+                for (String line = input.readLine(); line != null;
+                     line = input.readLine()) {
+                    sent.put(line.startsWith("*") ? SETTING : MESSAGE);
+                    client.send(line);
+                    if (!input.ready()) {
+                        client.flush();
+                    }
+                }
+                client.flush();
+            } catch (IOException | InterruptedException | EnigmaException
+                     excp) {
+                /* The replies end early. */
+            }
+            try {
+                sent.put(END);
+            } catch (InterruptedException excp) {
+                /* Nothing is waiting. */
+            }
+        }, "sender");
+        sender.setDaemon(true);
+        sender.start();
+        PrintWriter out = new PrintWriter(new BufferedWriter(
+                                              new OutputStreamWriter(
+                                                  System.out)));
+        try {
+            for (int kind = take(sent); kind != END; kind = take(sent)) {
+                String reply = client.receive();
+                if (kind == MESSAGE) {
+                    out.println(reply);
+                }
+            }
+        } finally {
+            out.flush();
+        }
+    }
+
+    /** Return the next element of QUEUE, waiting for one. */
+    private static int take(BlockingQueue<Integer> queue) {
+        try {
+            return queue.take();
+        } catch (InterruptedException excp) {
+            throw error("interrupted");
+        }
+    }
+
+    /** Open SESSIONS sessions with the server on PORT, and when all are
+     *  open, send each of LINES in each of them, one request at a time.
+     *  Report the number of requests per second and their latencies on
+     *  the standard output. */
+    private static void load(int port, List<String> lines, int sessions) {
+        Stats.Histogram latency = new Stats.Histogram();
+        CountDownLatch open = new CountDownLatch(sessions),
+            start = new CountDownLatch(1);
+        ExecutorService pool = Server.newSessionExecutor();
+        ArrayList<Future<?>> results = new ArrayList<>();
+        long began;
+        try {
+            for (int k = 0; k < sessions; k += 1) {
+                results.add(pool.submit(() -> {
+                    Client client;
+                    try {
+                        client = new Client(port);
+                    } finally {
+                        open.countDown();
+                    }
+                    try {
+                        start.await();
+                        for (String line : lines) {
+                            long t0 = System.nanoTime();
+                            client.request(line);
+                            latency.add(System.nanoTime() - t0);
+                        }
+                    } finally {
+                        client.close();
+                    }
+                    return null;
+                }));
+            }
+            open.await();
+            began = System.nanoTime();
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } catch (InterruptedException excp) {
+            throw error("interrupted");
+        } catch (ExecutionException excp) {
+            if (excp.getCause() instanceof EnigmaException) {
+                throw (EnigmaException) excp.getCause();
+            }
+            throw error("session failed: %s", excp.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        double seconds = (System.nanoTime() - began) / 1e9;
+        System.out.printf("%d sessions, %d requests in %.3f s:"
+                          + " %.0f requests/s%n", sessions,
+                          latency.count(), seconds,
+                          latency.count() / seconds);
+        Stats.Histogram.printHeader(System.out, "");
+        latency.print(System.out, "request");
+    }
+
+    /** A client of the server on loopback port PORT, with a session of
+     *  its own. */
+    Client(int port) {
+        try {
+            _socket = new Socket(InetAddress.getLoopbackAddress(), port);
+            _socket.setTcpNoDelay(true);
+            _in = new BufferedReader(new InputStreamReader(
+                                         _socket.getInputStream(),
+                                         StandardCharsets.UTF_8));
+            _out = new BufferedWriter(new OutputStreamWriter(
+                                          _socket.getOutputStream(),
+                                          StandardCharsets.UTF_8));
+        } catch (IOException excp) {
+            throw error("could not connect to port %d: %s", port,
+                        excp.getMessage());
+        }
+    }
+
+    /** Send the request LINE, and return the reply: the converted message,
+     *  or "" for a setting line.  Throws an EnigmaException describing the
+     *  error reported by the server, if any. */
+    String request(String line) {
+        send(line);
+        flush();
+        return receive();
+    }
+
+    /** Send the request LINE, which is buffered until flush(). */
+    void send(String line) {
+        try {
+            _out.write(line);
+            _out.write('\n');
+        } catch (IOException excp) {
+            throw error("could not send: %s", excp.getMessage());
+        }
+    }
+
+    /** Send all the requests buffered so far. */
+    void flush() {
+        try {
+            _out.flush();
+        } catch (IOException excp) {
+            throw error("could not send: %s", excp.getMessage());
+        }
+    }
+
+    /** Return the reply to the oldest request not yet answered, as for
+     *  request. */
+    String receive() {
+        String reply;
+        try {
+            reply = _in.readLine();
+        } catch (IOException excp) {
+            throw error("could not receive: %s", excp.getMessage());
+        }
+        if (reply == null || reply.isEmpty()) {
+            throw error("server closed the session");
+        } else if (reply.charAt(0) == '-') {
+            throw error("%s", reply.substring(1));
+        }
+        return reply.substring(1);
+    }
+
+    /** End my session. */
+    void close() {
+        try {
+            _socket.close();
+        } catch (IOException excp) {
+            /* Already closed. */
+        }
+    }
+
+    /** Kinds of requests sent ahead of their replies, and the mark of the
+     *  end of requests. */
+    private static final int MESSAGE = 0, SETTING = 1, END = -1;
+    /** Number of requests that may be sent ahead of their replies. */
+    private static final int WINDOW = 256;
+
+    /** Connection to the server. */
+    private final Socket _socket;
+    /** Replies from the server. */
+    private final BufferedReader _in;
+    /** Requests to the server. */
+    private final Writer _out;
+}
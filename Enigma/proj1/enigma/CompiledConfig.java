@@ -0,0 +1,433 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+
+import static enigma.EnigmaException.*;
+
+/** Machine configurations compiled into a binary form, which is read by
+ *  mapping it into memory.  Loading one parses nothing and makes no
+ *  rotors: each rotor is made from its compiled tables, copied out in
+ *  bulk, only when first asked for (see Catalog), so that a run does
+ *  work only for the rotors it uses.  The compiled form of the
+ *  configuration file NAME is the file NAME.bin beside it.  It records
+ *  the length and a 64-bit checksum (CRC-32C and CRC-32) of the
+ *  configuration's bytes, and the character set it was read in, and
+ *  ConfigReader uses it only while those match, so that editing the
+ *  configuration makes its compiled form stale, and the text is read
+ *  instead, until it is compiled again.
+ *
+ *  A compiled file holds MAGIC, the source's length and checksum, and the
+ *  length and bytes of the name of its character set, followed by the
+ *  number of rotor slots and of pawls, the size S of the alphabet and its
+ *  code points, the number R of rotors, R offsets of the rotors'
+ *  descriptions, and the descriptions.  Each description holds the
+ *  rotor's kind (MOVING, FIXED, or REFLECTOR), the length and UTF-8 bytes
+ *  of its name, the number of its notches and their positions, and its
+ *  forward and inverse tables, of S entries each.  Numbers are
+ *  little-endian, as most machines store them, so that tables are copied
+ *  straight into arrays.  The source's length and checksum take eight
+ *  bytes, and all other numbers four.  Names are padded with zero bytes
+ *  to whole ints, and offsets count ints from the number of rotor slots.
+ *  A rotor's tables are checked when the rotor is made: a damaged body,
+ *  which the source's checksum does not cover, is reported as an error
+ *  rather than making a rotor that is not a permutation.
+ *  @author Won Shil Park
+ */
+public final class CompiledConfig {
+
+    /** Compile the configuration files named by ARGS, in the default
+     *  character set, each to the file whose name adds SUFFIX to its own.
+     *  Exits with code 1 after an error. */
+    public static void main(String... args) {
+        try {
+            if (args.length == 0) {
+                throw error("need at least one configuration file");
+            }
+            for (String name : args) {
+                compile(name, Charset.defaultCharset());
+            }
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Suffix added to the name of a configuration file to name its
+     *  compiled form. */
+    static final String SUFFIX = ".bin";
+
+    /** Return the path of the compiled form of configuration file
+     *  CONFIG. */
+    static Path compiledPath(Path config) {
+        return config.resolveSibling(config.getFileName() + SUFFIX);
+    }
+
+    /** Compile the configuration file named NAME, in character set
+     *  CHARSET, to compiledPath(NAME).  Reports errors in the
+     *  configuration as Main would. */
+    static void compile(String name, Charset charset) {
+        Path file;
+        ByteBuffer source;
+        try {
+            Path config = Paths.get(name);
+            file = compiledPath(config);
+            source = ByteBuffer.wrap(Files.readAllBytes(config));
+        } catch (IOException | InvalidPathException excp) {
+            throw error("could not open %s", name);
+        }
+        Machine m = new ConfigReader(charset.decode(source.duplicate()))
+            .read();
+        Path temp = file.resolveSibling(file.getFileName() + "."
+                                        + ProcessHandle.current().pid()
+                                        + ".tmp");
+        try {
+            try {
+                write(temp, source, charset, m);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING,
+                           StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException excp) {
+            throw error("could not write %s: %s", file, excp.getMessage());
+        }
+    }
+
+    /** Return the machine described by compiled file FILE, with no rotors
+     *  inserted, if FILE is the compiled form of configuration SOURCE (its
+     *  remaining bytes) in character set CHARSET.  Otherwise, including
+     *  when FILE does not exist or is malformed, return null.  SOURCE is
+     *  not changed. */
+    static Machine load(Path file, ByteBuffer source, Charset charset) {
+        try (FileChannel in = FileChannel.open(file)) {
+            long length = in.size();
+            if (length > Integer.MAX_VALUE) {
+                return null;
+            }
+            ByteBuffer compiled = in.map(FileChannel.MapMode.READ_ONLY, 0,
+                                         length)
+                .order(ByteOrder.LITTLE_ENDIAN);
+            if (compiled.getInt() != MAGIC
+                || compiled.getLong() != source.remaining()
+                || compiled.getLong() != checksum(source)) {
+                return null;
+            }
+            byte[] name = new byte[compiled.getInt()];
+            compiled.get(name);
+            compiled.position(compiled.position() + padded(name.length)
+                              - name.length);
+            if (!Arrays.equals(name, charsetName(charset))) {
+                return null;
+            }
+            return read(compiled.slice().order(ByteOrder.LITTLE_ENDIAN));
+        } catch (IOException | BufferUnderflowException
+                 | IndexOutOfBoundsException | IllegalArgumentException
+                 | EnigmaException excp) {
+            return null;
+        }
+    }
+
+    /** Return a checksum of the remaining bytes of SOURCE, which is not
+     *  changed: their CRC-32C in the upper half, and their CRC-32 in the
+     *  lower. */
+    static long checksum(ByteBuffer source) {
+        CRC32C upper = new CRC32C();
+        CRC32 lower = new CRC32();
+        upper.update(source.duplicate());
+        lower.update(source.duplicate());
+        return upper.getValue() << Integer.SIZE | lower.getValue();
+    }
+
+    /** Return the name of CHARSET, as stored in a compiled file. */
+    private static byte[] charsetName(Charset charset) {
+        return charset.name().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Return LENGTH rounded up to a whole number of ints. */
+    private static int padded(int length) {
+        return (length + Integer.BYTES - 1) & -Integer.BYTES;
+    }
+
+    /** Write the compiled form of machine M, read from configuration
+     *  SOURCE in character set CHARSET, to the new file FILE. */
+    private static void write(Path file, ByteBuffer source, Charset charset,
+                              Machine m) throws IOException {
+        Alphabet alpha = m.alphabet();
+        int size = alpha.size(), count = m.availableRotors().size();
+        ArrayList<byte[]> names = new ArrayList<>(count);
+        ArrayList<int[]> notches = new ArrayList<>(count);
+        int[] offsets = new int[count];
+        int offset = HEADER_INTS + size + 1 + count;
+        for (Rotor r : m.availableRotors()) {
+            int[] positions = new int[size];
+            int n = 0;
+            for (int k = 0; k < size; k += 1) {
+                if (r.atNotch(k)) {
+                    positions[n] = k;
+                    n += 1;
+                }
+            }
+            offsets[names.size()] = offset;
+            names.add(r.name().getBytes(StandardCharsets.UTF_8));
+            notches.add(Arrays.copyOf(positions, n));
+            offset += 3 + padded(names.get(names.size() - 1).length)
+                / Integer.BYTES + n + 2 * size;
+        }
+        try (FileChannel out = FileChannel.open(file,
+                                                StandardOpenOption.CREATE_NEW,
+                                                StandardOpenOption.WRITE)) {
+            ByteBuffer buf = ByteBuffer.allocateDirect(WRITE_BUFFER)
+                .order(ByteOrder.LITTLE_ENDIAN);
+            byte[] name = charsetName(charset);
+            buf.putInt(MAGIC).putLong(source.remaining())
+                .putLong(checksum(source)).putInt(name.length).put(name)
+                .put(new byte[padded(name.length) - name.length])
+                .putInt(m.numRotors()).putInt(m.numPawls()).putInt(size);
+            int[] chars = new int[size];
+            for (int k = 0; k < size; k += 1) {
+                chars[k] = alpha.toCodePoint(k);
+            }
+            putInts(buf, out, chars);
+            room(buf, out, Integer.BYTES);
+            buf.putInt(count);
+            putInts(buf, out, offsets);
+            int i = 0;
+            for (Rotor r : m.availableRotors()) {
+                name = names.get(i);
+                room(buf, out, 3 * Integer.BYTES + padded(name.length));
+                buf.putInt(r.reflecting() ? REFLECTOR
+                           : r.rotates() ? MOVING : FIXED)
+                    .putInt(name.length).put(name)
+                    .put(new byte[padded(name.length) - name.length])
+                    .putInt(notches.get(i).length);
+                putInts(buf, out, notches.get(i));
+                putInts(buf, out, r.permutation().forwardTable());
+                putInts(buf, out, r.permutation().inverseTable());
+                i += 1;
+            }
+            drain(buf, out);
+            out.force(false);
+        }
+    }
+
+    /** Put VALUES into BUF, writing it to OUT as it fills. */
+    private static void putInts(ByteBuffer buf, FileChannel out,
+                                int[] values) throws IOException {
+        for (int k = 0; k < values.length; ) {
+            room(buf, out, Integer.BYTES);
+            int n = Math.min(values.length - k,
+                             buf.remaining() / Integer.BYTES);
+            buf.asIntBuffer().put(values, k, n);
+            buf.position(buf.position() + n * Integer.BYTES);
+            k += n;
+        }
+    }
+
+    /** Write the contents of BUF to OUT, if need be, so that it has room
+     *  for at least BYTES bytes (no more than its capacity). */
+    private static void room(ByteBuffer buf, FileChannel out, int bytes)
+        throws IOException {
+        if (buf.remaining() < bytes) {
+            drain(buf, out);
+        }
+    }
+
+    /** Write the contents of BUF to OUT, and clear BUF. */
+    private static void drain(ByteBuffer buf, FileChannel out)
+        throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) {
+            out.write(buf);
+        }
+        buf.clear();
+    }
+
+    /** Return the machine described by COMPILED, which starts with the
+     *  number of rotor slots.  Throws an EnigmaException or
+     *  IndexOutOfBoundsException if it is malformed. */
+    private static Machine read(ByteBuffer compiled) {
+        IntBuffer ints = compiled.asIntBuffer();
+        int numRotors = ints.get(0), numPawls = ints.get(1),
+            size = ints.get(2);
+        if (size <= 0 || size > ints.limit()) {
+            throw error("malformed");
+        }
+        int[] chars = new int[size];
+        ints.get(HEADER_INTS, chars);
+        Alphabet alpha = new Alphabet(new String(chars, 0, size));
+        int count = ints.get(HEADER_INTS + size);
+        if (count < 0 || count > ints.limit()) {
+            throw error("malformed");
+        }
+        int[] offsets = new int[count];
+        ints.get(HEADER_INTS + size + 1, offsets);
+        int end = HEADER_INTS + size + 1 + count;
+        for (int offset : offsets) {
+            if (offset != end) {
+                throw error("malformed");
+            }
+            end = Catalog.end(ints, offset, size);
+        }
+        if (end != ints.limit()) {
+            throw error("malformed");
+        }
+        return new Machine(alpha, numRotors, numPawls,
+                           new Catalog(compiled, ints, offsets, alpha));
+    }
+
+    /** The rotors of a compiled configuration.  Each is made from its
+     *  description when first asked for, and the same rotor is returned
+     *  from then on.  May be used by several threads at once. */
+    static final class Catalog extends AbstractList<Rotor>
+        implements RandomAccess {
+
+        /** The rotors described in COMPILED, whose ints are INTS, at
+         *  OFFSETS in INTS, with alphabet ALPHA. */
+        private Catalog(ByteBuffer compiled, IntBuffer ints, int[] offsets,
+                        Alphabet alpha) {
+            _compiled = compiled;
+            _ints = ints;
+            _offsets = offsets;
+            _alphabet = alpha;
+            _rotors = new AtomicReferenceArray<>(offsets.length);
+        }
+
+        @Override
+        public int size() {
+            return _offsets.length;
+        }
+
+        @Override
+        public Rotor get(int k) {
+            Rotor r = _rotors.get(k);
+            if (r == null) {
+                r = make(_offsets[k]);
+                Rotor other = _rotors.compareAndExchange(k, null, r);
+                if (other != null) {
+                    r = other;
+                }
+            }
+            return r;
+        }
+
+        /** Return the name of rotor #K, without making the rotor. */
+        String name(int k) {
+            return new String(nameBytes(_offsets[k]),
+                              StandardCharsets.UTF_8);
+        }
+
+        /** Return the rotor described at OFFSET.  Throws an
+         *  EnigmaException if its notches are out of range, or its
+         *  forward table is not a permutation of the alphabet's indices
+         *  whose inverse is its inverse table. */
+        private Rotor make(int offset) {
+            int size = _alphabet.size(), kind = _ints.get(offset);
+            String name = new String(nameBytes(offset),
+                                     StandardCharsets.UTF_8);
+            int p = offset + 2 + padded(_ints.get(offset + 1))
+                / Integer.BYTES;
+            boolean[] notches = new boolean[size];
+            for (int n = _ints.get(p); n > 0; n -= 1) {
+                p += 1;
+                int k = _ints.get(p);
+                if (k < 0 || k >= size) {
+                    throw error("malformed compiled rotor %s", name);
+                }
+                notches[k] = true;
+            }
+            int[] forward = new int[size], inverse = new int[size];
+            _ints.get(p + 1, forward);
+            _ints.get(p + 1 + size, inverse);
+            for (int k = 0; k < size; k += 1) {
+                int c = forward[k];
+                if (c < 0 || c >= size || inverse[c] != k) {
+                    throw error("malformed compiled rotor %s", name);
+                }
+            }
+            Permutation perm = new Permutation(_alphabet, forward, inverse);
+            switch (kind) {
+            case MOVING:
+                return new MovingRotor(name, perm, notches);
+            case FIXED:
+                return new FixedRotor(name, perm);
+            default:
+                return new Reflector(name, perm);
+            }
+        }
+
+        /** Return the bytes of the name of the rotor described at
+         *  OFFSET. */
+        private byte[] nameBytes(int offset) {
+            byte[] name = new byte[_ints.get(offset + 1)];
+            _compiled.get((offset + 2) * Integer.BYTES, name);
+            return name;
+        }
+
+        /** Return the offset in INTS of the end of the description of a
+         *  rotor with an alphabet of SIZE characters at OFFSET, after
+         *  checking its kind, name, and notches.  Throws an
+         *  EnigmaException or IndexOutOfBoundsException if they are
+         *  malformed. */
+        static int end(IntBuffer ints, int offset, int size) {
+            int kind = ints.get(offset), length = ints.get(offset + 1);
+            if (kind < MOVING || kind > REFLECTOR || length < 0
+                || length > ints.limit() * Integer.BYTES) {
+                throw error("malformed");
+            }
+            int p = offset + 2 + padded(length) / Integer.BYTES,
+                notches = ints.get(p);
+            if (notches < 0 || notches > size) {
+                throw error("malformed");
+            }
+            for (int n = 1; n <= notches; n += 1) {
+                int k = ints.get(p + n);
+                if (k < 0 || k >= size) {
+                    throw error("malformed");
+                }
+            }
+            return p + 1 + notches + 2 * size;
+        }
+
+        /** The compiled configuration, from the number of rotor slots. */
+        private final ByteBuffer _compiled;
+        /** The ints of _compiled. */
+        private final IntBuffer _ints;
+        /** The offset in _ints of each rotor's description. */
+        private final int[] _offsets;
+        /** The alphabet of the configuration. */
+        private final Alphabet _alphabet;
+        /** The rotors made so far. */
+        private final AtomicReferenceArray<Rotor> _rotors;
+    }
+
+    /** Identifies a compiled configuration (version 1). */
+    private static final int MAGIC = 0x45434631;
+    /** Kinds of rotor. */
+    private static final int MOVING = 0, FIXED = 1, REFLECTOR = 2;
+    /** Number of ints before the alphabet's code points: the numbers of
+     *  rotor slots and of pawls, and the size of the alphabet. */
+    private static final int HEADER_INTS = 3;
+    /** Size of the buffer used to write compiled files. */
+    private static final int WRITE_BUFFER = 1 << 20;
+}
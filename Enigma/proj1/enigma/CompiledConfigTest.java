@@ -0,0 +1,263 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.TemporaryFolder;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the CompiledConfig class.
+ *  @author Won Shil Park
+ */
+public class CompiledConfigTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /** Directory for configurations. */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** A configuration with rotors of each kind, names of one to three
+     *  bytes in UTF-8, and a cycle continued on a second line. */
+    private static final String CONFIG = UPPER_STRING + "\n 5 3\n"
+        + " I MQ      (AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) (JZ) (S)\n"
+        + " II ME     (FIXVYOMW) (CDKLHUP) (ESZ) (BJ) (GR) (NT) (A) (Q)\n"
+        + " III MV    (ABDHPEJT) (CFLVMZOYQIRWUKXSG) (N)\n"
+        + " IV MJ     (AEPLIYWCOXMRFZBSTGJQNH) (DV) (KU)\n"
+        + " V\u00e9 MZAN (AVOLDRWFIUQ)(BZKSMNHYC) (EGTJPX)\n"
+        + " Beta N    (ALBEVFCYODJWUGNMQTZSKPR) (HIX)\n"
+        + " \u20acB R     (AE) (BN) (CK) (DQ) (FU) (GY) (HW) (IJ) (LO) (MP\n"
+        + "           RX) (SZ) (TV)\n";
+
+    /** A setting for CONFIG. */
+    private static final String SETTING =
+        "\u20acB Beta III IV V\u00e9 AXLE (HQ) (EX) (IP) (TR) (BY)";
+
+    /** Write TEXT to the file NAME in the temporary folder, in UTF-8, and
+     *  return its path. */
+    private Path write(String name, String text) throws IOException {
+        return Files.write(folder.getRoot().toPath().resolve(name),
+                           text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Return the machine read from the file named NAME in the temporary
+     *  folder, as Main reads it. */
+    private Machine read(String name) {
+        ConfigReader reader = ConfigReader.open(folder.getRoot().toPath(),
+                                                name,
+                                                StandardCharsets.UTF_8);
+        try {
+            return reader.read();
+        } finally {
+            reader.close();
+        }
+    }
+
+    /** Compile the file named NAME in the temporary folder. */
+    private void compile(String name) {
+        CompiledConfig.compile(folder.getRoot().toPath().resolve(name)
+                               .toString(), StandardCharsets.UTF_8);
+    }
+
+    /** Return true iff M's rotors come from a compiled configuration. */
+    private static boolean compiled(Machine m) {
+        return m.availableRotors() instanceof CompiledConfig.Catalog;
+    }
+
+    /** Check that M1 and M2 have the same configuration. */
+    private static void checkSame(Machine m1, Machine m2) {
+        assertEquals(m1.numRotors(), m2.numRotors());
+        assertEquals(m1.numPawls(), m2.numPawls());
+        int size = m1.alphabet().size();
+        assertEquals(size, m2.alphabet().size());
+        for (int k = 0; k < size; k += 1) {
+            assertEquals(m1.alphabet().toCodePoint(k),
+                         m2.alphabet().toCodePoint(k));
+        }
+        List<Rotor> r1 = new ArrayList<>(m1.availableRotors()),
+            r2 = new ArrayList<>(m2.availableRotors());
+        assertEquals(r1.size(), r2.size());
+        for (int i = 0; i < r1.size(); i += 1) {
+            Rotor a = r1.get(i), b = r2.get(i);
+            assertEquals(a.name(), b.name());
+            assertEquals(a.getClass(), b.getClass());
+            assertArrayEquals(a.permutation().forwardTable(),
+                              b.permutation().forwardTable());
+            assertArrayEquals(a.permutation().inverseTable(),
+                              b.permutation().inverseTable());
+            for (int k = 0; k < size; k += 1) {
+                assertEquals(a.atNotch(k), b.atNotch(k));
+            }
+        }
+    }
+
+    /** Return the conversion of MSG by M set as SETTING describes. */
+    private static String convert(Machine m, String msg) {
+        Main.configure(m, SETTING);
+        return m.convert(msg);
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkCompiled() throws IOException {
+        write("naval.conf", CONFIG);
+        Machine text = read("naval.conf");
+        assertFalse(compiled(text));
+        compile("naval.conf");
+        Machine m = read("naval.conf");
+        assertTrue(compiled(m));
+        checkSame(text, m);
+        assertEquals(convert(text, "FROM his shoulder Hiawatha"),
+                     convert(m, "FROM his shoulder Hiawatha"));
+    }
+
+    @Test
+    public void checkCatalog() throws IOException {
+        write("naval.conf", CONFIG);
+        compile("naval.conf");
+        CompiledConfig.Catalog catalog =
+            (CompiledConfig.Catalog) read("naval.conf").availableRotors();
+        assertEquals(7, catalog.size());
+        assertEquals("\u20acB", catalog.name(6));
+        assertEquals("V\u00e9", catalog.name(4));
+        assertSame(catalog.get(4), catalog.get(4));
+        assertEquals("V\u00e9", catalog.get(4).name());
+        assertTrue(catalog.get(4).atNotch(UPPER.toInt('N')));
+        assertTrue(catalog.get(6).reflecting());
+        assertEquals('R', catalog.get(6).permutation().permute('P'));
+    }
+
+    @Test
+    public void checkStale() throws IOException {
+        write("naval.conf", CONFIG);
+        compile("naval.conf");
+        String changed = CONFIG.replace(" III MV", " III MW");
+        write("naval.conf", changed);
+        Machine m = read("naval.conf");
+        assertFalse(compiled(m));
+        checkSame(new ConfigReader(changed).read(), m);
+        compile("naval.conf");
+        assertTrue(compiled(read("naval.conf")));
+        write("naval.conf", CONFIG + "\n");
+        assertFalse(compiled(read("naval.conf")));
+    }
+
+    @Test
+    public void checkMismatches() throws IOException {
+        Path config = write("naval.conf", CONFIG);
+        compile("naval.conf");
+        Path file = CompiledConfig.compiledPath(config);
+        ByteBuffer source = ByteBuffer.wrap(Files.readAllBytes(config));
+        assertNotNull(CompiledConfig.load(file, source,
+                                          StandardCharsets.UTF_8));
+        assertEquals(0, source.position());
+        assertNull(CompiledConfig.load(file, source,
+                                       StandardCharsets.ISO_8859_1));
+        assertNull(CompiledConfig.load(file.resolveSibling("none"), source,
+                                       StandardCharsets.UTF_8));
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+        assertNull(CompiledConfig.load(file, source,
+                                       StandardCharsets.UTF_8));
+        assertFalse(compiled(read("naval.conf")));
+    }
+
+    @Test
+    public void checkCorrupted() throws IOException {
+        Path config = write("naval.conf", CONFIG);
+        Rotor beta = new ArrayList<>(new ConfigReader(CONFIG).read()
+                                     .availableRotors()).get(5);
+        compile("naval.conf");
+        Path file = CompiledConfig.compiledPath(config);
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer table = ByteBuffer.allocate(UPPER_STRING.length()
+                                               * Integer.BYTES)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        table.asIntBuffer().put(beta.permutation().forwardTable());
+        int at = indexOf(bytes, table.array());
+        assertTrue(at > 0);
+        for (int bad : new int[] { 48, -1, beta.permutation().permute(1) }) {
+            ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(at, bad);
+            Files.write(file, bytes);
+            Machine m = read("naval.conf");
+            assertTrue(compiled(m));
+            CompiledConfig.Catalog catalog =
+                (CompiledConfig.Catalog) m.availableRotors();
+            assertEquals("III", catalog.get(2).name());
+            try {
+                catalog.get(5);
+                fail("corrupted rotor made");
+            } catch (EnigmaException excp) {
+                assertEquals("malformed compiled rotor Beta",
+                             excp.getMessage());
+            }
+        }
+    }
+
+    /** Return the index of the first occurrence of PATTERN in BYTES, or
+     *  -1 if there is none. */
+    private static int indexOf(byte[] bytes, byte[] pattern) {
+        for (int k = 0; k + pattern.length <= bytes.length; k += 1) {
+            if (Arrays.equals(bytes, k, k + pattern.length,
+                              pattern, 0, pattern.length)) {
+                return k;
+            }
+        }
+        return -1;
+    }
+
+    @Test
+    public void checkErrors() throws IOException {
+        write("dup.conf", CONFIG.replace(" II ME", " I ME"));
+        try {
+            compile("dup.conf");
+            fail("duplicate rotor compiled");
+        } catch (EnigmaException excp) {
+            assertEquals("duplicate rotor", excp.getMessage());
+        }
+        assertFalse(Files.exists(CompiledConfig.compiledPath(
+                                     folder.getRoot().toPath()
+                                     .resolve("dup.conf"))));
+        try {
+            compile("nosuch.conf");
+            fail("missing configuration compiled");
+        } catch (EnigmaException excp) {
+            assertTrue(excp.getMessage().startsWith("could not open"));
+        }
+    }
+
+    @Test
+    public void checkLargeAlphabet() throws IOException {
+        StringBuilder chars = new StringBuilder();
+        for (int k = 0; k < 1000; k += 1) {
+            chars.append((char) ('\u4e00' + k));
+        }
+        String alpha = chars.toString();
+        String config = alpha + "\n 3 1\n R1 R (" + alpha.substring(0, 2)
+            + ")\n F1 N (" + alpha.substring(2, 900) + ")\n M1 M"
+            + alpha.charAt(999) + " (" + alpha.substring(100, 999) + ")\n";
+        write("cjk.conf", config);
+        compile("cjk.conf");
+        Machine m = read("cjk.conf");
+        assertTrue(compiled(m));
+        checkSame(new ConfigReader(config).read(), m);
+    }
+}
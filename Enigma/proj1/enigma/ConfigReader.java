@@ -0,0 +1,308 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static enigma.EnigmaException.*;
+
+/** A reader of machine configurations.  The whole configuration is
+ *  decoded into one array of chars, which is then read in a single pass
+ *  with no Scanner and no copies of its lines: tokens are located by
+ *  their positions in the array, and cycles are added to each rotor's
+ *  permutation straight from it.  The names of the rotors read so far are
+ *  kept in a hash set, so that checking for duplicates takes constant
+ *  time per rotor, and catalogs of many thousands of rotors are read in a
+ *  fraction of a second.
+ *
+ *  A configuration file may have been compiled by CompiledConfig, in
+ *  which case its compiled form is read instead while it is up to date.
+ *
+ *  A configuration is an alphabet on the first line, followed by the
+ *  number of rotor slots and of pawls, and then one rotor per line: its
+ *  name, its type and notches, and its cycles.  A line that is indented
+ *  by more than one blank, or whose first non-blank character is '(',
+ *  continues the cycles of the rotor above it.  Blank lines are
+ *  ignored.
+ *  @author Won Shil Park
+ */
+final class ConfigReader {
+
+    /** A reader of the configuration in the file named NAME in directory
+     *  DIR (the current directory if null), in character set CHARSET.
+     *  The file is opened now, so that a missing file is reported before
+     *  any other file is opened, but not read until read(). */
+    static ConfigReader open(Path dir, String name, Charset charset) {
+        try {
+            Path file = dir == null ? Paths.get(name) : dir.resolve(name);
+            return new ConfigReader(FileChannel.open(file), file, name,
+                                    charset);
+        } catch (IOException | InvalidPathException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
+    /** A reader of the configuration TEXT. */
+    ConfigReader(CharSequence text) {
+        _text = text.toString().toCharArray();
+        _end = _text.length;
+    }
+
+    /** A reader of the configuration in FILE, open on PATH, which is
+     *  named NAME, in character set CHARSET. */
+    private ConfigReader(FileChannel file, Path path, String name,
+                         Charset charset) {
+        _file = file;
+        _path = path;
+        _name = name;
+        _charset = charset;
+    }
+
+    /** Return an Enigma machine configured as my configuration describes,
+     *  with no rotors inserted.  If my file has an up-to-date compiled
+     *  form (see CompiledConfig), the machine comes from that instead. */
+    Machine read() {
+        if (_text == null) {
+            ByteBuffer bytes = load();
+            Machine compiled =
+                CompiledConfig.load(CompiledConfig.compiledPath(_path),
+                                    bytes, _charset);
+            if (compiled != null) {
+                return compiled;
+            }
+            CharBuffer chars = _charset.decode(bytes);
+            _text = chars.array();
+            _end = chars.limit();
+        }
+        _chars = CharBuffer.wrap(_text);
+        _pos = 0;
+        _rotors = new ArrayList<>();
+        _names = new HashSet<>();
+        _cycles = null;
+        if (_pos == _end) {
+            throw error("shortened configuration file");
+        }
+        int lineEnd = lineEnd();
+        String chars = new String(_text, 0, lineEnd);
+        if (chars.isEmpty() || chars.indexOf(' ') != -1) {
+            throw error("Invalid input");
+        }
+        _alphabet = new Alphabet(chars);
+        nextLine(lineEnd);
+        int numRotors = nextInt("No numRotors"),
+            numPawls = nextInt("No numPawls");
+        if (numRotors <= numPawls) {
+            throw error("insufficient rotors");
+        }
+        if (_pos == _end) {
+            throw error("shortened configuration file");
+        }
+        nextLine(lineEnd());
+        while (_pos < _end) {
+            lineEnd = lineEnd();
+            int lineStart = _pos;
+            skipBlanks(lineEnd);
+            if (_pos == lineEnd) {
+                /* A blank line. */
+            } else if (_text[_pos] == '(' || _pos - lineStart > 1) {
+                if (_cycles == null) {
+                    throw error("cycles without a rotor");
+                }
+                _cycles.addCycles(_chars, _pos, lineEnd);
+            } else {
+                addRotor();
+                startRotor(lineEnd);
+            }
+            nextLine(lineEnd);
+        }
+        addRotor();
+        return new Machine(_alphabet, numRotors, numPawls,
+                           Collections.unmodifiableList(_rotors));
+    }
+
+    /** Release my file, if any. */
+    void close() {
+        if (_file != null) {
+            try {
+                _file.close();
+            } catch (IOException excp) {
+                /* Nothing was written. */
+            }
+        }
+    }
+
+    /** Return the contents of my file. */
+    private ByteBuffer load() {
+        try {
+            long size = _file.size();
+            if (size > Integer.MAX_VALUE) {
+                throw error("configuration file %s is too large", _name);
+            }
+            ByteBuffer bytes = ByteBuffer.allocate((int) size);
+            while (bytes.hasRemaining() && _file.read(bytes) >= 0) {
+                continue;
+            }
+            return bytes.flip();
+        } catch (IOException excp) {
+            throw error("could not open %s", _name);
+        }
+    }
+
+    /** Start reading the rotor whose description begins at _pos, on the
+     *  line that ends at LINEEND: read its name and type, and add the rest
+     *  of the line to its cycles. */
+    private void startRotor(int lineEnd) {
+        int nameStart = _pos;
+        skipToken(lineEnd);
+        _rotorName = new String(_text, nameStart, _pos - nameStart);
+        skipBlanks(lineEnd);
+        _typeStart = _pos;
+        skipToken(lineEnd);
+        _typeEnd = _pos;
+        if (_typeStart == _typeEnd) {
+            throw error("invalid description");
+        }
+        switch (_text[_typeStart]) {
+        case 'M':
+            if (_typeEnd - _typeStart < 2) {
+                throw error("invalid rotor format");
+            }
+            break;
+        case 'N': case 'R':
+            break;
+        default:
+            throw error("Invalid rotor");
+        }
+        if (!_names.add(_rotorName)) {
+            throw error("duplicate rotor");
+        }
+        skipBlanks(lineEnd);
+        _cycles = new Permutation("", _alphabet);
+        _cycles.addCycles(_chars, _pos, lineEnd);
+    }
+
+    /** Add the rotor being read, if any, to _rotors.  Each rotor is made
+     *  once its cycles are complete, so that rotors are never modified
+     *  once they are shared by machines. */
+    private void addRotor() {
+        if (_cycles == null) {
+            return;
+        }
+        switch (_text[_typeStart]) {
+        case 'M':
+            _rotors.add(new MovingRotor(_rotorName, _cycles,
+                                        new String(_text, _typeStart + 1,
+                                                   _typeEnd - _typeStart
+                                                   - 1)));
+            break;
+        case 'N':
+            _rotors.add(new FixedRotor(_rotorName, _cycles));
+            break;
+        default:
+            _rotors.add(new Reflector(_rotorName, _cycles));
+            break;
+        }
+        _cycles = null;
+    }
+
+    /** Return the integer in the next token, which may follow any
+     *  whitespace, including ends of lines.  Throws an error with message
+     *  MSG if there is none. */
+    private int nextInt(String msg) {
+        while (_pos < _end && Character.isWhitespace(_text[_pos])) {
+            _pos += 1;
+        }
+        int start = _pos;
+        skipToken(_end);
+        try {
+            return Integer.parseInt(_chars, start, _pos, 10);
+        } catch (NumberFormatException excp) {
+            throw error(msg);
+        }
+    }
+
+    /** Return the position of the end of the line containing _pos: the
+     *  position of its line terminator, or _end. */
+    private int lineEnd() {
+        int p;
+        for (p = _pos; p < _end && !lineTerminator(_text[p]); p += 1) {
+            continue;
+        }
+        return p;
+    }
+
+    /** Set _pos to the start of the line following the one that ends at
+     *  LINEEND, or to _end if there is none.  Lines end with "\r\n" or any
+     *  of the terminators recognized by Scanner.nextLine. */
+    private void nextLine(int lineEnd) {
+        _pos = lineEnd;
+        if (_pos < _end) {
+            _pos += 1;
+            if (_text[_pos - 1] == '\r' && _pos < _end
+                && _text[_pos] == '\n') {
+                _pos += 1;
+            }
+        }
+    }
+
+    /** Advance _pos past whitespace, but not past LIMIT. */
+    private void skipBlanks(int limit) {
+        while (_pos < limit && Character.isWhitespace(_text[_pos])) {
+            _pos += 1;
+        }
+    }
+
+    /** Advance _pos past non-whitespace, but not past LIMIT. */
+    private void skipToken(int limit) {
+        while (_pos < limit && !Character.isWhitespace(_text[_pos])) {
+            _pos += 1;
+        }
+    }
+
+    /** Return true iff C ends a line. */
+    private static boolean lineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u2028' || c == '\u2029'
+            || c == '\u0085';
+    }
+
+    /** My file, or null if I read a string. */
+    private FileChannel _file;
+    /** The path of my file. */
+    private Path _path;
+    /** The name of my file. */
+    private String _name;
+    /** The character set of my file. */
+    private Charset _charset;
+
+    /** The characters of my configuration, in _text[0 .. _end-1], or null
+     *  if not yet read. */
+    private char[] _text;
+    /** _text, as a CharSequence. */
+    private CharBuffer _chars;
+    /** The end of my configuration in _text. */
+    private int _end;
+    /** Position of the next character to read. */
+    private int _pos;
+
+    /** Alphabet of the configuration. */
+    private Alphabet _alphabet;
+    /** Rotors read so far. */
+    private ArrayList<Rotor> _rotors;
+    /** Names of the rotors read so far. */
+    private HashSet<String> _names;
+
+    /** Name of the rotor being read. */
+    private String _rotorName;
+    /** Bounds in _text of the type and notches of the rotor being read. */
+    private int _typeStart, _typeEnd;
+    /** Permutation of the rotor being read, or null if none is. */
+    private Permutation _cycles;
+}
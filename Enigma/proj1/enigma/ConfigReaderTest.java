@@ -0,0 +1,142 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the ConfigReader class.
+ *  @author Won Shil Park
+ */
+public class ConfigReaderTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** The start of a configuration for UPPER with 5 slots and 3 pawls. */
+    private static final String HEADER = UPPER_STRING + "\n 5 3\n";
+
+    /** A configuration of the naval rotors, with a cycle continued on a
+     *  second line. */
+    private static final String NAVAL = HEADER
+        + " I MQ      (AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) (JZ) (S)\n"
+        + " II ME     (FIXVYOMW) (CDKLHUP) (ESZ) (BJ) (GR) (NT) (A) (Q)\n"
+        + " III MV    (ABDHPEJT) (CFLVMZOYQIRWUKXSG) (N)\n"
+        + " IV MJ     (AEPLIYWCOXMRFZBSTGJQNH) (DV) (KU)\n"
+        + " V MZ      (AVOLDRWFIUQ)(BZKSMNHYC) (EGTJPX)\n"
+        + " Beta N    (ALBEVFCYODJWUGNMQTZSKPR) (HIX)\n"
+        + " B R       (AE) (BN) (CK) (DQ) (FU) (GY) (HW) (IJ) (LO) (MP\n"
+        + "           RX) (SZ) (TV)\n";
+
+    /** Return the machine configured by TEXT. */
+    private static Machine read(String text) {
+        return new ConfigReader(text).read();
+    }
+
+    /** Check that reading TEXT reports an error with message MSG. */
+    private static void checkError(String text, String msg) {
+        try {
+            read(text);
+            fail("no error for " + msg);
+        } catch (EnigmaException excp) {
+            assertEquals(msg, excp.getMessage());
+        }
+    }
+
+    /** Return M's rotors, by name. */
+    private static HashMap<String, Rotor> rotors(Machine m) {
+        HashMap<String, Rotor> result = new HashMap<>();
+        for (Rotor r : m.availableRotors()) {
+            result.put(r.name(), r);
+        }
+        return result;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkNaval() {
+        Machine m = read(NAVAL);
+        assertEquals(UPPER_STRING.length(), m.alphabet().size());
+        assertEquals(5, m.numRotors());
+        assertEquals(3, m.numPawls());
+        HashMap<String, Rotor> rotors = rotors(m);
+        assertEquals(7, rotors.size());
+        for (String name : new String[] { "I", "II", "III", "IV", "V",
+                                          "Beta" }) {
+            Permutation perm = rotors.get(name).permutation();
+            for (int k = 0; k < UPPER.size(); k += 1) {
+                assertEquals(msg(name, "wrong image of %d", k),
+                             NAVALA_MAP.get(name).charAt(k),
+                             UPPER.toChar(perm.permute(k)));
+            }
+        }
+        assertTrue(rotors.get("I").rotates());
+        assertTrue(rotors.get("I").atNotch(UPPER.toInt('Q')));
+        assertFalse(rotors.get("I").atNotch(UPPER.toInt('R')));
+        assertFalse(rotors.get("Beta").rotates());
+        assertTrue(rotors.get("B").reflecting());
+        assertTrue(rotors.get("B").permutation().derangement());
+        assertEquals('R', rotors.get("B").permutation().permute('P'));
+        assertEquals('M', rotors.get("B").permutation().permute('X'));
+    }
+
+    @Test
+    public void checkLineEndings() {
+        Machine m = read(NAVAL.replace("\n", "\r\n") + "\r\n\r\n");
+        assertEquals(7, rotors(m).size());
+        m = read(NAVAL.replace("\n", "\r").replace(" II ME", "\n II ME"));
+        assertEquals(7, rotors(m).size());
+        assertEquals('R', rotors(m).get("B").permutation().permute('P'));
+    }
+
+    @Test
+    public void checkErrors() {
+        checkError("", "shortened configuration file");
+        checkError(UPPER_STRING + "\n 5 3", "shortened configuration file");
+        checkError("AB C\n 5 3\n", "Invalid input");
+        checkError(UPPER_STRING + "\n x 3\n", "No numRotors");
+        checkError(UPPER_STRING + "\n 5\n", "No numPawls");
+        checkError(UPPER_STRING + "\n 3 5\n", "insufficient rotors");
+        checkError(HEADER + "  (AB)\n", "cycles without a rotor");
+        checkError(NAVAL.replace(" II ME", " I ME"), "duplicate rotor");
+        checkError(NAVAL.replace(" II ME", " II M "),
+                   "invalid rotor format");
+        checkError(NAVAL.replace(" II ME", " II X"), "Invalid rotor");
+        checkError(HEADER + " II\n", "invalid description");
+        checkError(NAVAL.replace(" II ME", " II M1"),
+                   "notch of rotor II not in alphabet");
+        checkError(NAVAL.replace("(FIXVYOMW)", "(FIXV1YOMW)"),
+                   "character '1' not in alphabet");
+        checkError(NAVAL.replace("(FIXVYOMW)", "(FIXVYOMW))"),
+                   "unbalanced ')' in (FIXVYOMW)) (CDKLHUP) (ESZ) (BJ) (GR)"
+                   + " (NT) (A) (Q)");
+    }
+
+    @Test
+    public void checkLargeCatalog() {
+        int n = 100000;
+        StringBuilder text = new StringBuilder(HEADER);
+        for (int k = 0; k < n; k += 1) {
+            text.append(" R").append(k).append(" MA (");
+            for (int i = 0; i < 4; i += 1) {
+                text.append(UPPER.toChar((k + 5 * i) % 20));
+            }
+            text.append(") (").append(UPPER.toChar(20 + k % 3))
+                .append("Z)\n");
+        }
+        Machine m = read(text.toString());
+        assertEquals(n, m.availableRotors().size());
+        Rotor last = rotors(m).get("R" + (n - 1));
+        assertEquals(UPPER.toInt('Z'),
+                     last.permutation().permute(20 + (n - 1) % 3));
+        checkError(text.append(" R17 N\n").toString(), "duplicate rotor");
+    }
+}
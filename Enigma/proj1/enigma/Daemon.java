@@ -0,0 +1,517 @@
+package enigma;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+import static enigma.EnigmaException.*;
+
+/** A resident process that runs Main for clients (Main with --daemon)
+ *  over a Unix domain socket, so that each run pays neither the start of
+ *  a JVM nor the loading and compiling of classes, and configurations
+ *  already read are reused while their files are unchanged.  A run in the
+ *  daemon gives its client the same output, errors, and exit code as a
+ *  run of Main by itself, reading and writing files as if in the client's
+ *  directory, and reading the client's standard input only if it needs
+ *  to.
+ *
+ *  A client sends its directory, character set, and arguments.  The
+ *  daemon then sends frames, each a type byte followed by an int: 'O' or
+ *  'E' and a number of bytes that follow for the standard output or
+ *  error; 'N' and a number of bytes of standard input wanted, to which
+ *  the client replies with an int count and that many bytes (0 at the end
+ *  of its input); and last, 'X' and the exit code.
+ *
+ *  Whoever can reach the socket can have the daemon read and write files
+ *  as its owner, so the socket must be in a directory that belongs to
+ *  that user and that no one else may use.  Both the daemon and its
+ *  clients check this, and the ownership of the socket, before using it.
+ *  @author Won Shil Park
+ */
+public final class Daemon {
+
+    /** Run Main for clients until killed.  Exits with code 1 after an
+     *  error.
+     *  Options are arguments starting with "--", and may appear anywhere:
+     *    --socket=PATH   Listen on the Unix domain socket PATH, in a
+     *                    directory private to the current user (default:
+     *                    defaultSocket()). */
+    public static void main(String... args) {
+        try {
+            Path socket = defaultSocket();
+            for (String arg : args) {
+                if (arg.startsWith("--socket=")) {
+                    socket = Paths.get(arg.substring("--socket=".length()));
+                } else {
+                    throw error("unknown argument %s", arg);
+                }
+            }
+            Daemon daemon = new Daemon(socket);
+            Runtime.getRuntime().addShutdownHook(new Thread(daemon::close));
+            System.out.printf("listening on %s%n", socket);
+            System.out.flush();
+            daemon.serve();
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Return the socket used when none is given: enigma.sock in the
+     *  directory $XDG_RUNTIME_DIR if it is set, and otherwise daemon.sock
+     *  in the directory enigma-USER of the temporary directory. */
+    static Path defaultSocket() {
+        String runtime = System.getenv("XDG_RUNTIME_DIR");
+        if (runtime != null && Paths.get(runtime).isAbsolute()) {
+            return Paths.get(runtime, "enigma.sock");
+        }
+        return Paths.get(System.getProperty("java.io.tmpdir"),
+                         "enigma-" + System.getProperty("user.name"),
+                         "daemon.sock");
+    }
+
+    /** A daemon listening on the Unix domain socket SOCKET, whose
+     *  directory is created, readable only by its owner, if it does not
+     *  exist.  A socket file left by a daemon of the same user that has
+     *  gone is replaced. */
+    Daemon(Path socket) {
+        _socket = socket;
+        try {
+            checkDirectory(directory(socket), true);
+            if (Files.exists(socket, LinkOption.NOFOLLOW_LINKS)) {
+                checkOwner(socket);
+                SocketChannel other;
+                try {
+                    other = SocketChannel.open(
+                        UnixDomainSocketAddress.of(socket));
+                } catch (IOException excp) {
+                    other = null;
+                }
+                if (other != null) {
+                    other.close();
+                    throw error("a daemon is already listening on %s",
+                                socket);
+                }
+                Files.delete(socket);
+            }
+            _listener = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            _listener.bind(UnixDomainSocketAddress.of(socket));
+            try {
+                Files.setPosixFilePermissions(
+                    socket, PosixFilePermissions.fromString("rw-------"));
+            } catch (UnsupportedOperationException excp) {
+                /* Rely on the permissions of the directory. */
+            }
+        } catch (IOException excp) {
+            throw error("could not listen on %s: %s", socket,
+                        excp.getMessage());
+        }
+        _runs = Server.newSessionExecutor();
+    }
+
+    /** Return the directory containing SOCKET. */
+    private static Path directory(Path socket) {
+        return socket.toAbsolutePath().getParent();
+    }
+
+    /** Check that DIR is a directory that belongs to the current user and
+     *  that no other user may read, write, or search, creating it so if it
+     *  does not exist and CREATE.  Return false if it does not exist. */
+    static boolean checkDirectory(Path dir, boolean create)
+        throws IOException {
+        if (create && !Files.exists(dir, LinkOption.NOFOLLOW_LINKS)) {
+            try {
+                Files.createDirectory(dir,
+                    PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+            } catch (UnsupportedOperationException excp) {
+                Files.createDirectory(dir);
+            } catch (FileAlreadyExistsException excp) {
+                /* Made meanwhile by someone else: checked below. */
+            }
+        }
+        if (!Files.exists(dir, LinkOption.NOFOLLOW_LINKS)) {
+            return false;
+        }
+        if (!Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS)) {
+            throw error("%s is not a directory", dir);
+        }
+        checkOwner(dir);
+        Set<PosixFilePermission> perms;
+        try {
+            perms = Files.getPosixFilePermissions(dir,
+                                                  LinkOption.NOFOLLOW_LINKS);
+        } catch (UnsupportedOperationException excp) {
+            return true;
+        }
+        if (!OWNER_ONLY.containsAll(perms)) {
+            throw error("%s is open to other users", dir);
+        }
+        return true;
+    }
+
+    /** Check that FILE, which is not followed if it is a link, belongs to
+     *  the current user. */
+    private static void checkOwner(Path file) throws IOException {
+        UserPrincipal owner = Files.getOwner(file, LinkOption.NOFOLLOW_LINKS),
+            user = file.getFileSystem().getUserPrincipalLookupService()
+                .lookupPrincipalByName(System.getProperty("user.name"));
+        if (!owner.equals(user)) {
+            throw error("%s belongs to %s", file, owner.getName());
+        }
+    }
+
+    /** Accept clients, running Main for each, until I am closed. */
+    void serve() {
+        while (true) {
+            SocketChannel client;
+            try {
+                client = _listener.accept();
+            } catch (IOException excp) {
+                if (!_listener.isOpen()) {
+                    return;
+                }
+                continue;
+            }
+            try {
+                _runs.execute(() -> run(client));
+            } catch (RejectedExecutionException excp) {
+                try {
+                    client.close();
+                } catch (IOException excp2) {
+                    /* Already closed. */
+                }
+            }
+        }
+    }
+
+    /** Stop listening, and remove my socket. */
+    void close() {
+        try {
+            _listener.close();
+            Files.deleteIfExists(_socket);
+        } catch (IOException excp) {
+            /* Already gone. */
+        }
+        _runs.shutdown();
+    }
+
+    /** Run Main as requested by CLIENT, and send it the results. */
+    private void run(SocketChannel client) {
+        try (client) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Channels.newInputStream(client)));
+            DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Channels.newOutputStream(client)));
+            if (in.readInt() != MAGIC) {
+                return;
+            }
+            Path dir = Paths.get(in.readUTF());
+            Charset charset = Charset.forName(in.readUTF());
+            String[] args = new String[in.readInt()];
+            for (int k = 0; k < args.length; k += 1) {
+                args[k] = in.readUTF();
+            }
+            Frames frames = new Frames(in, out);
+            PrintStream err = new PrintStream(frames.stream(STDERR), true,
+                                              charset);
+            int code;
+            try {
+                code = Main.run(args, dir, charset, frames.input(),
+                                new GroupWriter(frames.channel(), charset),
+                                err, _configs);
+            } catch (RuntimeException | Error excp) {
+                err.print("Exception in thread \"main\" ");
+                excp.printStackTrace(err);
+                code = 1;
+            }
+            err.flush();
+            frames.exit(code);
+        } catch (IOException | IllegalArgumentException excp) {
+            /* The client has gone, or is not one. */
+        }
+    }
+
+    /** Run Main in the daemon listening on SOCKET with arguments ARGS, as
+     *  if in directory DIR, forwarding standard input from IN and standard
+     *  output and error to OUT and ERR.  Return the exit code, or -1 if no
+     *  daemon is listening.  It is an error if SOCKET, or its directory,
+     *  belongs to another user, or if the directory is open to others. */
+    static int forward(Path socket, String[] args, Path dir, InputStream in,
+                       OutputStream out, OutputStream err) {
+        SocketChannel channel;
+        try {
+            if (!checkDirectory(directory(socket), false)
+                || !Files.exists(socket, LinkOption.NOFOLLOW_LINKS)) {
+                return -1;
+            }
+            checkOwner(socket);
+            channel = SocketChannel.open(UnixDomainSocketAddress.of(socket));
+        } catch (IOException | UnsupportedOperationException excp) {
+            return -1;
+        }
+        try (channel) {
+            DataOutputStream request = new DataOutputStream(
+                new BufferedOutputStream(Channels.newOutputStream(channel)));
+            DataInputStream reply = new DataInputStream(
+                new BufferedInputStream(Channels.newInputStream(channel)));
+            request.writeInt(MAGIC);
+            request.writeUTF(dir.toAbsolutePath().toString());
+            request.writeUTF(Charset.defaultCharset().name());
+            request.writeInt(args.length);
+            for (String arg : args) {
+                request.writeUTF(arg);
+            }
+            request.flush();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (true) {
+                byte type = reply.readByte();
+                int n = reply.readInt();
+                switch (type) {
+                case STDOUT:
+                case STDERR:
+                    OutputStream dest = type == STDOUT ? out : err;
+                    while (n > 0) {
+                        int len = Math.min(n, buffer.length);
+                        reply.readFully(buffer, 0, len);
+                        dest.write(buffer, 0, len);
+                        n -= len;
+                    }
+                    dest.flush();
+                    break;
+                case STDIN:
+                    int len = in.read(buffer, 0, Math.min(n, buffer.length));
+                    request.writeInt(Math.max(len, 0));
+                    if (len > 0) {
+                        request.write(buffer, 0, len);
+                    }
+                    request.flush();
+                    break;
+                case EXIT:
+                    return n;
+                default:
+                    throw error("bad reply from daemon");
+                }
+            }
+        } catch (IOException excp) {
+            throw error("lost the daemon: %s", excp.getMessage());
+        }
+    }
+
+    /** Configurations read by runs of Main, reused while their files are
+     *  unchanged. */
+    static final class Configs {
+
+        /** Return a machine configured from FILE, with no rotors inserted:
+         *  a copy of one already read from it, if FILE has not changed
+         *  since, and otherwise one made by READ. */
+        Machine get(Path file, Supplier<Machine> read) {
+            Path key = file.toAbsolutePath().normalize();
+            BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(key, BasicFileAttributes.class);
+            } catch (IOException excp) {
+                return read.get();
+            }
+            Entry entry = _entries.get(key);
+            if (entry != null && entry.matches(attrs)) {
+                return entry._machine.copy();
+            }
+            Machine result = read.get();
+            _entries.put(key, new Entry(attrs, result.copy()));
+            return result;
+        }
+
+        /** A configuration read from a file with given attributes. */
+        private static final class Entry {
+            /** An entry for MACHINE, read from a file with ATTRS. */
+            Entry(BasicFileAttributes attrs, Machine machine) {
+                _size = attrs.size();
+                _modified = attrs.lastModifiedTime().toMillis();
+                _machine = machine;
+            }
+
+            /** Return true iff ATTRS are those of my file when read. */
+            boolean matches(BasicFileAttributes attrs) {
+                return attrs.size() == _size
+                    && attrs.lastModifiedTime().toMillis() == _modified;
+            }
+
+            /** Size and modification time of the file. */
+            private final long _size, _modified;
+            /** The machine configured from it. */
+            private final Machine _machine;
+        }
+
+        /** Entries by absolute path. */
+        private final ConcurrentHashMap<Path, Entry> _entries =
+            new ConcurrentHashMap<>();
+    }
+
+    /** The frames of one run, sent on OUT, with standard input read from
+     *  IN. */
+    private static final class Frames {
+
+        /** Frames on OUT, with standard input from IN. */
+        Frames(DataInputStream in, DataOutputStream out) {
+            _in = in;
+            _out = out;
+        }
+
+        /** Send LEN bytes of BUF starting at OFF in a frame of TYPE. */
+        synchronized void send(byte type, byte[] buf, int off, int len)
+            throws IOException {
+            if (len > 0) {
+                _out.writeByte(type);
+                _out.writeInt(len);
+                _out.write(buf, off, len);
+                _out.flush();
+            }
+        }
+
+        /** Send the exit code CODE. */
+        synchronized void exit(int code) throws IOException {
+            _out.writeByte(EXIT);
+            _out.writeInt(code);
+            _out.flush();
+        }
+
+        /** Read into BUF starting at OFF at most LEN > 0 bytes of standard
+         *  input, returning the number read, or -1 at its end. */
+        synchronized int receive(byte[] buf, int off, int len)
+            throws IOException {
+            if (_ended) {
+                return -1;
+            }
+            _out.writeByte(STDIN);
+            _out.writeInt(len);
+            _out.flush();
+            int n = _in.readInt();
+            if (n <= 0 || n > len) {
+                _ended = true;
+                return -1;
+            }
+            _in.readFully(buf, off, n);
+            return n;
+        }
+
+        /** Return a stream whose bytes are sent in frames of TYPE. */
+        OutputStream stream(byte type) {
+            return new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    write(new byte[] { (byte) b }, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] buf, int off, int len)
+                    throws IOException {
+                    send(type, buf, off, len);
+                }
+            };
+        }
+
+        /** Return a channel whose bytes are sent as standard output.  It
+         *  is never closed. */
+        WritableByteChannel channel() {
+            OutputStream stream = stream(STDOUT);
+            return new WritableByteChannel() {
+                @Override
+                public int write(ByteBuffer src) throws IOException {
+                    int n = src.remaining();
+                    if (src.hasArray()) {
+                        stream.write(src.array(),
+                                     src.arrayOffset() + src.position(), n);
+                        src.position(src.limit());
+                    } else {
+                        byte[] buf = new byte[n];
+                        src.get(buf);
+                        stream.write(buf, 0, n);
+                    }
+                    return n;
+                }
+
+                @Override
+                public boolean isOpen() {
+                    return true;
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }
+
+        /** Return a stream reading the client's standard input.  Closing
+         *  it does nothing. */
+        InputStream input() {
+            return new InputStream() {
+                @Override
+                public int read() throws IOException {
+                    byte[] b = new byte[1];
+                    return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+                }
+
+                @Override
+                public int read(byte[] buf, int off, int len)
+                    throws IOException {
+                    return len == 0 ? 0 : receive(buf, off, len);
+                }
+            };
+        }
+
+        /** Source of standard input. */
+        private final DataInputStream _in;
+        /** Destination of frames. */
+        private final DataOutputStream _out;
+        /** True once standard input has ended. */
+        private boolean _ended;
+    }
+
+    /** First int of every request. */
+    private static final int MAGIC = 0x454e4431;
+    /** Frame types. */
+    private static final byte STDOUT = 'O', STDERR = 'E', STDIN = 'N',
+        EXIT = 'X';
+    /** The permissions of a directory private to its owner. */
+    private static final Set<PosixFilePermission> OWNER_ONLY =
+        PosixFilePermissions.fromString("rwx------");
+    /** Size of the client's buffers. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Path of my socket. */
+    private final Path _socket;
+    /** Socket on which I accept clients. */
+    private final ServerSocketChannel _listener;
+    /** Runs Main for clients. */
+    private final ExecutorService _runs;
+    /** Configurations read so far. */
+    private final Configs _configs = new Configs();
+}
@@ -0,0 +1,215 @@
+package enigma;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.TemporaryFolder;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+
+/** The suite of all JUnit tests for the Daemon class.
+ *  @author Won Shil Park
+ */
+public class DaemonTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(20);
+
+    /** Directory for files and the socket. */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** A configuration. */
+    private static final String CONFIG = String.join("\n",
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZ",
+        " 5 3",
+        " I MQ      (AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) (JZ) (S)",
+        " II ME     (FIXVYOMW) (CDKLHUP) (ESZ) (BJ) (GR) (NT) (A) (Q)",
+        " III MV    (ABDHPEJT) (CFLVMZOYQIRWUKXSG) (N)",
+        " IV MJ     (AEPLIYWCOXMRFZBSTGJQNH) (DV) (KU)",
+        " Beta N    (ALBEVFCYODJWUGNMQTZSKPR) (HIX)",
+        " B R       (AE) (BN) (CK) (DQ) (FU) (GY) (HW) (IJ) (LO) (MP)",
+        "           (RX) (SZ) (TV)", "");
+
+    /** Messages, with a setting line. */
+    private static final String INPUT = String.join("\n",
+        "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)",
+        "FROM his shoulder Hiawatha",
+        "Took the camera of rosewood", "");
+
+    /** The daemon under test. */
+    private Daemon _daemon;
+    /** Its socket. */
+    private Path _socket;
+    /** The thread serving it. */
+    private Thread _serving;
+
+    /** The standard output and error of the last run. */
+    private String _out, _err;
+    /** The exit code of the last run. */
+    private int _code;
+
+    /** Start a daemon on a socket in the temporary folder, and write
+     *  CONFIG and INPUT there as test.conf and test.in. */
+    @Before
+    public void startDaemon() throws IOException {
+        _socket = folder.getRoot().toPath().resolve("d.sock");
+        _daemon = new Daemon(_socket);
+        _serving = new Thread(_daemon::serve);
+        _serving.start();
+        write("test.conf", CONFIG);
+        write("test.in", INPUT);
+    }
+
+    /** Stop the daemon. */
+    @After
+    public void stopDaemon() throws InterruptedException {
+        _daemon.close();
+        _serving.join();
+    }
+
+    /** Write TEXT to the file NAME in the temporary folder. */
+    private void write(String name, String text) throws IOException {
+        Files.write(folder.getRoot().toPath().resolve(name),
+                    text.getBytes(Charset.defaultCharset()));
+    }
+
+    /** Run Main with ARGS in the temporary folder, with standard input
+     *  STDIN, in the daemon if DAEMON and otherwise here, setting _out,
+     *  _err, and _code. */
+    private void run(boolean daemon, String stdin, String... args) {
+        Charset charset = Charset.defaultCharset();
+        Path dir = folder.getRoot().toPath();
+        ByteArrayInputStream in =
+            new ByteArrayInputStream(stdin.getBytes(charset));
+        ByteArrayOutputStream out = new ByteArrayOutputStream(),
+            err = new ByteArrayOutputStream();
+        if (daemon) {
+            _code = Daemon.forward(_socket, args, dir, in, out, err);
+        } else {
+            _code = Main.run(args, dir, charset, in,
+                             new GroupWriter(Channels.newChannel(out),
+                                             charset),
+                             new PrintStream(err, true, charset), null);
+        }
+        _out = new String(out.toByteArray(), charset);
+        _err = new String(err.toByteArray(), charset);
+    }
+
+    /** Check that running Main with ARGS and standard input STDIN gives
+     *  the same results here and in the daemon, and return the output. */
+    private String same(String stdin, String... args) {
+        run(false, stdin, args);
+        String out = _out, err = _err;
+        int code = _code;
+        run(true, stdin, args);
+        assertEquals(out, _out);
+        assertEquals(err, _err);
+        assertEquals(code, _code);
+        return out;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkSameResults() {
+        assertTrue(same("", "test.conf", "test.in").startsWith("QVPQS"));
+        same(INPUT, "test.conf");
+        same(INPUT, "--mapped", "test.conf");
+        same(INPUT, "--blocks=2", "test.conf");
+    }
+
+    @Test
+    public void checkSameErrors() {
+        same("", "nosuch.conf", "test.in");
+        assertEquals("Error: could not open nosuch.conf"
+                     + System.lineSeparator(), _err);
+        assertEquals(1, _code);
+        same("HELLO\n", "test.conf");
+        assertEquals(1, _code);
+        same("", "--bogus", "test.conf");
+        same("", "a", "b", "c", "d");
+    }
+
+    @Test
+    public void checkOutputFile() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        run(false, "", "test.conf", "test.in", "here.out");
+        run(true, "", "test.conf", "test.in", "there.out");
+        assertEquals(0, _code);
+        assertEquals("", _out);
+        assertArrayEquals(Files.readAllBytes(dir.resolve("here.out")),
+                          Files.readAllBytes(dir.resolve("there.out")));
+    }
+
+    @Test
+    public void checkChangedConfig() throws IOException {
+        String before = same("", "test.conf", "test.in");
+        write("test.conf", CONFIG.replace("(AELTPHQXRU)", "(AELTPHQXUR)"));
+        Files.setLastModifiedTime(folder.getRoot().toPath()
+                                  .resolve("test.conf"),
+                                  FileTime.fromMillis(0));
+        assertNotEquals(before, same("", "test.conf", "test.in"));
+    }
+
+    @Test
+    public void checkNoDaemon() {
+        assertEquals(-1, Daemon.forward(_socket.resolveSibling("none"),
+                                        new String[] { "test.conf" },
+                                        folder.getRoot().toPath(),
+                                        System.in, System.out, System.err));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkOneDaemon() {
+        new Daemon(_socket);
+    }
+
+    @Test
+    public void checkPrivateDirectory() throws IOException {
+        Path dir = folder.getRoot().toPath().resolve("new");
+        Daemon daemon = new Daemon(dir.resolve("d.sock"));
+        daemon.close();
+        assertEquals("rwx------", PosixFilePermissions.toString(
+                         Files.getPosixFilePermissions(dir)));
+    }
+
+    @Test
+    public void checkSharedDirectory() throws IOException {
+        Path dir = folder.newFolder("shared").toPath();
+        Files.setPosixFilePermissions(
+            dir, PosixFilePermissions.fromString("rwxr-xr-x"));
+        Path socket = dir.resolve("d.sock");
+        try {
+            new Daemon(socket);
+            fail("daemon listened in a shared directory");
+        } catch (EnigmaException excp) {
+            /* Expected. */
+        }
+        assertFalse(Files.exists(socket));
+        Files.createFile(socket);
+        try {
+            Daemon.forward(socket, new String[] { "test.conf" },
+                           folder.getRoot().toPath(),
+                           System.in, System.out, System.err);
+            fail("client used a socket in a shared directory");
+        } catch (EnigmaException excp) {
+            /* Expected. */
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package enigma;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import static enigma.EnigmaException.*;
+
+/** A writer of converted messages, which puts the characters of each
+ *  message line in groups of five as they arrive.  Text is collected in a
+ *  buffer, encoded into a direct byte buffer, and written to a channel
+ *  only when the buffer fills or on flush(), so that output takes few
+ *  system calls however many lines it has.
+ *  @author Won Shil Park
+ */
+class GroupWriter {
+
+    /** Number of characters in a group. */
+    static final int GROUP = 5;
+
+    /** A writer in CHARSET to the file named NAME in directory DIR (the
+     *  current directory if null), which is replaced. */
+    static GroupWriter open(Path dir, String name, Charset charset) {
+        try {
+            Path file = dir == null ? Paths.get(name) : dir.resolve(name);
+            return new GroupWriter(
+                FileChannel.open(file,
+                                 StandardOpenOption.WRITE,
+                                 StandardOpenOption.CREATE,
+                                 StandardOpenOption.TRUNCATE_EXISTING),
+                charset);
+        } catch (IOException | java.nio.file.InvalidPathException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
+    /** A writer to the standard output. */
+    static GroupWriter standardOutput() {
+        return new GroupWriter(
+            new FileOutputStream(FileDescriptor.out).getChannel(),
+            Charset.defaultCharset());
+    }
+
+    /** A writer to CHANNEL, encoding characters in CHARSET. */
+    GroupWriter(WritableByteChannel channel, Charset charset) {
+        _channel = channel;
+        _encoder = charset.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        _asciiBytes = charset.equals(StandardCharsets.UTF_8)
+            || charset.equals(StandardCharsets.US_ASCII)
+            || charset.equals(StandardCharsets.ISO_8859_1);
+    }
+
+    /** Record the bytes I write, and the time it takes, in STATS, unless
+     *  it is null. */
+    void setStats(Stats stats) {
+        _stats = stats;
+    }
+
+    /** Write LEN characters of a message line, MSG[OFF .. OFF+LEN-1],
+     *  omitting blanks and following each fifth character of the line
+     *  with a blank.  Characters are counted as code points: a surrogate
+     *  pair, which may be split between calls, is one character. */
+    void writeGroups(char[] msg, int off, int len) {
+        char[] chars = _chars;
+        int count = _count, grouped = _grouped;
+        for (int i = off; i < off + len; i += 1) {
+            char ch = msg[i];
+            if (count > chars.length - 3 && !Character.isLowSurrogate(ch)) {
+                _count = count;
+                encode();
+                count = _count;
+            }
+            if (ch != ' ') {
+                chars[count] = ch;
+                count += 1;
+                if (!Character.isHighSurrogate(ch)) {
+                    grouped += 1;
+                }
+                if (grouped == GROUP) {
+                    chars[count] = ' ';
+                    count += 1;
+                    grouped = 0;
+                }
+            }
+        }
+        _count = count;
+        _grouped = grouped;
+    }
+
+    /** Write the message line MSG as for writeGroups, and end the line. */
+    void writeLine(String msg) {
+        for (int k = 0; k < msg.length(); k += _chars.length) {
+            int len = Math.min(_chars.length, msg.length() - k);
+            msg.getChars(k, k + len, _text, 0);
+            writeGroups(_text, 0, len);
+        }
+        newLine();
+    }
+
+    /** Write TEXT exactly as given. */
+    void write(CharSequence text) {
+        for (int i = 0; i < text.length(); i += 1) {
+            if (_count == _chars.length) {
+                encode();
+            }
+            _chars[_count] = text.charAt(i);
+            _count += 1;
+        }
+    }
+
+    /** End the current line, so that the next message starts a new group
+     *  of five. */
+    void newLine() {
+        write(LINE_SEPARATOR);
+        _grouped = 0;
+    }
+
+    /** Write out everything written to me so far. */
+    void flush() {
+        encode();
+        drain();
+    }
+
+    /** Flush me and release my channel. */
+    void close() {
+        try {
+            flush();
+        } finally {
+            try {
+                _channel.close();
+            } catch (IOException excp) {
+                /* Nothing remains to be written. */
+            }
+        }
+    }
+
+    /** Move the characters collected in _chars to _bytes, writing _bytes
+     *  out whenever it fills.  A high surrogate at the end of _chars is
+     *  kept back to be encoded with its partner. */
+    private void encode() {
+        int i = 0;
+        if (_asciiBytes) {
+            while (i < _count) {
+                if (!_bytes.hasRemaining()) {
+                    drain();
+                }
+                int pos = _bytes.position();
+                int stop = Math.min(_count, i + _bytes.remaining());
+                while (i < stop && _chars[i] < ASCII_LIMIT) {
+                    _bytes.put(pos, (byte) _chars[i]);
+                    pos += 1;
+                    i += 1;
+                }
+                _bytes.position(pos);
+                if (i < stop) {
+                    break;
+                }
+            }
+        }
+        if (i < _count) {
+            CharBuffer rest = CharBuffer.wrap(_chars, i, _count - i);
+            while (_encoder.encode(rest, _bytes, false)
+                   == CoderResult.OVERFLOW) {
+                drain();
+            }
+            i = rest.position();
+        }
+        System.arraycopy(_chars, i, _chars, 0, _count - i);
+        _count -= i;
+    }
+
+    /** Write the contents of _bytes to my channel. */
+    private void drain() {
+        if (_bytes.position() == 0) {
+            return;
+        }
+        _bytes.flip();
+        int bytes = _bytes.remaining();
+        Stats.OutputEvent event = new Stats.OutputEvent();
+        event.begin();
+        long start = _stats != null ? System.nanoTime() : 0;
+        try {
+            while (_bytes.hasRemaining()) {
+                _channel.write(_bytes);
+            }
+        } catch (IOException excp) {
+            throw error("could not write output: %s", excp.getMessage());
+        } finally {
+            _bytes.clear();
+        }
+        if (_stats != null) {
+            _stats.wrote(bytes, System.nanoTime() - start);
+        }
+        event.bytes = bytes;
+        event.commit();
+    }
+
+    /** Line separator of this platform, as for PrintStream.println. */
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    /** Characters below this are encoded as single equal bytes when
+     *  _asciiBytes. */
+    private static final char ASCII_LIMIT = 0x80;
+
+    /** Number of characters collected before they are encoded. */
+    private static final int CHAR_BUFFER = 1 << 13;
+
+    /** Size of the buffer of encoded bytes. */
+    private static final int BYTE_BUFFER = 1 << 16;
+
+    /** Destination of my output. */
+    private final WritableByteChannel _channel;
+    /** Encoder for my channel's character set. */
+    private final CharsetEncoder _encoder;
+    /** True iff my character set encodes ASCII characters as themselves. */
+    private final boolean _asciiBytes;
+    /** Characters written but not yet encoded. */
+    private final char[] _chars = new char[CHAR_BUFFER];
+    /** Number of characters in _chars. */
+    private int _count;
+    /** Encoded output not yet written to _channel. */
+    private final ByteBuffer _bytes = ByteBuffer.allocateDirect(BYTE_BUFFER);
+    /** Buffer for the characters of Strings passed to writeLine. */
+    private final char[] _text = new char[CHAR_BUFFER];
+    /** Number of code points in the current group of the current line. */
+    private int _grouped;
+    /** Where to record output, or null. */
+    private Stats _stats;
+}
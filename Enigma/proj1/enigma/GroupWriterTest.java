@@ -0,0 +1,133 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/** The suite of all JUnit tests for the GroupWriter class.
+ *  @author Won Shil Park
+ */
+public class GroupWriterTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Line separator, as written by GroupWriter. */
+    private static final String NL = System.lineSeparator();
+
+    /** Destination of the writer made by writer(). */
+    private ByteArrayOutputStream _bytes;
+
+    /** Return a writer to _bytes in CHARSET. */
+    private GroupWriter writer(Charset charset) {
+        _bytes = new ByteArrayOutputStream();
+        return new GroupWriter(Channels.newChannel(_bytes), charset);
+    }
+
+    /** Return what has been written to _bytes, in CHARSET. */
+    private String written(Charset charset) {
+        return new String(_bytes.toByteArray(), charset);
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkGroups() {
+        GroupWriter out = writer(StandardCharsets.UTF_8);
+        out.writeLine("HELLO WORLD");
+        out.writeLine("ABCD");
+        out.writeLine("");
+        out.writeLine("A B C D E F");
+        out.flush();
+        assertEquals("HELLO WORLD " + NL + "ABCD" + NL + NL
+                     + "ABCDE F" + NL, written(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void checkPieces() {
+        GroupWriter out = writer(StandardCharsets.UTF_8);
+        char[] msg = "ABC DEFGH IJ".toCharArray();
+        for (int i = 0; i < msg.length; i += 1) {
+            out.writeGroups(msg, i, 1);
+        }
+        out.newLine();
+        out.writeGroups(msg, 0, 3);
+        out.newLine();
+        assertEquals("", written(StandardCharsets.UTF_8));
+        out.flush();
+        assertEquals("ABCDE FGHIJ " + NL + "ABC" + NL,
+                     written(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void checkLongLine() {
+        StringBuilder msg = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 100000; i += 1) {
+            char ch = (char) ('A' + i % 26);
+            msg.append(ch);
+            expected.append(ch);
+            if (i % 5 == 4) {
+                expected.append(' ');
+            }
+        }
+        GroupWriter out = writer(StandardCharsets.UTF_8);
+        out.writeLine(msg.toString());
+        out.close();
+        assertEquals(expected + NL, written(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void checkEncoding() {
+        String msg = "\u00c9T\u00c9 \u20ac\u00e9XY";
+        for (Charset charset : new Charset[] {
+                StandardCharsets.UTF_8, StandardCharsets.UTF_16LE }) {
+            GroupWriter out = writer(charset);
+            for (int i = 0; i < 3000; i += 1) {
+                out.writeLine(msg);
+            }
+            out.flush();
+            StringBuilder expected = new StringBuilder();
+            for (int i = 0; i < 3000; i += 1) {
+                expected.append("\u00c9T\u00c9\u20ac\u00e9 XY").append(NL);
+            }
+            assertEquals(expected.toString(), written(charset));
+        }
+    }
+
+    @Test
+    public void checkSupplementary() {
+        String a = "\ud83d\ude00", b = "\ud83d\ude01";
+        GroupWriter out = writer(StandardCharsets.UTF_8);
+        out.writeLine(a + a + a + a + a + a);
+        char[] msg = (a + "B" + b + " " + a + b + "CD").toCharArray();
+        for (int i = 0; i < msg.length; i += 1) {
+            out.writeGroups(msg, i, 1);
+        }
+        out.newLine();
+        StringBuilder line = new StringBuilder(),
+            expected = new StringBuilder();
+        for (int i = 0; i < 10000; i += 1) {
+            String ch = i % 3 == 0 ? "A" : b;
+            line.append(ch);
+            expected.append(ch);
+            if (i % 5 == 4) {
+                expected.append(' ');
+            }
+        }
+        out.writeLine(line.toString());
+        out.close();
+        assertEquals(a + a + a + a + a + " " + a + NL
+                     + a + "B" + b + a + b + " CD" + NL
+                     + expected + NL, written(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,239 @@
+package enigma;
+
+/** Computes the settings of a machine's moving rotors after any number of
+ *  key presses without stepping through them.
+ *
+ *  Number the moving rotors from the right.  The rightmost advances on
+ *  every key press.  Each other rotor advances when the rotor to its right
+ *  is at a notch (a "kick"), and, unless it is the leftmost moving rotor,
+ *  also when it is itself at a notch (the double step).  So long as no
+ *  rotor that can double step has notches at two consecutive settings, a
+ *  rotor that can double step never stays at a notch for more than one key
+ *  press, and two kicks never arrive on consecutive key presses.  Then
+ *  the number of times a rotor advances in T key presses follows from
+ *  the number of times its right neighbor advanced in T-1 key presses,
+ *  by counting notches over whole revolutions.  This gives the settings
+ *  after T key presses in time proportional to the square of the number
+ *  of moving rotors, independent of T.  Arrangements that do not meet
+ *  the condition are stepped one key press at a time.
+ *  @author Won Shil Park
+ */
+class JumpAhead {
+
+    /** Prepare to jump ahead in a machine whose alphabet has SIZE
+     *  characters, whose moving rotors occupy slots FIRSTMOVING and
+     *  above, and whose rotor in slot I has a notch at setting K iff
+     *  NOTCHES[I][K]. */
+    JumpAhead(int size, int firstMoving, boolean[][] notches) {
+        _size = size;
+        _first = firstMoving;
+        _notches = notches;
+        int slots = notches.length;
+        _notchPrefix = new int[slots][];
+        _kickPrefix = new int[slots][];
+        _kicks = new int[slots][];
+        _regular = true;
+        for (int i = firstMoving; i < slots; i += 1) {
+            boolean[] notch = notches[i];
+            int[] notchPrefix = new int[size + 1];
+            int[] kickPrefix = new int[size + 1];
+            int numKicks = 0;
+            for (int k = 0; k < size; k += 1) {
+                boolean after = notch[(k + size - 1) % size];
+                if (i > firstMoving && notch[k] && after) {
+                    _regular = false;
+                }
+                notchPrefix[k + 1] = notchPrefix[k] + (notch[k] ? 1 : 0);
+                kickPrefix[k + 1] = kickPrefix[k] + (after ? 0 : 1);
+            }
+            int[] kicks = new int[kickPrefix[size]];
+            for (int k = 0; k < size; k += 1) {
+                if (kickPrefix[k + 1] > kickPrefix[k]) {
+                    kicks[numKicks] = k;
+                    numKicks += 1;
+                }
+            }
+            _notchPrefix[i] = notchPrefix;
+            _kickPrefix[i] = kickPrefix;
+            _kicks[i] = kicks;
+        }
+    }
+
+    /** Return true iff jumps are computed arithmetically, rather than by
+     *  stepping. */
+    boolean regular() {
+        return _regular;
+    }
+
+    /** Change POSN, the current settings of the rotors in each slot, to
+     *  their settings after N >= 0 key presses. */
+    void jump(int[] posn, long n) {
+        if (!_regular) {
+            for (long t = 0; t < n; t += 1) {
+                step(posn);
+            }
+            return;
+        }
+        int last = posn.length - 1;
+        long[] advances = new long[posn.length];
+        for (int i = _first; i <= last; i += 1) {
+            advances[i] = advances(posn, i, n);
+        }
+        for (int i = _first; i <= last; i += 1) {
+            posn[i] = (int) ((posn[i] + advances[i]) % _size);
+        }
+    }
+
+    /** Advance POSN, the settings of the rotors in each slot, as for one
+     *  key press: the rightmost moving rotor always moves, and a moving
+     *  rotor at a notch moves itself and the rotor to its left.  Rotors
+     *  are examined left to right, so that each notch is tested before its
+     *  own rotor moves.  Return true iff a rotor other than the one in the
+     *  last slot moved. */
+    boolean step(int[] posn) {
+        final int last = posn.length - 1;
+        boolean pushed = false, slowMoved = false;
+        for (int i = _first; i <= last; i += 1) {
+            boolean pushes = i < last && _notches[i + 1][posn[i + 1]];
+            if (pushes || pushed || i == last) {
+                int p = posn[i] + 1;
+                posn[i] = p == _size ? 0 : p;
+                slowMoved |= i < last;
+            }
+            pushed = pushes;
+        }
+        return slowMoved;
+    }
+
+    /** Return { MU, LAMBDA } for the sequence of settings that the
+     *  rotors take on for each key press, starting from settings POSN:
+     *  key presses K and K + LAMBDA (numbering from 0) find the rotors at
+     *  the same settings for all K >= MU, and for no smaller LAMBDA or
+     *  MU.  Return null if MU + LAMBDA would exceed LIMIT.  Uses Brent's
+     *  cycle-finding algorithm, stepping copies of POSN. */
+    long[] cycle(int[] posn, long limit) {
+        int[] tortoise = posn.clone(), hare = posn.clone();
+        step(tortoise);
+        step(hare);
+        step(hare);
+        long power = 1, lambda = 1;
+        while (!samePositions(tortoise, hare)) {
+            if (power == lambda) {
+                if (power > limit) {
+                    return null;
+                }
+                System.arraycopy(hare, 0, tortoise, 0, hare.length);
+                power *= 2;
+                lambda = 0;
+            }
+            step(hare);
+            lambda += 1;
+        }
+        System.arraycopy(posn, 0, tortoise, 0, posn.length);
+        System.arraycopy(posn, 0, hare, 0, posn.length);
+        step(tortoise);
+        step(hare);
+        for (long k = 0; k < lambda; k += 1) {
+            step(hare);
+        }
+        long mu = 1;
+        while (!samePositions(tortoise, hare)) {
+            if (mu + lambda > limit) {
+                return null;
+            }
+            step(tortoise);
+            step(hare);
+            mu += 1;
+        }
+        mu -= 1;
+        return mu + lambda > limit ? null : new long[] { mu, lambda };
+    }
+
+    /** Return true iff the moving rotors have the same settings in POSN0
+     *  and POSN1. */
+    private boolean samePositions(int[] posn0, int[] posn1) {
+        for (int i = _first; i < posn0.length; i += 1) {
+            if (posn0[i] != posn1[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Return the number of times the moving rotor in slot I advances in
+     *  the first T key presses, starting from settings POSN. */
+    private long advances(int[] posn, int i, long t) {
+        int last = posn.length - 1;
+        if (t <= 0 || i == last) {
+            return Math.max(t, 0);
+        }
+        int right = i + 1;
+        long rightAdvances = advances(posn, right, t - 1);
+        long kicks = countNotches(right, posn[right], rightAdvances + 1);
+        boolean kickedLast =
+            _notches[right][(int) ((posn[right] + rightAdvances) % _size)];
+        if (i == _first) {
+            return kicks;
+        }
+        boolean[] notch = _notches[i];
+        int self = notch[posn[i]] ? 1 : 0;
+        if (self == 1 && _notches[right][posn[right]]) {
+            kicks -= 1;
+        }
+        if (kicks == 0) {
+            return self;
+        }
+        int start = (posn[i] + self) % _size;
+        long landing = kickLanding(i, start, kicks);
+        boolean doubleStep = notch[(int) ((start + landing) % _size)];
+        return self + landing + (doubleStep && !kickedLast ? 1 : 0);
+    }
+
+    /** Return the number of settings with notches among the LEN settings
+     *  of the rotor in slot I that follow (cyclically) from setting
+     *  START, inclusive. */
+    private long countNotches(int i, int start, long len) {
+        int[] prefix = _notchPrefix[i];
+        long count = (len / _size) * prefix[_size];
+        int end = start + (int) (len % _size);
+        if (end <= _size) {
+            count += prefix[end] - prefix[start];
+        } else {
+            count += prefix[_size] - prefix[start] + prefix[end - _size];
+        }
+        return count;
+    }
+
+    /** Return how far past setting START the rotor in slot I is after
+     *  receiving KICKS > 0 kicks, counting only the kicks themselves.
+     *  START must not be at a notch.  A kick that lands on a notch is
+     *  followed by a double step, so the settings just past notches are
+     *  never landed on by kicks. */
+    private long kickLanding(int i, int start, long kicks) {
+        int[] list = _kicks[i];
+        long index = _kickPrefix[i][start + 1] + kicks - 1;
+        long position = list[(int) (index % list.length)]
+            + (index / list.length) * _size;
+        return position - start;
+    }
+
+    /** Size of the alphabet. */
+    private final int _size;
+    /** Slot of the leftmost moving rotor. */
+    private final int _first;
+    /** _notches[i][k] is true iff the rotor in slot I has a notch at
+     *  setting K. */
+    private final boolean[][] _notches;
+    /** _notchPrefix[i][k] is the number of notches of the rotor in slot I
+     *  at settings less than K. */
+    private final int[][] _notchPrefix;
+    /** _kicks[i] lists, in increasing order, the settings of the rotor in
+     *  slot I that do not follow a notch: those that a kick can land on. */
+    private final int[][] _kicks;
+    /** _kickPrefix[i][k] is the number of elements of _kicks[i] that are
+     *  less than K. */
+    private final int[][] _kickPrefix;
+    /** True iff no rotor that can double step has notches at consecutive
+     *  settings. */
+    private boolean _regular;
+}
@@ -0,0 +1,103 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+/** The suite of all JUnit tests for the JumpAhead class.
+ *  @author Won Shil Park
+ */
+public class JumpAheadTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkAgainstStepping() {
+        Random random = new Random(61);
+        int trials = 0;
+        while (trials < 2000) {
+            int size = 1 + random.nextInt(random.nextBoolean() ? 6 : 30);
+            int slots = 2 + random.nextInt(5);
+            int first = 1 + random.nextInt(slots - 1);
+            boolean[][] notches = new boolean[slots][size];
+            for (int i = first; i < slots; i += 1) {
+                for (int k = random.nextInt(4); k > 0; k -= 1) {
+                    notches[i][random.nextInt(size)] = true;
+                }
+            }
+            JumpAhead jump = new JumpAhead(size, first, notches);
+            if (!jump.regular()) {
+                continue;
+            }
+            int[] start = new int[slots];
+            for (int i = 1; i < slots; i += 1) {
+                start[i] = random.nextInt(size);
+            }
+            int[] stepped = start.clone(), jumped = start.clone();
+            int n = random.nextInt(3) == 0 ? random.nextInt(5)
+                : random.nextInt(3000);
+            for (int t = 0; t < n; t += 1) {
+                jump.step(stepped);
+            }
+            jump.jump(jumped, n);
+            assertArrayEquals(String.format("size %d, notches %s, from %s",
+                                            size, Arrays.deepToString(notches),
+                                            Arrays.toString(start)),
+                              stepped, jumped);
+            trials += 1;
+        }
+    }
+
+    @Test
+    public void checkCycle() {
+        Random random = new Random(61);
+        for (int trial = 0; trial < 300; trial += 1) {
+            int size = 1 + random.nextInt(6);
+            int slots = 2 + random.nextInt(3);
+            int first = 1 + random.nextInt(slots - 1);
+            boolean[][] notches = new boolean[slots][size];
+            for (int i = first; i < slots; i += 1) {
+                for (int k = random.nextInt(3); k > 0; k -= 1) {
+                    notches[i][random.nextInt(size)] = true;
+                }
+            }
+            JumpAhead jump = new JumpAhead(size, first, notches);
+            int[] posn = new int[slots];
+            for (int i = 1; i < slots; i += 1) {
+                posn[i] = random.nextInt(size);
+            }
+            HashMap<String, Integer> seen = new HashMap<>();
+            int[] stepped = posn.clone();
+            int k;
+            for (k = 0; ; k += 1) {
+                jump.step(stepped);
+                Integer earlier = seen.put(Arrays.toString(stepped), k);
+                if (earlier != null) {
+                    assertArrayEquals(new long[] { earlier, k - earlier },
+                                      jump.cycle(posn, 1000));
+                    break;
+                }
+            }
+            assertNull(jump.cycle(posn, k - 1));
+        }
+    }
+
+    @Test
+    public void checkIrregular() {
+        boolean[][] notches = new boolean[3][4];
+        notches[2][1] = notches[2][2] = true;
+        assertFalse(new JumpAhead(4, 1, notches).regular());
+        notches[2][2] = false;
+        notches[1][1] = notches[1][2] = true;
+        assertTrue(new JumpAhead(4, 1, notches).regular());
+    }
+}
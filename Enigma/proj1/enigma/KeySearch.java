@@ -0,0 +1,562 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static enigma.EnigmaException.*;
+
+/** Ciphertext-only key search.  The search has two phases.  First, the
+ *  ciphertext is decrypted at every rotor order and start setting with an
+ *  empty plugboard, and the settings whose decryptions have the highest
+ *  index of coincidence (the chance that two characters drawn from the
+ *  text are the same) are kept as candidates: even with the wrong
+ *  plugboard, a decryption at the right setting is partly plaintext, and
+ *  so less uniform than the rest.  Second, the plugboard of each candidate
+ *  is found by hill climbing from several starting plugboards: pairs of
+ *  plugs are added, removed, or exchanged while that raises the score of
+ *  the decryption under a quadgram model of the language.  The work of
+ *  each phase is spread over a pool of threads as independent tasks, and
+ *  the best keys found so far are kept as the tasks finish.
+ *  @author Won Shil Park
+ */
+public final class KeySearch {
+
+    /** Search for the key of a ciphertext as specified by ARGS, reporting
+     *  progress and the best keys found so far on the standard error, and
+     *  at the end printing the best keys, each as a setting line followed
+     *  by the decryption it gives.
+     *  ARGS[0] is the name of a configuration file, as for Main.
+     *  ARGS[1] names a quadgram model for its alphabet (see Quadgrams).
+     *  ARGS[2] names a file containing the ciphertext, in which blanks
+     *  are ignored.  Exits with code 1 after an error.
+     *  Options are arguments starting with "--", and may appear anywhere:
+     *    --threads=N     Search on N threads (default: one per
+     *                    processor).
+     *    --order=NAMES   Search only the rotor order NAMES, as for Bombe
+     *                    (default: all orders allowed by the
+     *                    configuration).
+     *    --candidates=N  Climb from the N settings with the highest index
+     *                    of coincidence (default: 20).
+     *    --restarts=N    Climb N times from each candidate, first from an
+     *                    empty plugboard and then from random ones
+     *                    (default: 4).
+     *    --pairs=N       Use at most N plugboard pairs (default: 10).
+     *    --top=K         Keep the best K keys (default: 5).
+     *    --progress=S    Report progress every S seconds, or never if S is
+     *                    0 (default: 10).
+     *    --seed=N        Seed for the random plugboards (default: 0). */
+    public static void main(String... args) {
+        try {
+            run(args);
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Perform the search specified by ARGS (see main). */
+    private static void run(String[] args) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        int candidates = 20, restarts = 4, pairs = 10, top = 5;
+        int progress = 10, seed = 0;
+        String[] order = null;
+        ArrayList<String> files = new ArrayList<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                files.add(arg);
+                continue;
+            }
+            String value = Options.requiredValue(arg);
+            switch (Options.name(arg)) {
+            case "--threads":
+                threads = Options.intValue(arg, value, 1);
+                break;
+            case "--order":
+                order = value.trim().split("[\\s,]+");
+                break;
+            case "--candidates":
+                candidates = Options.intValue(arg, value, 1);
+                break;
+            case "--restarts":
+                restarts = Options.intValue(arg, value, 1);
+                break;
+            case "--pairs":
+                pairs = Options.intValue(arg, value, 0);
+                break;
+            case "--top":
+                top = Options.intValue(arg, value, 1);
+                break;
+            case "--progress":
+                progress = Options.intValue(arg, value, 0);
+                break;
+            case "--seed":
+                seed = Options.intValue(arg, value, 0);
+                break;
+            default:
+                throw error("unknown option %s", arg);
+            }
+        }
+        if (files.size() != 3) {
+            throw error("need a configuration file, model, and ciphertext");
+        }
+
+        Machine machine = Main.readConfig(files.get(0));
+        Quadgrams model = Quadgrams.open(Paths.get(files.get(1)),
+                                         machine.alphabet());
+        String ciphertext;
+        try {
+            ciphertext = new String(Files.readAllBytes(Paths.get(
+                                        files.get(2))),
+                                    StandardCharsets.UTF_8);
+        } catch (IOException excp) {
+            throw error("could not open %s", files.get(2));
+        }
+        KeySearch search = new KeySearch(machine, model, ciphertext, top);
+        List<String[]> orders;
+        if (order != null) {
+            orders = new ArrayList<>();
+            machine.insertRotors(order);
+            orders.add(order);
+        } else {
+            orders = Bombe.orders(machine);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ScheduledExecutorService reporter =
+            Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "progress");
+                t.setDaemon(true);
+                return t;
+            });
+        if (progress > 0) {
+            reporter.scheduleAtFixedRate(() -> System.err.print(
+                                             search.progress()),
+                                         progress, progress,
+                                         TimeUnit.SECONDS);
+        }
+        try {
+            List<Key> starts = search.rank(pool, orders, candidates);
+            for (Future<Key> result
+                     : search.climb(pool, starts, restarts, pairs, seed)) {
+                await(result);
+            }
+        } finally {
+            reporter.shutdownNow();
+            pool.shutdownNow();
+        }
+        for (Key key : search.best()) {
+            System.out.println(key);
+            System.out.println(search.decrypt(key));
+        }
+        System.out.flush();
+    }
+
+    /** A search for the key of CIPHERTEXT (in which blanks are ignored)
+     *  among the rotors available to MACHINE, whose alphabet is that of
+     *  MODEL, keeping the best TOP keys found. */
+    KeySearch(Machine machine, Quadgrams model, String ciphertext,
+              int top) {
+        _machine = machine;
+        _alphabet = machine.alphabet();
+        _size = _alphabet.size();
+        if (model.size() != _size) {
+            throw error("model is for a different alphabet");
+        }
+        _model = model;
+        int[] cipher = new int[ciphertext.length()];
+        int len = 0;
+        for (int k = 0; k < ciphertext.length(); ) {
+            int cp = ciphertext.codePointAt(k);
+            k += Character.charCount(cp);
+            if (Character.isWhitespace(cp)) {
+                continue;
+            }
+            int c = _alphabet.indexOf(Character.toUpperCase(cp));
+            if (c < 0) {
+                throw error("character '%s' not in alphabet",
+                            Character.toString(cp));
+            }
+            cipher[len] = c;
+            len += 1;
+        }
+        if (len < 4) {
+            throw error("ciphertext too short");
+        }
+        _cipher = Arrays.copyOf(cipher, len);
+        _top = top;
+    }
+
+    /** A key: a rotor order, start settings, and plugboard, with the score
+     *  of the decryption it gives. */
+    static final class Key {
+
+        /** The key with rotor order ORDER (starting with the reflector),
+         *  start settings SETTING (the alphabet indices of the settings of
+         *  slots 1 on, as for Machine.setRotors), and plugboard PLUG (an
+         *  involution on alphabet indices), whose decryption is in ALPHA
+         *  and has score SCORE. */
+        Key(String[] order, int[] setting, int[] plug, Alphabet alpha,
+            double score) {
+            _order = order;
+            _setting = setting;
+            _plug = plug;
+            _alphabet = alpha;
+            _score = score;
+        }
+
+        /** Return my rotor order. */
+        String[] order() {
+            return _order.clone();
+        }
+
+        /** Return my start settings. */
+        int[] setting() {
+            return _setting.clone();
+        }
+
+        /** Return my score. */
+        double score() {
+            return _score;
+        }
+
+        /** Return my plugboard pairs, as cycles. */
+        String steckers() {
+            StringBuilder result = new StringBuilder();
+            for (int a = 0; a < _plug.length; a += 1) {
+                if (_plug[a] > a) {
+                    if (result.length() > 0) {
+                        result.append(' ');
+                    }
+                    result.append('(')
+                        .appendCodePoint(_alphabet.toCodePoint(a))
+                        .appendCodePoint(_alphabet.toCodePoint(_plug[a]))
+                        .append(')');
+                }
+            }
+            return result.toString();
+        }
+
+        /** Return me as a setting line. */
+        @Override
+        public String toString() {
+            StringBuilder line = new StringBuilder("* ");
+            line.append(String.join(" ", _order)).append(' ');
+            for (int p : _setting) {
+                line.appendCodePoint(_alphabet.toCodePoint(p));
+            }
+            String steckers = steckers();
+            if (!steckers.isEmpty()) {
+                line.append(' ').append(steckers);
+            }
+            return line.toString();
+        }
+
+        /** Rotor order. */
+        private final String[] _order;
+        /** Start settings. */
+        private final int[] _setting;
+        /** Plugboard. */
+        private final int[] _plug;
+        /** Alphabet of the settings and plugboard. */
+        private final Alphabet _alphabet;
+        /** Score of the decryption. */
+        private final double _score;
+    }
+
+    /** Orders keys by increasing score. */
+    private static final Comparator<Key> BY_SCORE =
+        Comparator.comparingDouble(Key::score);
+
+    /** Return the COUNT start settings, over all rotor orders in ORDERS,
+     *  whose decryptions with an empty plugboard have the highest index of
+     *  coincidence, best first, each as a key with an empty plugboard
+     *  scored by that index.  Each rotor order and setting of the leftmost
+     *  rotor is searched by a separate task in POOL. */
+    List<Key> rank(ExecutorService pool, List<String[]> orders, int count) {
+        List<Future<List<Key>>> results = new ArrayList<>();
+        startPhase("ranking settings", orders.size() * _size);
+        for (String[] order : orders) {
+            for (int first = 0; first < _size; first += 1) {
+                final int slot1 = first;
+                results.add(pool.submit(() -> rankSettings(order, slot1,
+                                                           count)));
+            }
+        }
+        PriorityQueue<Key> best = new PriorityQueue<>(BY_SCORE);
+        for (Future<List<Key>> result : results) {
+            for (Key key : await(result)) {
+                best.add(key);
+                if (best.size() > count) {
+                    best.poll();
+                }
+            }
+        }
+        List<Key> result = new ArrayList<>(best);
+        result.sort(BY_SCORE.reversed());
+        return result;
+    }
+
+    /** Return the COUNT start settings of rotor order ORDER with the
+     *  leftmost rotor (not counting the reflector) at setting FIRST whose
+     *  decryptions have the highest index of coincidence, as for rank. */
+    private List<Key> rankSettings(String[] order, int first, int count) {
+        Machine m = _machine.copy();
+        m.insertRotors(order);
+        m.setPlugboard(new Permutation("", _alphabet));
+        int[] setting = new int[m.numRotors() - 1];
+        setting[0] = first;
+        int[] counts = new int[_size];
+        int[] plug = new int[_size];
+        for (int c = 0; c < _size; c += 1) {
+            plug[c] = c;
+        }
+        long pairs = (long) _cipher.length * (_cipher.length - 1);
+        PriorityQueue<Key> best = new PriorityQueue<>(BY_SCORE);
+        do {
+            m.setRotors(setting);
+            Arrays.fill(counts, 0);
+            for (int c : _cipher) {
+                counts[m.convert(c)] += 1;
+            }
+            long same = 0;
+            for (int f : counts) {
+                same += (long) f * (f - 1);
+            }
+            double ioc = (double) same / pairs;
+            if (best.size() < count || ioc > best.peek().score()) {
+                best.add(new Key(order, setting.clone(), plug, _alphabet,
+                                 ioc));
+                if (best.size() > count) {
+                    best.poll();
+                }
+            }
+        } while (advance(setting));
+        _done.incrementAndGet();
+        return new ArrayList<>(best);
+    }
+
+    /** Advance SETTING, the settings of slots 1 on, to the next with the
+     *  same setting of slot 1, as an odometer with the last slot changing
+     *  fastest.  Return false if there is none. */
+    private boolean advance(int[] setting) {
+        for (int i = setting.length - 1; i >= 1; i -= 1) {
+            setting[i] += 1;
+            if (setting[i] < _size) {
+                return true;
+            }
+            setting[i] = 0;
+        }
+        return false;
+    }
+
+    /** Submit to POOL RESTARTS hill climbs from each key in STARTS, using
+     *  at most PAIRS plugboard pairs, the first from an empty plugboard
+     *  and the rest from random plugboards chosen using SEED, and return
+     *  the resulting keys in order.  Each is also offered to the best
+     *  keys as it is found. */
+    List<Future<Key>> climb(ExecutorService pool, List<Key> starts,
+                            int restarts, int pairs, long seed) {
+        startPhase("climbing", starts.size() * restarts);
+        List<Future<Key>> result = new ArrayList<>();
+        for (int k = 0; k < starts.size(); k += 1) {
+            Key start = starts.get(k);
+            for (int r = 0; r < restarts; r += 1) {
+                Random random = r == 0 ? null
+                    : new Random(seed + (long) k * restarts + r);
+                result.add(pool.submit(() -> {
+                    Key key = climb(start, pairs, random);
+                    offer(key);
+                    _done.incrementAndGet();
+                    return key;
+                }));
+            }
+        }
+        return result;
+    }
+
+    /** Return the key with the best score found by hill climbing from the
+     *  rotor order and settings of START, using at most PAIRS plugboard
+     *  pairs, starting from an empty plugboard if RANDOM is null, and
+     *  otherwise from a random one chosen using RANDOM. */
+    Key climb(Key start, int pairs, Random random) {
+        final int n = _size, len = _cipher.length;
+        Machine m = _machine.copy();
+        m.insertRotors(start.order());
+        m.setRotors(start.setting());
+        m.setPlugboard(new Permutation("", _alphabet));
+        int[][] subst = new int[len][n];
+        for (int i = 0; i < len; i += 1) {
+            m.tabulate(subst[i]);
+        }
+
+        int[] plug = new int[n], trial = new int[n], text = new int[len];
+        for (int c = 0; c < n; c += 1) {
+            plug[c] = c;
+        }
+        if (random != null) {
+            for (int k = random.nextInt(pairs + 1); k > 0; k -= 1) {
+                int a = random.nextInt(n), b = random.nextInt(n);
+                if (a != b && plug[a] == a && plug[b] == b) {
+                    plug[a] = b;
+                    plug[b] = a;
+                }
+            }
+        }
+        double best = score(subst, plug, text);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int a = 0; a < n; a += 1) {
+                for (int b = a + 1; b < n; b += 1) {
+                    System.arraycopy(plug, 0, trial, 0, n);
+                    if (!swap(trial, a, b, pairs)) {
+                        continue;
+                    }
+                    double score = score(subst, trial, text);
+                    if (score > best) {
+                        best = score;
+                        System.arraycopy(trial, 0, plug, 0, n);
+                        improved = true;
+                    }
+                }
+            }
+        }
+        return new Key(start.order(), start.setting(), plug, _alphabet,
+                       best);
+    }
+
+    /** Change plugboard PLUG so that A and B are plugged together, first
+     *  unplugging them from any other partners, or unplug them if they
+     *  were plugged together.  Return false if the result would have more
+     *  than PAIRS pairs. */
+    private static boolean swap(int[] plug, int a, int b, int pairs) {
+        if (plug[a] == b) {
+            plug[a] = a;
+            plug[b] = b;
+            return true;
+        }
+        int pa = plug[a], pb = plug[b];
+        plug[pa] = pa;
+        plug[pb] = pb;
+        plug[a] = b;
+        plug[b] = a;
+        int count = 0;
+        for (int c = 0; c < plug.length; c += 1) {
+            count += plug[c] > c ? 1 : 0;
+        }
+        return count <= pairs;
+    }
+
+    /** Return the score of the decryption with plugboard PLUG, where
+     *  SUBST[i] is the substitution made by the rotors on key press I,
+     *  using TEXT to hold the decryption. */
+    private double score(int[][] subst, int[] plug, int[] text) {
+        for (int i = 0; i < _cipher.length; i += 1) {
+            text[i] = plug[subst[i][plug[_cipher[i]]]];
+        }
+        return _model.score(text, _cipher.length);
+    }
+
+    /** Return the decryption of my ciphertext with KEY. */
+    String decrypt(Key key) {
+        Machine m = _machine.copy();
+        m.insertRotors(key.order());
+        m.setRotors(key.setting());
+        m.setPlugboard(new Permutation(key.steckers(), _alphabet));
+        StringBuilder result = new StringBuilder();
+        for (int c : _cipher) {
+            result.appendCodePoint(_alphabet.toCodePoint(m.convert(c)));
+        }
+        return result.toString();
+    }
+
+    /** Add KEY to the best keys, if it is among them. */
+    private synchronized void offer(Key key) {
+        String line = key.toString();
+        for (Key other : _best) {
+            if (other.toString().equals(line)) {
+                return;
+            }
+        }
+        _best.add(key);
+        _best.sort(BY_SCORE.reversed());
+        if (_best.size() > _top) {
+            _best.remove(_best.size() - 1);
+        }
+    }
+
+    /** Return the best keys found so far, best first. */
+    synchronized List<Key> best() {
+        return new ArrayList<>(_best);
+    }
+
+    /** Start counting the TOTAL tasks of the phase named NAME. */
+    private synchronized void startPhase(String name, int total) {
+        _phase = name;
+        _total = total;
+        _done.set(0);
+    }
+
+    /** Return a report of the progress of the current phase and the best
+     *  keys found so far, one per line with its score. */
+    synchronized String progress() {
+        StringBuilder result = new StringBuilder();
+        result.append(String.format("%s: %d/%d%n", _phase, _done.get(),
+                                    _total));
+        for (Key key : _best) {
+            result.append(String.format("  %.1f %s%n", key.score(), key));
+        }
+        return result.toString();
+    }
+
+    /** Return the result computed by RESULT, waiting for it if needed. */
+    private static <T> T await(Future<T> result) {
+        try {
+            return result.get();
+        } catch (ExecutionException excp) {
+            if (excp.getCause() instanceof EnigmaException) {
+                throw (EnigmaException) excp.getCause();
+            }
+            throw error("internal error: %s", excp.getCause());
+        } catch (InterruptedException excp) {
+            throw error("interrupted");
+        }
+    }
+
+    /** The configured machine whose rotors are searched. */
+    private final Machine _machine;
+    /** Its alphabet. */
+    private final Alphabet _alphabet;
+    /** Size of the alphabet. */
+    private final int _size;
+    /** Scores decryptions. */
+    private final Quadgrams _model;
+    /** Alphabet indices of the ciphertext. */
+    private final int[] _cipher;
+    /** Number of best keys kept. */
+    private final int _top;
+    /** Best keys found so far, best first. */
+    private final List<Key> _best = new ArrayList<>();
+    /** Name of the current phase. */
+    private String _phase = "starting";
+    /** Number of tasks in the current phase. */
+    private int _total;
+    /** Number of tasks of the current phase completed. */
+    private final AtomicInteger _done = new AtomicInteger();
+}
@@ -0,0 +1,133 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.TemporaryFolder;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static enigma.BombeTest.shortNaval;
+import static enigma.QuadgramsTest.corpusInput;
+import static enigma.TestUtils.UPPER;
+
+/** The suite of all JUnit tests for the KeySearch class.
+ *  @author Won Shil Park
+ */
+public class KeySearchTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(20);
+
+    /** Directory for model files. */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Plaintext of the test messages, also used as the corpus. */
+    private static final String TEXT =
+        "THE WEATHER FORECAST FOR THE BAY OF BISCAY TODAY IS FOR RAIN IN"
+        + " THE MORNING FOLLOWED BY STRONG WINDS FROM THE WEST IN THE"
+        + " AFTERNOON ALL SHIPS ARE TO REMAIN IN HARBOUR UNTIL FURTHER"
+        + " NOTICE AND TO REPORT THEIR POSITIONS AT SIX HOURS AND AGAIN AT"
+        + " EIGHTEEN HOURS THE CONVOY EXPECTED FROM THE NORTH HAS BEEN"
+        + " DELAYED BY THE WEATHER AND WILL NOT ARRIVE BEFORE THE"
+        + " EVENING OF THE SECOND DAY THE COMMANDER SENDS HIS REGARDS TO"
+        + " ALL OFFICERS AND MEN";
+
+    /** Rotor order of the test messages. */
+    private static final String[] ORDER = { "B", "II", "V", "III" };
+    /** Start setting of the test messages. */
+    private static final String SETTING = "KFC";
+    /** Plugboard of the test messages. */
+    private static final String STECKERS = "(AZ) (BY) (CX) (DW) (EV) (FU)";
+
+    /** Return a search of the encryption of TEXT, with a model built from
+     *  TEXT. */
+    private KeySearch search() throws Exception {
+        Path file = folder.newFile().toPath();
+        Quadgrams.build(UPPER, corpusInput(TEXT), file);
+        Machine m = shortNaval();
+        m.insertRotors(ORDER);
+        m.setRotors(SETTING);
+        m.setPlugboard(new Permutation(STECKERS, UPPER));
+        String ciphertext = m.convert(TEXT.replace(" ", ""));
+        return new KeySearch(shortNaval(), Quadgrams.open(file, UPPER),
+                             ciphertext, 3);
+    }
+
+    /** Return the start setting of KEY as a string. */
+    private static String setting(KeySearch.Key key) {
+        StringBuilder result = new StringBuilder();
+        for (int p : key.setting()) {
+            result.append(UPPER.toChar(p));
+        }
+        return result.toString();
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkClimb() throws Exception {
+        KeySearch search = search();
+        int[] setting = { 'K' - 'A', 'F' - 'A', 'C' - 'A' };
+        int[] plug = new int[26];
+        for (int c = 0; c < 26; c += 1) {
+            plug[c] = c;
+        }
+        KeySearch.Key start = new KeySearch.Key(ORDER, setting, plug,
+                                                UPPER, 0);
+        KeySearch.Key key = search.climb(start, 10, null);
+        assertEquals(STECKERS, key.steckers());
+        assertEquals("* B II V III KFC " + STECKERS, key.toString());
+        assertEquals(TEXT.replace(" ", ""), search.decrypt(key));
+        assertEquals(0, search.climb(start, 0, null).steckers().length());
+    }
+
+    @Test
+    public void checkSearch() throws Exception {
+        KeySearch search = search();
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            List<String[]> orders = new ArrayList<>();
+            orders.add(ORDER);
+            List<KeySearch.Key> starts = search.rank(pool, orders, 20);
+            assertEquals(20, starts.size());
+            boolean found = false;
+            for (KeySearch.Key key : starts) {
+                found |= setting(key).equals(SETTING);
+            }
+            assertTrue(found);
+            for (Future<KeySearch.Key> result
+                     : search.climb(pool, starts, 2, 10, 61)) {
+                result.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        List<KeySearch.Key> best = search.best();
+        assertEquals(3, best.size());
+        assertEquals("* B II V III KFC " + STECKERS, best.get(0).toString());
+        assertTrue(best.get(0).score() >= best.get(1).score());
+        assertTrue(search.progress().startsWith("climbing: 40/40"));
+        assertTrue(Arrays.asList(search.progress().split("\n"))
+                   .contains(String.format("  %.1f %s", best.get(0).score(),
+                                           best.get(0))));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkBadCiphertext() throws Exception {
+        Path file = folder.newFile().toPath();
+        Quadgrams.build(UPPER, corpusInput(TEXT), file);
+        new KeySearch(shortNaval(), Quadgrams.open(file, UPPER), "AB-CD", 3);
+    }
+}
@@ -0,0 +1,223 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import static enigma.EnigmaException.*;
+
+/** The conversions made by a machine on each key press from a given
+ *  state, tabulated over a whole period of its rotors' motion and kept in
+ *  a memory-mapped file.  Converting a character is then a single lookup
+ *  at row N mod the period, with no rotors to step.  Tables live in a
+ *  directory, in files named by a digest of the state they describe, so
+ *  that later runs (and other processes) using the same daily key map the
+ *  existing table rather than building it again.
+ *
+ *  A file holds a header (MAGIC, the length and bytes of the machine's
+ *  configuration key, the period's MU and LAMBDA as for
+ *  Machine.keyPeriod, and the alphabet size) followed by MU + LAMBDA rows
+ *  of one byte for each character of the alphabet.
+ *  @author Won Shil Park
+ */
+final class Keystream {
+
+    /** Default limit on the size of a table file. */
+    static final long DEFAULT_MAX_BYTES = 1L << 30;
+
+    /** Return the keystream for M in its current state, from directory
+     *  DIR, building and storing it if there is none.  Return null if M's
+     *  alphabet is larger than 256 characters, or if the table would take
+     *  more than MAXBYTES bytes, or more than one mapping can hold. */
+    static Keystream open(Machine m, Path dir, long maxBytes) {
+        byte[] key = m.configurationKey();
+        int size = ByteBuffer.wrap(key).getInt();
+        if (size > MAX_SIZE) {
+            return null;
+        }
+        Path file = dir.resolve(fileName(key));
+        try {
+            if (Files.exists(file)) {
+                Keystream result = map(file, key);
+                if (result != null) {
+                    return result;
+                }
+            }
+            long headerBytes = HEADER_INTS * Integer.BYTES + key.length
+                + 2 * Long.BYTES;
+            long limit = Math.min(maxBytes, Integer.MAX_VALUE);
+            long[] period = m.keyPeriod((limit - headerBytes) / size);
+            if (period == null) {
+                return null;
+            }
+            Files.createDirectories(dir);
+            Path temp = Files.createTempFile(dir, "keystream", ".tmp");
+            try {
+                write(temp, key, period, size, m.copy());
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING,
+                           StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            Keystream result = map(file, key);
+            if (result == null) {
+                throw error("keystream file %s is malformed", file);
+            }
+            return result;
+        } catch (IOException excp) {
+            throw error("could not use keystream in %s: %s", dir,
+                        excp.getMessage());
+        }
+    }
+
+    /** A keystream whose rows, each of SIZE bytes, start at DATA in TABLE,
+     *  for the machine whose configuration key is KEY, with period
+     *  { MU, LAMBDA }. */
+    private Keystream(MappedByteBuffer table, int data, int size,
+                      long mu, long lambda, byte[] key) {
+        _table = table;
+        _data = data;
+        _size = size;
+        _mu = mu;
+        _lambda = lambda;
+        _key = key;
+    }
+
+    /** Return the conversion of C on key press N (numbering from 0) from
+     *  the state I describe.  May be used by many threads at once. */
+    int convert(long n, int c) {
+        long row = n < _mu ? n : _mu + (n - _mu) % _lambda;
+        return _table.get((int) (_data + row * _size) + c) & BYTE_MASK;
+    }
+
+    /** Return true iff I describe the machine whose configuration key is
+     *  KEY. */
+    boolean matches(byte[] key) {
+        return Arrays.equals(key, _key);
+    }
+
+    /** Return the number of key presses before my rows repeat. */
+    long preperiod() {
+        return _mu;
+    }
+
+    /** Return the number of key presses after which my rows repeat. */
+    long period() {
+        return _lambda;
+    }
+
+    /** Return the name of the file holding the table for configuration
+     *  key KEY. */
+    private static String fileName(byte[] key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key);
+            StringBuilder result = new StringBuilder();
+            for (int i = 0; i < DIGEST_BYTES; i += 1) {
+                result.append(String.format("%02x", digest[i]));
+            }
+            return result.append(".ks").toString();
+        } catch (NoSuchAlgorithmException excp) {
+            throw error("internal error: %s", excp);
+        }
+    }
+
+    /** Write the table for machine M, whose configuration key is KEY,
+     *  whose alphabet has SIZE characters, and whose period is PERIOD, to
+     *  FILE.  M's rotors advance. */
+    private static void write(Path file, byte[] key, long[] period,
+                              int size, Machine m) throws IOException {
+        try (FileChannel out = FileChannel.open(file,
+                                                StandardOpenOption.WRITE)) {
+            ByteBuffer buf = ByteBuffer.allocateDirect(WRITE_BUFFER);
+            buf.putInt(MAGIC).putInt(key.length).put(key)
+                .putLong(period[0]).putLong(period[1]).putInt(size);
+            int[] subst = new int[size];
+            for (long row = 0; row < period[0] + period[1]; row += 1) {
+                if (buf.remaining() < size) {
+                    drain(buf, out);
+                }
+                m.tabulate(subst);
+                for (int c = 0; c < size; c += 1) {
+                    buf.put((byte) subst[c]);
+                }
+            }
+            drain(buf, out);
+            out.force(false);
+        }
+    }
+
+    /** Write the contents of BUF to OUT, and clear BUF. */
+    private static void drain(ByteBuffer buf, FileChannel out)
+        throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) {
+            out.write(buf);
+        }
+        buf.clear();
+    }
+
+    /** Return the keystream in FILE, or null if FILE does not hold a
+     *  complete table for configuration key KEY. */
+    private static Keystream map(Path file, byte[] key) throws IOException {
+        try (FileChannel in = FileChannel.open(file)) {
+            long length = in.size();
+            if (length > Integer.MAX_VALUE) {
+                return null;
+            }
+            MappedByteBuffer table =
+                in.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            long headerBytes = HEADER_INTS * Integer.BYTES + key.length
+                + 2 * Long.BYTES;
+            if (length < headerBytes || table.getInt() != MAGIC
+                || table.getInt() != key.length) {
+                return null;
+            }
+            byte[] stored = new byte[key.length];
+            table.get(stored);
+            long mu = table.getLong(), lambda = table.getLong();
+            int size = table.getInt();
+            if (!Arrays.equals(stored, key) || mu < 0 || lambda <= 0
+                || mu > length || lambda > length || size <= 0
+                || length != headerBytes + (mu + lambda) * size) {
+                return null;
+            }
+            return new Keystream(table, (int) headerBytes, size, mu, lambda,
+                                 key);
+        }
+    }
+
+    /** Identifies a keystream file (version 1). */
+    private static final int MAGIC = 0x454b5331;
+    /** Number of ints in a file header: MAGIC, the key length, and the
+     *  alphabet size. */
+    private static final int HEADER_INTS = 3;
+    /** Largest alphabet whose conversions fit in a byte. */
+    private static final int MAX_SIZE = 256;
+    /** Number of bytes of digest used in file names. */
+    private static final int DIGEST_BYTES = 16;
+    /** Size of the buffer used to write tables. */
+    private static final int WRITE_BUFFER = 1 << 20;
+    /** Mask giving the unsigned value of a byte. */
+    private static final int BYTE_MASK = 0xFF;
+
+    /** My table, including its header. */
+    private final MappedByteBuffer _table;
+    /** Position of my first row in _table. */
+    private final int _data;
+    /** Size of the alphabet, and so of each row. */
+    private final int _size;
+    /** Number of rows before the repeating part. */
+    private final long _mu;
+    /** Number of rows in the repeating part. */
+    private final long _lambda;
+    /** Configuration key of the machine I describe. */
+    private final byte[] _key;
+}
@@ -0,0 +1,144 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.TemporaryFolder;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Random;
+
+import static enigma.MachineTest.setUpMachine;
+
+/** The suite of all JUnit tests for the Keystream class.
+ *  @author Won Shil Park
+ */
+public class KeystreamTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(20);
+
+    /** Directory for keystream files. */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return a machine with a 6-character alphabet whose middle rotor
+     *  double steps, ready to convert. */
+    private static Machine smallMachine() {
+        Alphabet alpha = new Alphabet("ABCDEF");
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("R",
+                                 new Permutation("(AD)(BF)(CE)", alpha)));
+        rotors.add(new MovingRotor("L", new Permutation("(ABC)", alpha),
+                                   "A"));
+        rotors.add(new MovingRotor("M", new Permutation("(AFBE)", alpha),
+                                   "CD"));
+        rotors.add(new MovingRotor("F", new Permutation("(AEDC)", alpha),
+                                   "B"));
+        Machine m = new Machine(alpha, 4, 3, rotors);
+        m.insertRotors(new String[] { "R", "L", "M", "F" });
+        m.setRotors("FBE");
+        m.setPlugboard(new Permutation("(AB)", alpha));
+        return m;
+    }
+
+    /** Check that M, whose alphabet has SIZE characters, converts as a
+     *  copy of M using a keystream from directory DIR does, for N random
+     *  characters, and return that keystream. */
+    private static Keystream checkKeystream(Machine m, Path dir, int n,
+                                            int size) {
+        Machine tabled = m.copy();
+        Keystream keystream =
+            Keystream.open(tabled, dir, Keystream.DEFAULT_MAX_BYTES);
+        assertNotNull(keystream);
+        tabled.useKeystream(keystream);
+        Random random = new Random(61);
+        for (int i = 0; i < n; i += 1) {
+            int c = random.nextInt(size);
+            assertEquals("key press " + i, m.convert(c), tabled.convert(c));
+        }
+        return keystream;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkSmallMachine() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        Keystream keystream = checkKeystream(smallMachine(), dir, 2000, 6);
+        assertTrue(keystream.period() < 6 * 6 * 6);
+        assertEquals(1, Files.list(dir).count());
+        checkKeystream(smallMachine(), dir, 2000, 6);
+        assertEquals(1, Files.list(dir).count());
+    }
+
+    @Test
+    public void checkNavalMachine() {
+        Machine m = setUpMachine();
+        Keystream keystream =
+            checkKeystream(m, folder.getRoot().toPath(), 40000, 26);
+        assertEquals(26 * 25 * 26, keystream.period());
+    }
+
+    @Test
+    public void checkSeekAndSettings() {
+        Machine plain = setUpMachine(), tabled = setUpMachine();
+        tabled.useKeystream(Keystream.open(tabled, folder.getRoot().toPath(),
+                                           Keystream.DEFAULT_MAX_BYTES));
+        plain.seek(100000);
+        tabled.seek(100000);
+        assertEquals(plain.convert("HELLOWORLD"),
+                     tabled.convert("HELLOWORLD"));
+        assertEquals(plain.positionAt(0), tabled.positionAt(0));
+        Machine copy = tabled.copy();
+        assertEquals(plain.convert("ANDMORE"), copy.convert("ANDMORE"));
+        tabled.setRotors("AAAA");
+        plain.setRotors("AAAA");
+        assertEquals(plain.convert("RESET"), tabled.convert("RESET"));
+    }
+
+    @Test
+    public void checkWrongState() {
+        Machine m = setUpMachine();
+        Keystream keystream = Keystream.open(m, folder.getRoot().toPath(),
+                                             Keystream.DEFAULT_MAX_BYTES);
+        m.convert(0);
+        try {
+            m.useKeystream(keystream);
+            fail("keystream accepted for a different state");
+        } catch (EnigmaException excp) {
+            /* Expected. */
+        }
+    }
+
+    @Test
+    public void checkCorruptPeriod() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        Machine m = smallMachine();
+        long period = checkKeystream(m, dir, 100, 6).period();
+        Path file = Files.list(dir).findFirst().get();
+        byte[] bytes = Files.readAllBytes(file);
+        int at = 2 * Integer.BYTES + m.configurationKey().length;
+        for (long mu : new long[] { 1L << 62, Long.MAX_VALUE }) {
+            ByteBuffer.wrap(bytes).putLong(at, mu);
+            Files.write(file, bytes);
+            Keystream keystream = checkKeystream(m, dir, 2000, 6);
+            assertEquals(period, keystream.period());
+            assertTrue(keystream.preperiod() < bytes.length);
+        }
+    }
+
+    @Test
+    public void checkTooLarge() {
+        assertNull(Keystream.open(setUpMachine(), folder.getRoot().toPath(),
+                                  10000));
+    }
+}
@@ -1,10 +1,19 @@
 package enigma;
 
-import java.util.HashMap;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
 
-/** Class that represents a complete enigma machine.
+import static enigma.EnigmaException.*;
+
+/** Class that represents a complete enigma machine.  The settings of a
+ *  machine's rotors belong to the machine, not to the Rotor objects, which
+ *  machines never modify.  Thus any number of machines, such as copies of
+ *  one configured machine, may share the same rotors and be used on
+ *  different threads, although each machine must be used by only one
+ *  thread at a time.
  *  @author Won Shil Park
  */
 class Machine {
@@ -18,7 +27,92 @@ class Machine {
         _numRotors = numRotors;
         _pawls = pawls;
         _allRotors = allRotors;
-        _plugboard = new Permutation("", _alphabet);
+        _index = new RotorIndex(allRotors);
+        _plugboards = new ConcurrentHashMap<>();
+        _size = alpha.size();
+        _posn = new int[numRotors];
+        _core = new int[_size];
+        setPlugboard("");
+        indexChars();
+    }
+
+    /** A new Enigma machine that is a copy of M: it has the same rotors,
+     *  settings, and plugboard as M, but converting with one does not
+     *  affect the other.  The tables describing the rotors, the index of
+     *  their names, and the plugboards made so far are shared, so copying
+     *  is cheap. */
+    private Machine(Machine m) {
+        _alphabet = m._alphabet;
+        _numRotors = m._numRotors;
+        _pawls = m._pawls;
+        _allRotors = m._allRotors;
+        _index = m._index;
+        _plugboards = m._plugboards;
+        _size = m._size;
+        _chars = m._chars;
+        _keys = m._keys;
+        _posn = new int[_numRotors];
+        _core = new int[_size];
+        load(m);
+    }
+
+    /** Return a copy of me (see Machine(Machine)). */
+    Machine copy() {
+        return new Machine(this);
+    }
+
+    /** Return a record of my rotors, their settings, and my plugboard.
+     *  Restoring it returns me, or any machine with the same
+     *  configuration, to my current state. */
+    Snapshot snapshot() {
+        return new Snapshot(copy());
+    }
+
+    /** Return me to the state recorded in SNAPSHOT, which must have been
+     *  taken from a machine with my configuration. */
+    void restore(Snapshot snapshot) {
+        Machine m = snapshot._state;
+        if (m._allRotors != _allRotors || m._alphabet != _alphabet
+            || m._numRotors != _numRotors) {
+            throw error("snapshot is from a different configuration");
+        }
+        load(m);
+    }
+
+    /** Take on the rotors, settings, ring settings, and plugboard of M, a
+     *  machine with my configuration. */
+    private void load(Machine m) {
+        m.sync();
+        _myRotor = m._myRotor;
+        _plugboard = m._plugboard;
+        _forward = m._forward;
+        _backward = m._backward;
+        _offsets = m._offsets;
+        _notches = m._notches;
+        _firstMoving = m._firstMoving;
+        _jump = m._jump;
+        _plug = m._plug;
+        _engine = m._engine;
+        _entry = m._entry;
+        _exit = m._exit;
+        _fused = m._fused;
+        _rings = m._rings;
+        System.arraycopy(m._posn, 0, _posn, 0, _numRotors);
+        _coreValid = false;
+        _keystream = m._keystream;
+        _keyIndex = _keySynced = m._keyIndex;
+    }
+
+    /** The state of a machine, as recorded by snapshot(). */
+    static final class Snapshot {
+        /** A snapshot of the state of STATE, a machine used only to hold
+         *  that state. */
+        private Snapshot(Machine state) {
+            _state = state;
+        }
+
+        /** The machine holding my state. */
+        private final Machine _state;
     }
 
     /** Return the number of rotor slots I have. */
@@ -31,124 +125,682 @@ class Machine {
         return _pawls;
     }
 
+    /** Return my alphabet. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return the rotors available to be inserted. */
+    Collection<Rotor> availableRotors() {
+        return _allRotors;
+    }
+
+    /** Return the rotor in slot K, where slot 0 holds the reflector, or
+     *  null if no rotors have been inserted. */
+    Rotor rotor(int k) {
+        return _myRotor == null ? null : _myRotor[k];
+    }
+
+    /** Return my plugboard. */
+    Permutation plugboard() {
+        return _plugboard;
+    }
+
+    /** Return the available rotor whose name is TEXT[START .. END-1],
+     *  ignoring case, or null if there is none.  Takes time independent
+     *  of the number of rotors available, once the first rotor has been
+     *  found. */
+    Rotor findRotor(CharSequence text, int start, int end) {
+        return _index.find(text, start, end);
+    }
+
     /** Set my rotor slots to the rotors named ROTORS from my set of
-     *  available rotors (ROTORS[0] names the reflector).
-     *  Initially, all rotors are set at their 0 setting. */
+     *  available rotors (ROTORS[0] names the reflector), as for
+     *  insertRotors(Rotor[]). */
     void insertRotors(String[] rotors) {
-        _myRotor = new Rotor[numRotors()];
-        HashMap<String, Rotor> myMap = new HashMap<>();
-        for (Rotor r: _allRotors) {
-            myMap.put(r.name().toUpperCase(), r);
+        if (rotors.length != numRotors()) {
+            throw error("wrong number of rotors");
+        }
+        Rotor[] slots = new Rotor[rotors.length];
+        for (int i = 0; i < slots.length; i += 1) {
+            slots[i] = findRotor(rotors[i], 0, rotors[i].length());
+            if (slots[i] == null) {
+                throw error("unknown rotor %s", rotors[i]);
+            }
+        }
+        insertRotors(slots);
+    }
+
+    /** Set my rotor slots to ROTORS, which must be among my available
+     *  rotors (ROTORS[0] is the reflector).
+     *  Initially, all rotors are set at their 0 setting.  The ring
+     *  settings of my slots are kept.  All checks on the arrangement of
+     *  rotors are made here, so that conversion need not repeat them.
+     *  Inserting the rotors I already hold only resets their settings. */
+    void insertRotors(Rotor[] rotors) {
+        if (rotors.length != numRotors()) {
+            throw error("wrong number of rotors");
+        }
+        if (Arrays.equals(rotors, _myRotor)) {
+            dropKeystream();
+            Arrays.fill(_posn, 0);
+            _coreValid = false;
+            return;
         }
-        for (int i = 0; i < _myRotor.length; i++) {
-            try {
-                _myRotor[i] = myMap.get(rotors[i].toUpperCase());
-            } catch (EnigmaException e) {
-                throw new EnigmaException("Invalid name.");
+        Rotor[] slots = rotors.clone();
+        int moving = 0;
+        for (int i = 0; i < slots.length; i++) {
+            Rotor r = slots[i];
+            for (int j = 0; j < i; j += 1) {
+                if (slots[j] == r) {
+                    throw error("rotor %s used twice", r.name());
+                }
+            }
+            if (r.reflecting() != (i == 0)) {
+                throw new EnigmaException("Invalid placement"
+                        + " for reflector.");
+            }
+            if (r.rotates()) {
+                moving += 1;
+            } else if (moving > 0) {
+                throw error("fixed rotor %s right of a moving rotor",
+                            r.name());
+            }
+        }
+        if (moving != numPawls()) {
+            throw new EnigmaException("Invalid amount of rotors");
+        }
+
+        dropKeystream();
+        _myRotor = slots;
+        _firstMoving = numRotors() - moving;
+        _notches = new boolean[slots.length][_size];
+        for (int i = 0; i < slots.length; i += 1) {
+            for (int k = 0; k < _size; k += 1) {
+                _notches[i][k] = slots[i].atNotch(k);
             }
+            _posn[i] = 0;
         }
-        if (_myRotor.length != rotors.length) {
-            throw EnigmaException.error("Choose"
-                    + " a better name.");
+        _jump = new JumpAhead(_size, _firstMoving, _notches);
+        int fastNotches = 0;
+        for (boolean notch : _notches[slots.length - 1]) {
+            fastNotches += notch ? 1 : 0;
         }
+        _engine = fastNotches * ENGINE_MIN_RUN <= _size;
+        ringTables();
     }
 
     /** Set my rotors according to SETTING, which must be a string of
      *  numRotors()-1 characters in my alphabet. The first letter refers
      *  to the leftmost rotor setting (not counting the reflector).  */
     void setRotors(String setting) {
-        if (setting.length() != (numRotors() - 1)) {
+        setRotors(setting, 0, setting.length());
+    }
+
+    /** Set my rotors according to SETTING[START .. END-1], as for
+     *  setRotors(String). */
+    void setRotors(CharSequence setting, int start, int end) {
+        if (Character.codePointCount(setting, start, end)
+            != (numRotors() - 1)) {
             throw new EnigmaException("Invalid setting string length.");
         }
-        for (int i = 1; i < _myRotor.length; i++) {
-            if (!_myRotor[i].reflecting()) {
-                _myRotor[i].set(setting.charAt(i - 1));
+        dropKeystream();
+        for (int i = 1, k = start; i < _posn.length; i++) {
+            int cp = Character.codePointAt(setting, k);
+            int posn = _alphabet.indexOf(cp);
+            if (posn < 0) {
+                throw error("setting '%s' not in alphabet",
+                            Character.toString(cp));
+            }
+            _posn[i] = posn;
+            k += Character.charCount(cp);
+        }
+        _coreValid = false;
+    }
+
+    /** Set my rotors according to SETTING, where SETTING[k] is the index
+     *  in my alphabet of the setting of the rotor in slot K + 1, as for
+     *  setRotors(String). */
+    void setRotors(int[] setting) {
+        if (setting.length != numRotors() - 1) {
+            throw error("wrong number of rotor settings");
+        }
+        dropKeystream();
+        for (int i = 1; i < _posn.length; i += 1) {
+            int posn = setting[i - 1];
+            if (posn < 0 || posn >= _size) {
+                throw error("rotor setting %d out of range", posn);
+            }
+            _posn[i] = posn;
+        }
+        _coreValid = false;
+    }
+
+    /** Set the ring settings (Ringstellung) of my slots according to
+     *  RINGS, which must be a string of numRotors()-1 characters in my
+     *  alphabet, the first for the leftmost slot after the reflector's.
+     *  A rotor whose ring is at R and that is at setting P converts as
+     *  the same rotor with its ring at 0 would at setting P - R, but its
+     *  notches stay where they were.  Rings are folded into the tables
+     *  that conversion uses, so that they cost nothing per character. */
+    void setRings(String rings) {
+        setRings(rings, 0, rings.length());
+    }
+
+    /** Set the ring settings of my slots according to RINGS[START ..
+     *  END-1], as for setRings(String). */
+    void setRings(CharSequence rings, int start, int end) {
+        if (Character.codePointCount(rings, start, end)
+            != numRotors() - 1) {
+            throw error("Invalid ring setting string length.");
+        }
+        int[] ring = new int[_numRotors];
+        boolean any = false;
+        for (int i = 1, k = start; i < ring.length; i += 1) {
+            int cp = Character.codePointAt(rings, k);
+            ring[i] = _alphabet.indexOf(cp);
+            if (ring[i] < 0) {
+                throw error("ring setting '%s' not in alphabet",
+                            Character.toString(cp));
+            }
+            any |= ring[i] != 0;
+            k += Character.charCount(cp);
+        }
+        setRings(any ? ring : null);
+    }
+
+    /** Set all my ring settings to 0. */
+    void clearRings() {
+        setRings((int[]) null);
+    }
+
+    /** Set my ring settings to RINGS, where RINGS[k] is the ring setting
+     *  of slot K, or to 0 if RINGS is null. */
+    private void setRings(int[] rings) {
+        if (Arrays.equals(rings, _rings)) {
+            return;
+        }
+        sync();
+        dropKeystream();
+        _rings = rings;
+        if (_myRotor != null) {
+            ringTables();
+        }
+    }
+
+    /** Return my ring setting for slot K. */
+    int ring(int k) {
+        return _rings == null ? 0 : _rings[k];
+    }
+
+    /** Set the tables through which I convert for the rotors in my slots
+     *  with their ring settings.  A rotor's ring at R turns its forward
+     *  table F into G, where G[k] = F[k - R] + R (modulo the size of my
+     *  alphabet), and likewise its inverse table, so that converting
+     *  through G at setting P is converting through F at setting P - R;
+     *  its offset tables are rotated by R settings. */
+    private void ringTables() {
+        int slots = _myRotor.length;
+        _forward = new int[slots][];
+        _backward = new int[slots][];
+        _offsets = new OffsetTables[slots];
+        for (int i = 0; i < slots; i += 1) {
+            Permutation perm = _myRotor[i].permutation();
+            OffsetTables offsets = _myRotor[i].offsets();
+            int r = ring(i);
+            if (r == 0) {
+                _forward[i] = perm.forwardTable();
+                _backward[i] = perm.inverseTable();
+                _offsets[i] = offsets;
             } else {
-                throw new EnigmaException("Invalid placement"
-                        + " for reflector.");
+                _forward[i] = ringed(perm.forwardTable(), r);
+                _backward[i] = ringed(perm.inverseTable(), r);
+                _offsets[i] = offsets == null ? null : offsets.rotated(r);
             }
         }
+        _fused = false;
+        _coreValid = false;
+    }
+
+    /** Return the table G with G[k] = TABLE[k - R] + R, modulo the size
+     *  of my alphabet. */
+    private int[] ringed(int[] table, int r) {
+        final int n = _size;
+        int[] result = new int[n];
+        for (int k = 0; k < n; k += 1) {
+            int c = table[k >= r ? k - r : k - r + n] + r;
+            result[k] = c >= n ? c - n : c;
+        }
+        return result;
+    }
+
+    /** Return the forward table of the rotor in slot K with its ring
+     *  setting applied, as for Permutation.forwardTable.  The result must
+     *  not be modified. */
+    int[] forwardTable(int k) {
+        return _forward[k];
+    }
+
+    /** Return the inverse table of the rotor in slot K with its ring
+     *  setting applied, as for Permutation.inverseTable.  The result must
+     *  not be modified. */
+    int[] inverseTable(int k) {
+        return _backward[k];
+    }
+
+    /** Return the current setting of the rotor in slot K, where slot 0
+     *  holds the reflector. */
+    int setting(int k) {
+        sync();
+        return _posn[k];
+    }
+
+    /** Advance my rotors to where they would be after converting N
+     *  characters in my alphabet, without converting them.  Unless some
+     *  rotor that can double step has notches at two consecutive
+     *  settings, this takes time independent of N. */
+    void seek(long n) {
+        if (n < 0) {
+            throw error("cannot seek backwards");
+        }
+        if (_keystream != null) {
+            _keyIndex += n;
+            return;
+        }
+        _jump.jump(_posn, n);
+        _coreValid = false;
+    }
+
+    /** Return true iff seek takes time independent of its argument, as
+     *  it does unless some rotor that can double step has notches at two
+     *  consecutive settings. */
+    boolean seeksDirectly() {
+        return _keystream != null || _jump == null || _jump.regular();
+    }
+
+    /** Return the setting my rotors would have after converting N more
+     *  characters, in the form accepted by setRotors. */
+    String positionAt(long n) {
+        if (n < 0) {
+            throw error("cannot seek backwards");
+        }
+        sync();
+        int[] posn = _posn.clone();
+        _jump.jump(posn, n);
+        StringBuilder result = new StringBuilder();
+        for (int i = 1; i < posn.length; i += 1) {
+            result.appendCodePoint(_alphabet.toCodePoint(posn[i]));
+        }
+        return result.toString();
     }
 
     /** Set the plugboard to PLUGBOARD. */
     void setPlugboard(Permutation plugboard) {
+        sync();
+        dropKeystream();
+        if (plugboard == _plugboard) {
+            return;
+        }
         _plugboard = plugboard;
+        _plug = plugboard.forwardTable();
+        _fused = false;
+        _coreValid = false;
+    }
+
+    /** Set the plugboard to the permutation of my alphabet given by
+     *  CYCLES.  The permutations made this way are kept (up to a limit)
+     *  and shared with my copies, so that a plugboard that has been used
+     *  before is neither parsed nor combined with my last rotor again. */
+    void setPlugboard(String cycles) {
+        Permutation plugboard = _plugboards.get(cycles);
+        if (plugboard == null) {
+            plugboard = new Permutation(cycles, _alphabet);
+            if (_plugboards.size() >= PLUGBOARD_CACHE_SIZE) {
+                _plugboards.clear();
+            }
+            Permutation old = _plugboards.putIfAbsent(cycles, plugboard);
+            plugboard = old != null ? old : plugboard;
+        }
+        setPlugboard(plugboard);
     }
 
     /** Returns the result of converting the input character C (as an
      *  index in the range 0..alphabet size - 1), after first advancing
-
      *  the machine. */
     int convert(int c) {
-        int count = 0;
-        for (int i = 0; i < _myRotor.length; i++) {
-            if (_myRotor[i].rotates()) {
-                count++;
+        if (_keystream != null) {
+            int result = _keystream.convert(_keyIndex, c);
+            _keyIndex += 1;
+            return result;
+        }
+        if (!_engine) {
+            _jump.step(_posn);
+            return convertThroughRotors(c);
+        }
+        if (_jump.step(_posn) || !_coreValid) {
+            buildCore();
+        }
+        final int n = _size;
+        final int p = _posn[_numRotors - 1];
+        if (_entry != null) {
+            return _exit[p][_core[_entry[p][c]]];
+        }
+        final int last = _numRotors - 1;
+        final OffsetTables offsets = _offsets[last];
+        if (offsets != null) {
+            c = offsets.forward(p, _plug[c]);
+            return _plug[offsets.backward(p, _core[c])];
+        }
+        int k = _plug[c] + p;
+        c = _forward[last][k >= n ? k - n : k] - p;
+        k = _core[c < 0 ? c + n : c] + p;
+        c = _backward[last][k >= n ? k - n : k] - p;
+        return _plug[c < 0 ? c + n : c];
+    }
+
+    /* In engine mode, used unless the rotor in the last slot has notches
+     * at more than a small fraction of its settings, the substitution made
+     * by the rotors in all other slots, in and back out through the
+     * reflector, is kept in _core, which need be rebuilt only when one of
+     * those rotors moves.  A key press then costs a few table lookups:
+     * when the alphabet is small enough, those through the plugboard and
+     * the last rotor at each of its settings are combined in _entry and
+     * _exit. */
+
+    /** Set _core to the substitution made by the rotors in all slots but
+     *  the last at their current settings, first bringing _entry and _exit
+     *  up to date if need be. */
+    private void buildCore() {
+        if (!_fused) {
+            fuse();
+        }
+        final int[] core = _core;
+        final int last = _numRotors - 1;
+        for (int c = 0; c < _size; c += 1) {
+            core[c] = c;
+        }
+        for (int j = last - 1; j >= 0; j -= 1) {
+            through(core, j, true, _posn[j]);
+        }
+        for (int j = 1; j < last; j += 1) {
+            through(core, j, false, _posn[j]);
+        }
+        _coreValid = true;
+    }
+
+    /** Replace each entry C of SUBST with the result of passing C through
+     *  the rotor in slot J at setting P, forward iff FORWARD. */
+    private void through(int[] subst, int j, boolean forward, int p) {
+        final OffsetTables offsets = _offsets[j];
+        if (offsets != null) {
+            for (int i = 0; i < subst.length; i += 1) {
+                subst[i] = forward ? offsets.forward(p, subst[i])
+                    : offsets.backward(p, subst[i]);
             }
+            return;
         }
-        if (count != numPawls()) {
-            throw new EnigmaException("Invalid amount of rotors");
+        final int n = _size;
+        final int[] table = forward ? _forward[j] : _backward[j];
+        for (int i = 0; i < subst.length; i += 1) {
+            int k = subst[i] + p;
+            int c = table[k >= n ? k - n : k] - p;
+            subst[i] = c < 0 ? c + n : c;
         }
+    }
 
-        ArrayList<Rotor> advance = new ArrayList<>();
-        if (_plugboard != null) {
-            c = _plugboard.permute(c);
+    /** Set _entry and _exit for my plugboard and the rotor in my last
+     *  slot, if I am in engine mode with a small enough alphabet, and
+     *  otherwise to null.  They are replaced, not modified, since copies
+     *  of me may share them.  This is done on the first conversion after
+     *  my plugboard, rotors, or ring settings change, so that changing
+     *  several of them at once combines them only once. */
+    private void fuse() {
+        _fused = true;
+        _entry = _exit = null;
+        if (_myRotor == null || !_engine || _size > FUSE_LIMIT) {
+            return;
         }
-        Rotor last = _myRotor[_myRotor.length - 1];
-        advance.add(last);
-        for (int i = 0; i < _myRotor.length - 1; i++) {
-            Rotor curr = _myRotor[i];
-            Rotor next = _myRotor[i + 1];
-            if (next.atNotch() && curr.rotates()
-                    && next.rotates()) {
-                if (!advance.contains(_myRotor[i])) {
-                    advance.add(_myRotor[i]);
-                }
-                if (!advance.contains(_myRotor[i + 1])) {
-                    advance.add(_myRotor[i + 1]);
-                }
+        final int last = _numRotors - 1;
+        int[][] entry = new int[_size][];
+        int[][] exit = new int[_size][];
+        for (int p = 0; p < _size; p += 1) {
+            entry[p] = _plug.clone();
+            through(entry[p], last, true, p);
+            int[] back = new int[_size];
+            for (int c = 0; c < _size; c += 1) {
+                back[c] = c;
+            }
+            through(back, last, false, p);
+            exit[p] = back;
+            for (int c = 0; c < _size; c += 1) {
+                back[c] = _plug[back[c]];
             }
         }
+        _entry = entry;
+        _exit = exit;
+    }
 
-        for (Rotor r: advance) {
-            r.advance();
+    /** Convert with KEYSTREAM, which must have been made for my rotors,
+     *  plugboard, and settings as they are now, until my settings or
+     *  plugboard are next changed (other than by seek). */
+    void useKeystream(Keystream keystream) {
+        if (!keystream.matches(configurationKey())) {
+            throw error("keystream is for a different machine state");
+        }
+        _keystream = keystream;
+        _keyIndex = _keySynced = 0;
+    }
+
+    /** Return a description of my rotors, their notches and current
+     *  settings, and my plugboard, that determines all my future
+     *  conversions. */
+    byte[] configurationKey() {
+        sync();
+        ByteBuffer key = ByteBuffer.allocate(
+            Integer.BYTES * (3 + _numRotors * (2 * _size + 1) + _size));
+        key.putInt(_size).putInt(_numRotors).putInt(_firstMoving);
+        for (int i = 0; i < _numRotors; i += 1) {
+            key.putInt(_posn[i]);
+            for (int k = 0; k < _size; k += 1) {
+                key.putInt(_forward[i][k]).putInt(_notches[i][k] ? 1 : 0);
+            }
         }
-        for (int j = _myRotor.length - 1; j >= 0; j--) {
-            c = _myRotor[j].convertForward(c);
+        for (int k = 0; k < _size; k += 1) {
+            key.putInt(_plug[k]);
+        }
+        return key.array();
+    }
+
+    /** Return { MU, LAMBDA }, where my rotors will have the same settings
+     *  on key presses K and K + LAMBDA (numbering from 0) for all
+     *  K >= MU, or null if MU + LAMBDA would exceed LIMIT. */
+    long[] keyPeriod(long limit) {
+        sync();
+        return _jump.cycle(_posn, limit);
+    }
+
+    /** Advance my rotors as for one key press, and set SUBST[c] to the
+     *  conversion of each C at my new settings.  I stop using any
+     *  keystream. */
+    void tabulate(int[] subst) {
+        sync();
+        dropKeystream();
+        _jump.step(_posn);
+        _coreValid = false;
+        final int last = _numRotors - 1;
+        System.arraycopy(_plug, 0, subst, 0, _size);
+        for (int j = last; j >= 0; j -= 1) {
+            through(subst, j, true, _posn[j]);
         }
-        for (int j = 1; j < _myRotor.length; j++) {
-            c = _myRotor[j].convertBackward(c);
+        for (int j = 1; j <= last; j += 1) {
+            through(subst, j, false, _posn[j]);
         }
-        if (_plugboard != null) {
-            c = _plugboard.permute(c);
+        for (int c = 0; c < _size; c += 1) {
+            subst[c] = _plug[subst[c]];
         }
-        return c;
+    }
+
+    /** Stop using a keystream, discarding any key presses made with it
+     *  that my settings do not yet reflect. */
+    private void dropKeystream() {
+        _keystream = null;
+        _keyIndex = _keySynced = 0;
+    }
+
+    /** Bring my rotor settings up to date with the key presses made with
+     *  my keystream. */
+    private void sync() {
+        if (_keyIndex != _keySynced) {
+            _jump.jump(_posn, _keyIndex - _keySynced);
+            _keySynced = _keyIndex;
+            _coreValid = false;
+        }
+    }
+
+    /** Return the result of converting C through my plugboard and all my
+     *  rotors at their current settings. */
+    private int convertThroughRotors(int c) {
+        final int n = _size;
+        c = _plug[c];
+        for (int j = _posn.length - 1; j >= 0; j -= 1) {
+            int p = _posn[j];
+            if (_offsets[j] != null) {
+                c = _offsets[j].forward(p, c);
+            } else {
+                int k = c + p;
+                c = _forward[j][k >= n ? k - n : k] - p;
+                c += c < 0 ? n : 0;
+            }
+        }
+        for (int j = 1; j < _posn.length; j += 1) {
+            int p = _posn[j];
+            if (_offsets[j] != null) {
+                c = _offsets[j].backward(p, c);
+            } else {
+                int k = c + p;
+                c = _backward[j][k >= n ? k - n : k] - p;
+                c += c < 0 ? n : 0;
+            }
+        }
+        return _plug[c];
     }
 
     /** Returns the encoding/decoding of MSG, updating the state of
-     *  the rotors accordingly. */
+     *  the rotors accordingly.  Lower-case letters are converted as their
+     *  upper-case forms, and characters not in my alphabet are copied to
+     *  the result (in upper case) without advancing the rotors. */
     String convert(String msg) {
-        int count = 0;
-        for (int i = 0; i < _myRotor.length; i++) {
-            if (_myRotor[i].rotates()) {
-                count++;
+        char[] in = msg.toCharArray();
+        char[] out = _keys != null ? in : new char[2 * in.length];
+        return new String(out, 0, convert(in, 0, in.length, out, 0));
+    }
+
+    /** Convert the LEN characters IN[OFF .. OFF+LEN-1] as for
+     *  convert(String), storing the result in OUT starting at OUTOFF, and
+     *  return the number of characters stored.  When my alphabet has no
+     *  supplementary characters that number is LEN, and OUT may be IN
+     *  with OUTOFF == OFF; otherwise OUT must have room for 2 * LEN
+     *  characters and must not overlap IN. */
+    int convert(char[] in, int off, int len, char[] out, int outOff) {
+        if (_keys == null) {
+            return convertCodePoints(in, off, len, out, outOff);
+        }
+        final int[] keys = _keys;
+        final char[] chars = _chars;
+        for (int i = 0; i < len; i += 1) {
+            int k = keys[in[off + i]];
+            out[outOff + i] = k >= 0 ? chars[convert(k)] : (char) ~k;
+        }
+        return len;
+    }
+
+    /** Convert the remaining characters of IN as for convert(String),
+     *  putting the result into OUT, which must have room for them (twice
+     *  as many if my alphabet has supplementary characters). */
+    void convert(CharBuffer in, CharBuffer out) {
+        int len = in.remaining();
+        if (in.hasArray() && out.hasArray()) {
+            int n = convert(in.array(), in.arrayOffset() + in.position(),
+                            len, out.array(),
+                            out.arrayOffset() + out.position());
+            in.position(in.position() + len);
+            out.position(out.position() + n);
+        } else {
+            char[] buf = new char[Math.min(len, BUFFER_SIZE)];
+            char[] res = _keys != null ? buf : new char[2 * buf.length];
+            while (in.hasRemaining()) {
+                int n = Math.min(in.remaining(), buf.length);
+                in.get(buf, 0, n);
+                out.put(res, 0, convert(buf, 0, n, res, 0));
             }
         }
-        if (count != numPawls()) {
-            throw new EnigmaException("Invalid amount of rotors");
+    }
+
+    /** Convert IN[OFF .. OFF+LEN-1] into OUT starting at OUTOFF, as for
+     *  convert(char[], int, int, char[], int), code point by code point,
+     *  returning the number of chars stored. */
+    private int convertCodePoints(char[] in, int off, int len,
+                                  char[] out, int outOff) {
+        int k = outOff;
+        for (int i = off; i < off + len; ) {
+            int cp = Character.codePointAt(in, i, off + len);
+            i += Character.charCount(cp);
+            cp = Character.toUpperCase(cp);
+            int index = _alphabet.indexOf(cp);
+            if (index >= 0) {
+                cp = _alphabet.toCodePoint(convert(index));
+            }
+            k += Character.toChars(cp, out, k);
+        }
+        return k - outOff;
+    }
+
+    /** Return true iff every character of my alphabet is a single char,
+     *  so that convert(char[], int, int, char[], int) converts char for
+     *  char. */
+    boolean charsOnly() {
+        return _keys != null;
+    }
+
+    /** Return the index in my alphabet of CH in upper case, or if there
+     *  is none, the bitwise complement of CH in upper case.  Requires
+     *  charsOnly(). */
+    int keyOf(char ch) {
+        return _keys[ch];
+    }
+
+    /** Return the number of characters among IN[OFF .. OFF+LEN-1] that
+     *  are in my alphabet, once in upper case, and so would advance my
+     *  rotors if converted.  Requires charsOnly(). */
+    int countKeys(char[] in, int off, int len) {
+        int count = 0;
+        for (int i = off; i < off + len; i += 1) {
+            if (_keys[in[i]] >= 0) {
+                count += 1;
+            }
         }
-        String finalMsg = "";
-        msg = msg.toUpperCase();
-        for (int i = 0; i < msg.length(); i++) {
-            try {
-                int in = _alphabet.toInt(msg.charAt(i));
-                char out = _alphabet.toChar(convert(in));
-                finalMsg += out;
-            } catch (EnigmaException excp) {
-                finalMsg += msg.charAt(i);
+        return count;
+    }
+
+    /** Fill in _chars and _keys for my alphabet, unless it has
+     *  supplementary characters. */
+    private void indexChars() {
+        char[] chars = new char[_size];
+        for (int i = 0; i < _size; i += 1) {
+            int cp = _alphabet.toCodePoint(i);
+            if (Character.isSupplementaryCodePoint(cp)) {
+                return;
             }
+            chars[i] = (char) cp;
+        }
+        int[] keys = new int[Character.MAX_VALUE + 1];
+        for (int c = 0; c < keys.length; c += 1) {
+            char upper = Character.toUpperCase((char) c);
+            int index = _alphabet.indexOf(upper);
+            keys[c] = index >= 0 ? index : ~upper;
         }
-        return finalMsg;
+        _chars = chars;
+        _keys = keys;
     }
 
     /** Common alphabet of my rotors. */
@@ -159,8 +811,87 @@ class Machine {
     private final int _pawls;
     /** All rotors in alphabet. */
     protected Collection<Rotor> _allRotors;
+    /** Index of _allRotors by name. */
+    private final RotorIndex _index;
+    /** Plugboards made by setPlugboard(String), by their cycles. */
+    private final ConcurrentHashMap<String, Permutation> _plugboards;
     /** new array Rotor. */
     private Rotor[] _myRotor;
     /** Permutation. */
     private Permutation _plugboard;
+
+    /* The rotors in my slots are shared with the collection of available
+     * rotors, so I keep their settings and ring settings myself and
+     * convert using their permutations' tables rather than the Rotor
+     * methods.  Slot 0 holds the reflector.  The arrays other than _posn
+     * are replaced, never modified, by insertRotors and setRings, so that
+     * copies and snapshots may share them. */
+
+    /** Size of my alphabet. */
+    private final int _size;
+    /** _forward[i] is the forward table of the rotor in slot I, with its
+     *  ring setting applied. */
+    private int[][] _forward;
+    /** _backward[i] is the inverse table of the rotor in slot I, with its
+     *  ring setting applied. */
+    private int[][] _backward;
+    /** _offsets[i] holds the tables of the rotor in slot I at each of its
+     *  settings, with its ring setting applied, or is null if its
+     *  alphabet is too large for them. */
+    private OffsetTables[] _offsets;
+    /** _notches[i][k] is true iff the rotor in slot I is a moving rotor
+     *  with a notch at setting K. */
+    private boolean[][] _notches;
+    /** _posn[i] is the current setting of the rotor in slot I. */
+    private final int[] _posn;
+    /** Index of my leftmost moving rotor (numRotors() if none). */
+    private int _firstMoving;
+    /** Steps my rotors, one key press or many at a time. */
+    private JumpAhead _jump;
+    /** Forward table of my plugboard. */
+    private int[] _plug;
+    /** True iff I convert in engine mode. */
+    private boolean _engine;
+    /** In engine mode, the substitution made by the rotors in all slots
+     *  but the last, if _coreValid.  Belongs to me alone. */
+    private final int[] _core;
+    /** True iff _core is up to date with my settings. */
+    private boolean _coreValid;
+    /** When non-null, _entry[p][c] is the result of passing C through my
+     *  plugboard and then forward through my last rotor at setting P. */
+    private int[][] _entry;
+    /** True iff _entry and _exit are up to date. */
+    private boolean _fused;
+    /** _rings[i] is the ring setting of slot I, or _rings is null if all
+     *  are 0. */
+    private int[] _rings;
+    /** When non-null, _exit[p][c] is the result of passing C back through
+     *  my last rotor at setting P and then through my plugboard. */
+    private int[][] _exit;
+
+    /** Keystream I convert with, or null. */
+    private Keystream _keystream;
+    /** Number of key presses made with _keystream. */
+    private long _keyIndex;
+    /** Value of _keyIndex at which _posn was last brought up to date. */
+    private long _keySynced;
+
+    /** Engine mode is used when the rotor in the last slot has at most one
+     *  notch for each this many of its settings. */
+    private static final int ENGINE_MIN_RUN = 4;
+    /** Largest alphabet for which the plugboard and last rotor are
+     *  combined for each setting of the last rotor. */
+    private static final int FUSE_LIMIT = 256;
+    /** Most plugboards kept by setPlugboard(String). */
+    private static final int PLUGBOARD_CACHE_SIZE = 1024;
+
+    /** Size of the buffers used to convert CharBuffers without arrays. */
+    private static final int BUFFER_SIZE = 8192;
+    /** _chars[k] is character #K of my alphabet, or null if my alphabet
+     *  contains supplementary characters. */
+    private char[] _chars;
+    /** For each char C, _keys[C] is the index in my alphabet of C in
+     *  upper case, or if there is none, the bitwise complement of C in
+     *  upper case.  Null when _chars is. */
+    private int[] _keys;
 }
@@ -0,0 +1,437 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Random;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the Machine class.
+ *  @author Won Shil Park
+ */
+public class MachineTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return a 5-slot, 3-pawl machine with the naval rotors available. */
+    static Machine navalMachine() {
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        String[] moving = { "I", "II", "III", "IV", "V" };
+        String notches = "QEVJZ";
+        for (int i = 0; i < moving.length; i += 1) {
+            rotors.add(new MovingRotor(moving[i],
+                           new Permutation(NAVALA.get(moving[i]), UPPER),
+                           notches.substring(i, i + 1)));
+        }
+        for (String name : new String[] { "Beta", "Gamma" }) {
+            rotors.add(new FixedRotor(name,
+                           new Permutation(NAVALA.get(name), UPPER)));
+        }
+        for (String name : new String[] { "B", "C" }) {
+            rotors.add(new Reflector(name,
+                           new Permutation(NAVALA.get(name), UPPER)));
+        }
+        return new Machine(UPPER, 5, 3, rotors);
+    }
+
+    /** Return a naval machine set up as for the setting line
+     *  "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)". */
+    static Machine setUpMachine() {
+        Machine m = navalMachine();
+        m.insertRotors(new String[] { "B", "Beta", "III", "IV", "I" });
+        m.setRotors("AXLE");
+        m.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", UPPER));
+        return m;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkConvert() {
+        Machine m = navalMachine();
+        m.insertRotors(new String[] { "B", "Beta", "I", "II", "III" });
+        m.setRotors("AAAA");
+        assertEquals("ILBDAAMTAZ", m.convert("HELLOWORLD"));
+        m = setUpMachine();
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW",
+                     m.convert("FROMHISSHOULDERHIAWATHA"));
+    }
+
+    @Test
+    public void checkBulkConvert() {
+        String msg = "From his shoulder Hiawatha\nTook the camera of rosewood!";
+        String expected = setUpMachine().convert(msg);
+        assertEquals("QVPQ SOK OILPUBKJ ZPISFXDW\nBHCN SCX",
+                     expected.substring(0, 35));
+
+        char[] in = ("xx" + msg).toCharArray();
+        char[] out = new char[in.length + 1];
+        assertEquals(msg.length(),
+                     setUpMachine().convert(in, 2, msg.length(), out, 1));
+        assertEquals(expected, new String(out, 1, msg.length()));
+
+        CharBuffer buf = CharBuffer.allocate(msg.length());
+        setUpMachine().convert(CharBuffer.wrap(msg), buf);
+        assertEquals(expected, new String(buf.array()));
+
+        CharBuffer direct =
+            ByteBuffer.allocateDirect(2 * msg.length()).asCharBuffer();
+        direct.put(msg).flip();
+        buf.clear();
+        setUpMachine().convert(direct, buf);
+        assertEquals(expected, new String(buf.array()));
+    }
+
+    @Test
+    public void checkSupplementaryAlphabet() {
+        String a = "\u00c0" + Character.toString(0x1F600) + "B";
+        Alphabet alpha = new Alphabet(a);
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("R", new Permutation("(" + a + ")", alpha)));
+        rotors.add(new MovingRotor("M", new Permutation("", alpha), "B"));
+        Machine m = new Machine(alpha, 2, 1, rotors);
+        m.insertRotors(new String[] { "R", "M" });
+        m.setRotors(Character.toString(0x1F600));
+        String smile = Character.toString(0x1F600);
+        assertEquals(smile + "-" + smile + "-B",
+                     m.convert("\u00e0-\u00c0-" + smile));
+    }
+
+    @Test
+    public void checkDoubleStep() {
+        Machine m = navalMachine();
+        m.insertRotors(new String[] { "B", "Beta", "I", "II", "III" });
+        m.setRotors("AADU");
+        assertEquals("AADU", settingOf(m));
+        m.convert(0);
+        assertEquals("AADV", settingOf(m));
+        m.convert(0);
+        assertEquals("AAEW", settingOf(m));
+        m.convert(0);
+        assertEquals("ABFX", settingOf(m));
+        m.convert(0);
+        assertEquals("ABFY", settingOf(m));
+    }
+
+    @Test
+    public void checkSeek() {
+        Random random = new Random(61);
+        String[] order = { "B", "Beta", "II", "V", "III" };
+        for (int trial = 0; trial < 200; trial += 1) {
+            Machine stepped = navalMachine(), jumped = navalMachine();
+            stepped.insertRotors(order);
+            jumped.insertRotors(order);
+            String setting = "";
+            for (int k = 0; k < 4; k += 1) {
+                setting += UPPER.toChar(random.nextInt(26));
+            }
+            stepped.setRotors(setting);
+            jumped.setRotors(setting);
+            int n = random.nextInt(2000);
+            for (int k = 0; k < n; k += 1) {
+                stepped.convert(0);
+            }
+            assertEquals(settingOf(stepped), jumped.positionAt(n));
+            jumped.seek(n);
+            assertEquals(settingOf(stepped), settingOf(jumped));
+        }
+    }
+
+    @Test
+    public void checkLongSeek() {
+        Machine m = setUpMachine();
+        m.seek(3_000_000_000_000L);
+        assertEquals("AUVU", settingOf(m));
+    }
+
+    @Test
+    public void checkSnapshot() {
+        Machine m = setUpMachine();
+        Machine.Snapshot start = m.snapshot();
+        String first = m.convert("FROMHISSHOULDERHIAWATHA");
+        Machine.Snapshot middle = m.snapshot();
+        String second = m.convert("TOOKTHECAMERAOFROSEWOOD");
+        m.restore(start);
+        assertEquals(first, m.convert("FROMHISSHOULDERHIAWATHA"));
+        Machine other = m.copy();
+        other.insertRotors(new String[] { "C", "Gamma", "I", "II", "V" });
+        other.restore(middle);
+        assertEquals(second, other.convert("TOOKTHECAMERAOFROSEWOOD"));
+    }
+
+    @Test
+    public void checkConcurrentCopies() throws InterruptedException {
+        Machine original = setUpMachine();
+        String msg = "FROMHISSHOULDERHIAWATHATOOKTHECAMERAOFROSEWOOD";
+        String expected = original.copy().convert(msg.repeat(200));
+        Thread[] threads = new Thread[8];
+        String[] results = new String[threads.length];
+        for (int t = 0; t < threads.length; t += 1) {
+            Machine copy = original.copy();
+            int k = t;
+            threads[t] = new Thread(() -> {
+                results[k] = copy.convert(msg.repeat(200));
+            });
+            threads[t].start();
+        }
+        for (int t = 0; t < threads.length; t += 1) {
+            threads[t].join();
+            assertEquals(expected, results[t]);
+        }
+        assertEquals("AXLE", original.positionAt(0));
+    }
+
+    @Test
+    public void checkReconfigure() {
+        Machine m = navalMachine();
+        String line = "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)";
+        Main.configure(m, line, 2);
+        Permutation plugboard = m.plugboard();
+        Rotor reflector = m.rotor(0);
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW",
+                     m.convert("FROMHISSHOULDERHIAWATHA"));
+        Main.configure(m, "b beta iii iv i AXLE (HQ) (EX) (IP) (TR) (BY)");
+        assertSame(plugboard, m.plugboard());
+        assertSame(reflector, m.rotor(0));
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW",
+                     m.convert("FROMHISSHOULDERHIAWATHA"));
+        Machine copy = m.copy();
+        Main.configure(copy, "B Beta I II III AAAA");
+        assertEquals("ILBDAAMTAZ", copy.convert("HELLOWORLD"));
+        Main.configure(copy, line, 2);
+        assertSame(plugboard, copy.plugboard());
+        try {
+            Main.configure(m, "B Beta III IV Iota AXLE");
+            fail("unknown rotor accepted");
+        } catch (EnigmaException excp) {
+            assertEquals("unknown rotor Iota", excp.getMessage());
+        }
+    }
+
+    @Test
+    public void checkRings() {
+        ArrayList<Rotor> rotors = new ArrayList<>(navalMachine()
+                                                  .availableRotors());
+        rotors.add(new Reflector("UKW-B",
+                       new Permutation("(AY) (BR) (CU) (DH) (EQ) (FS) (GL)"
+                                       + " (IP) (JX) (KN) (MO) (TZ) (VW)",
+                                       UPPER)));
+        Machine m = new Machine(UPPER, 4, 3, rotors);
+        m.insertRotors(new String[] { "UKW-B", "I", "II", "III" });
+        m.setRotors("AAA");
+        assertEquals("BDZGO", m.convert("AAAAA"));
+        m.setRotors("AAA");
+        m.setRings("BBB");
+        assertEquals("EWTYX", m.convert("AAAAA"));
+        Machine copy = m.copy();
+        assertEquals(m.convert("HELLOWORLD"), copy.convert("HELLOWORLD"));
+        m.insertRotors(new String[] { "UKW-B", "I", "II", "III" });
+        assertEquals(UPPER.toInt('B'), m.ring(3));
+        m.clearRings();
+        m.setRotors("AAA");
+        assertEquals("BDZGO", m.convert("AAAAA"));
+    }
+
+    @Test
+    public void checkRingsInSettingLine() {
+        Machine ringed = navalMachine(), shifted = navalMachine();
+        Main.configure(ringed, "B Beta III IV I AXLE BCDE (HQ) (EX)");
+        Main.configure(shifted, "B Beta III IV I ZVIA (HQ) (EX)");
+        String msg = "FROMHISSHOULDERHIAWATHATOOKTHECAMERAOFROSEWOOD";
+        assertNotEquals(ringed.convert(msg), shifted.convert(msg));
+        Main.configure(ringed, "B Beta III IV I AXLE BCDE");
+        Main.configure(shifted, "B Beta III IV I AXLE AAAA");
+        assertEquals(UPPER.toInt('E'), ringed.ring(4));
+        assertEquals(0, shifted.ring(4));
+        Machine plain = navalMachine();
+        Main.configure(plain, "B Beta III IV I AXLE");
+        assertEquals(plain.convert(msg), shifted.convert(msg));
+        for (String bad : new String[] { "B Beta III IV I AXLE BCD",
+                                         "B Beta III IV I AXLE BC1D" }) {
+            try {
+                Main.configure(ringed, bad);
+                fail("bad ring settings accepted");
+            } catch (EnigmaException excp) {
+                /* Expected. */
+            }
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkRepeatedRotor() {
+        navalMachine().insertRotors(new String[] { "B", "Beta", "I", "I",
+                                                   "III" });
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkWrongPawls() {
+        navalMachine().insertRotors(new String[] { "B", "Beta", "Gamma",
+                                                   "II", "III" });
+    }
+
+    @Test
+    public void checkNoAllocation() {
+        java.lang.management.ThreadMXBean bean =
+            ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) bean;
+        long id = Thread.currentThread().getId();
+        Machine m = setUpMachine();
+        long allocated = 0;
+        for (int round = 0; round < 4; round += 1) {
+            long before = threads.getThreadAllocatedBytes(id);
+            assertTrue(convertMany(m, 500000) >= 0);
+            allocated = threads.getThreadAllocatedBytes(id) - before;
+        }
+        assertEquals("bytes allocated by convert(int)", 0L, allocated);
+    }
+
+    /** Convert N characters with M, returning the last result.  A method
+     *  of its own, so that rounds after the first run compiled code. */
+    private static int convertMany(Machine m, int n) {
+        int c = 0;
+        for (int i = 0; i < n; i += 1) {
+            c = m.convert((c + i) % 26);
+        }
+        return c;
+    }
+
+    @Test
+    public void checkConversionModes() {
+        Random random = new Random(61);
+        for (int size : new int[] { 2, 5, 26, 300 }) {
+            StringBuilder chars = new StringBuilder();
+            for (int k = 0; k < size; k += 1) {
+                chars.append((char) ('\u0100' + k));
+            }
+            Alphabet alpha = new Alphabet(chars.toString());
+            for (int notches : new int[] { 1, 2, size / 2, size }) {
+                checkAgainstModel(random, alpha, notches, false);
+                checkAgainstModel(random, alpha, notches, true);
+            }
+        }
+    }
+
+    /** Check a randomly configured machine with alphabet ALPHA, whose
+     *  moving rotors have NOTCHES notches each, and with random ring
+     *  settings iff RINGED, against a model that converts one rotor at a
+     *  time, using RANDOM. */
+    private static void checkAgainstModel(Random random, Alphabet alpha,
+                                          int notches, boolean ringed) {
+        int size = alpha.size(), slots = 5, pawls = 3;
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        Permutation[] perms = new Permutation[slots];
+        boolean[][] notched = new boolean[slots][size];
+        String[] names = new String[slots];
+        for (int i = 0; i < slots; i += 1) {
+            names[i] = "R" + i;
+            perms[i] = new Permutation(randomCycles(random, alpha, i == 0),
+                                       alpha);
+            StringBuilder notchChars = new StringBuilder();
+            for (int k = 0; k < notches; k += 1) {
+                int posn = random.nextInt(size);
+                notched[i][posn] = i >= slots - pawls;
+                notchChars.append(alpha.toChar(posn));
+            }
+            rotors.add(i == 0 ? new Reflector(names[i], perms[i])
+                       : i < slots - pawls ? new FixedRotor(names[i], perms[i])
+                       : new MovingRotor(names[i], perms[i],
+                                         notchChars.toString()));
+        }
+        Permutation plug = new Permutation(randomCycles(random, alpha, false),
+                                           alpha);
+        Machine m = new Machine(alpha, slots, pawls, rotors);
+        m.insertRotors(names);
+        m.setPlugboard(plug);
+        int[] posn = new int[slots];
+        StringBuilder setting = new StringBuilder();
+        for (int i = 1; i < slots; i += 1) {
+            posn[i] = random.nextInt(size);
+            setting.append(alpha.toChar(posn[i]));
+        }
+        m.setRotors(setting.toString());
+        int[] ring = new int[slots];
+        if (ringed) {
+            StringBuilder rings = new StringBuilder();
+            for (int i = 1; i < slots; i += 1) {
+                ring[i] = random.nextInt(size);
+                rings.append(alpha.toChar(ring[i]));
+            }
+            m.setRings(rings.toString());
+        }
+        for (int t = 0; t < 2000; t += 1) {
+            boolean[] moves = new boolean[slots];
+            moves[slots - 1] = true;
+            for (int i = slots - pawls; i < slots - 1; i += 1) {
+                if (notched[i + 1][posn[i + 1]]) {
+                    moves[i] = moves[i + 1] = true;
+                }
+            }
+            for (int i = 0; i < slots; i += 1) {
+                posn[i] = (posn[i] + (moves[i] ? 1 : 0)) % size;
+            }
+            int c = random.nextInt(size), expected = plug.permute(c);
+            for (int i = slots - 1; i >= 0; i -= 1) {
+                int p = posn[i] - ring[i];
+                expected = perms[i].wrap(perms[i].permute(expected + p)
+                                         - p);
+            }
+            for (int i = 1; i < slots; i += 1) {
+                int p = posn[i] - ring[i];
+                expected = perms[i].wrap(perms[i].invert(expected + p) - p);
+            }
+            expected = plug.permute(expected);
+            assertEquals(String.format("size %d, %d notches, key %d",
+                                       size, notches, t),
+                         expected, m.convert(c));
+        }
+    }
+
+    /** Return cycles of a random permutation of ALPHA (using RANDOM)
+     *  that is a product of disjoint transpositions iff PAIRS. */
+    private static String randomCycles(Random random, Alphabet alpha,
+                                       boolean pairs) {
+        ArrayList<Character> chars = new ArrayList<>();
+        for (int k = 0; k < alpha.size(); k += 1) {
+            chars.add(alpha.toChar(k));
+        }
+        java.util.Collections.shuffle(chars, random);
+        StringBuilder result = new StringBuilder();
+        int k = 0;
+        while (k < chars.size()) {
+            int len = pairs ? 2 : 1 + random.nextInt(chars.size() - k);
+            len = Math.min(len, chars.size() - k);
+            result.append('(');
+            for (int j = 0; j < len; j += 1) {
+                result.append(chars.get(k + j));
+            }
+            result.append(')');
+            k += len;
+        }
+        return result.toString();
+    }
+
+    /** Return the setting of M's rotors other than its reflector, as for
+     *  setRotors. */
+    private static String settingOf(Machine m) {
+        String result = "";
+        for (int k = 1; k < m.numRotors(); k += 1) {
+            result += UPPER.toChar(m.setting(k));
+        }
+        return result;
+    }
+}
@@ -1,12 +1,27 @@
 package enigma;
 
-import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintStream;
-
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.NoSuchElementException;
+import java.util.HashMap;
 import java.util.Scanner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ForkJoinPool;
 
 import static enigma.EnigmaException.*;
 
@@ -16,76 +31,291 @@ import static enigma.EnigmaException.*;
 public final class Main {
 
     /** Process a sequence of encryptions and decryptions, as
-     *  specified by ARGS, where 1 <= ARGS.length <= 3.
+     *  specified by ARGS, where 1 <= ARGS.length <= 3, not counting
+     *  options.
      *  ARGS[0] is the name of a configuration file.
      *  ARGS[1] is optional; when present, it names an input file
      *  containing messages.  Otherwise, input comes from the standard
      *  input.  ARGS[2] is optional; when present, it names an output
      *  file for processed messages.  Otherwise, output goes to the
      *  standard output. Exits normally if there are no errors in the input;
-     *  otherwise with code 1. */
+     *  otherwise with code 1.
+     *  Options are arguments starting with "--", and may appear anywhere:
+     *    --parallel[=N]  Convert long message lines in chunks on N threads
+     *                    (default: one per processor).
+     *    --blocks[=N]    Process the blocks of input that start with each
+     *                    setting line concurrently on N threads (default:
+     *                    one per processor), each with its own machine.
+     *    --mapped        Read messages by mapping the input file into
+     *                    memory (or through a large buffer, for the
+     *                    standard input), converting each line in pieces
+     *                    without reading it whole.  Input is UTF-8, and
+     *                    lines are converted serially.
+     *    --keystream[=DIR]  After each setting line, convert with a table
+     *                    of the machine's conversions over a whole period
+     *                    of its rotors, kept in a file in directory DIR
+     *                    (default: enigma-keystreams in the temporary
+     *                    directory) and reused by later runs.
+     *    --stats         At exit, print counts and latencies of reading
+     *                    the configuration, setting up, converting, and
+     *                    writing output on the standard error.
+     *    --daemon[=SOCKET]  Have the Daemon listening on the Unix domain
+     *                    socket SOCKET (default: Daemon.defaultSocket())
+     *                    do the work, forwarding the other arguments, the
+     *                    standard input and output, and the exit code;
+     *                    or if none is listening, do it here. */
 
     public static void main(String... args) {
+        ArrayList<String> rest = new ArrayList<>();
+        Path socket = null;
+        for (String arg : args) {
+            if (arg.equals("--daemon")) {
+                socket = Daemon.defaultSocket();
+            } else if (arg.startsWith("--daemon=")) {
+                socket = Paths.get(arg.substring("--daemon=".length()));
+            } else {
+                rest.add(arg);
+            }
+        }
+        args = rest.toArray(new String[0]);
+        int code = -1;
+        if (socket != null) {
+            try {
+                code = Daemon.forward(socket, args, Paths.get(""), System.in,
+                                      new FileOutputStream(
+                                          FileDescriptor.out),
+                                      new FileOutputStream(
+                                          FileDescriptor.err));
+            } catch (EnigmaException excp) {
+                System.err.printf("Error: %s%n", excp.getMessage());
+                code = 1;
+            }
+        }
+        if (code == -1) {
+            code = run(args, null, Charset.defaultCharset(), System.in,
+                       GroupWriter.standardOutput(), System.err, null);
+        }
+        if (code != 0) {
+            System.exit(code);
+        }
+    }
+
+    /** Process ARGS as for main, as if run in directory DIR (the current
+     *  directory if null), with standard input IN, standard output OUT,
+     *  and standard error ERR, in character set CHARSET, and return the
+     *  exit code.  Configurations are read through CONFIGS unless it is
+     *  null.  Closes the files it opens, but not IN, OUT, or ERR. */
+    static int run(String[] args, Path dir, Charset charset, InputStream in,
+                   GroupWriter out, PrintStream err, Daemon.Configs configs) {
+        Main main = new Main(dir, charset, in, out, err, configs);
         try {
-            new Main(args).process();
-            return;
+            main.open(args);
+            main.process();
+            return 0;
         } catch (EnigmaException excp) {
-            System.err.printf("Error: %s%n", excp.getMessage());
+            err.printf("Error: %s%n", excp.getMessage());
+            return 1;
+        } finally {
+            main.close();
         }
-        System.exit(1);
+    }
+
+    /** A Main run in directory DIR, with CHARSET, IN, OUT, ERR, and
+     *  CONFIGS as for run. */
+    private Main(Path dir, Charset charset, InputStream in, GroupWriter out,
+                 PrintStream err, Daemon.Configs configs) {
+        _dir = dir;
+        _charset = charset;
+        _stdin = in;
+        _stdout = out;
+        _err = err;
+        _configs = configs;
     }
 
     /** Check ARGS and open the necessary files (see comment on main). */
-    Main(String[] args) {
+    private void open(String[] args) {
+        ArrayList<String> files = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                setOption(arg);
+            } else {
+                files.add(arg);
+            }
+        }
+        args = files.toArray(new String[0]);
+        _args = args.length;
         if (args.length < 1 || args.length > 3) {
             throw error("Only 1, 2, or 3 command-line arguments allowed");
         }
 
-        _config = getInput(args[0]);
+        _config = ConfigReader.open(_dir, args[0], _charset);
+        _configFile = resolve(args[0]);
 
-        if (args.length > 1) {
+        if (_mapInput) {
+            _mapped = args.length > 1 ? MappedInput.open(_dir, args[1])
+                : new MappedInput(Channels.newChannel(_stdin));
+        } else if (args.length > 1) {
             _input = getInput(args[1]);
         } else {
-            _input = new Scanner(System.in);
+            _input = new Scanner(_stdin, _charset);
         }
 
         if (args.length > 2) {
-            _output = getOutput(args[2]);
+            _output = GroupWriter.open(_dir, args[2], _charset);
         } else {
-            _output = System.out;
+            _output = _stdout;
         }
+        _output.setStats(_stats);
     }
 
-    /** Return a Scanner reading from the file named NAME. */
-    private Scanner getInput(String name) {
+    /** Release the files and threads I have opened. */
+    private void close() {
+        if (_config != null) {
+            _config.close();
+        }
+        if (_input != null && _args > 1) {
+            _input.close();
+        }
+        if (_mapped != null) {
+            _mapped.close();
+        }
+        if (_output != null && _output != _stdout) {
+            _output.close();
+        }
+        if (_parallel != null) {
+            _parallel.shutdown();
+        }
+    }
+
+    /** Return an Enigma machine configured from the configuration file
+     *  named NAME, with no rotors inserted, so that other tools can use
+     *  its catalog of rotors. */
+    static Machine readConfig(String name) {
+        Main main = new Main(null, Charset.defaultCharset(), null, null,
+                             null, null);
         try {
-            return new Scanner(new File(name));
-        } catch (IOException excp) {
-            throw error("could not open %s", name);
+            main._config = ConfigReader.open(null, name,
+                                             Charset.defaultCharset());
+            return main.readConfig();
+        } finally {
+            main.close();
         }
     }
 
-    /** Return a PrintStream writing to the file named NAME. */
-    private PrintStream getOutput(String name) {
+    /** Return the path of the file named NAME, relative to _dir if it is
+     *  not null. */
+    private Path resolve(String name) {
+        return _dir == null ? Paths.get(name) : _dir.resolve(name);
+    }
+
+    /** Apply the command-line option OPTION (see comment on main). */
+    private void setOption(String option) {
+        String value = Options.value(option);
+        switch (Options.name(option)) {
+        case "--parallel":
+            int threads = value == null
+                ? Runtime.getRuntime().availableProcessors()
+                : Options.intValue(option, value, 1);
+            _parallel = new ParallelConverter(new ForkJoinPool(threads),
+                                              ParallelConverter.DEFAULT_CHUNK);
+            break;
+        case "--blocks":
+            _blockThreads = value == null
+                ? Runtime.getRuntime().availableProcessors()
+                : Options.intValue(option, value, 1);
+            break;
+        case "--keystream":
+            _keystreamDir = value != null ? resolve(value)
+                : Paths.get(System.getProperty("java.io.tmpdir"),
+                            "enigma-keystreams");
+            break;
+        case "--mapped":
+            if (value != null) {
+                throw error("bad value in option %s", option);
+            }
+            _mapInput = true;
+            break;
+        case "--stats":
+            if (value != null) {
+                throw error("bad value in option %s", option);
+            }
+            _stats = new Stats();
+            break;
+        default:
+            throw error("unknown option %s", option);
+        }
+    }
+
+    /** Return a Scanner reading from the file named NAME. */
+    private Scanner getInput(String name) {
         try {
-            return new PrintStream(new File(name));
-        } catch (IOException excp) {
+            return new Scanner(resolve(name).toFile(), _charset);
+        } catch (IOException | InvalidPathException excp) {
             throw error("could not open %s", name);
         }
     }
 
     /** Configure an Enigma machine from the contents of configuration
      *  file _config and apply it to the messages in _input, sending the
-     *  results to _output. */
+     *  results to _output.  All output preceding an error is written
+     *  before the error is reported. */
     private void process() {
+        try {
+            Machine m = timedReadConfig();
+            if (_mapped != null) {
+                processMapped(m);
+            } else if (_blockThreads > 0) {
+                processBlocks(m);
+            } else {
+                processLines(m);
+            }
+        } finally {
+            _output.flush();
+            if (_stats != null) {
+                _stats.print(_err);
+            }
+        }
+    }
+
+    /** Return readConfig(), recording the time it takes. */
+    private Machine timedReadConfig() {
+        Stats.ConfigEvent event = new Stats.ConfigEvent();
+        event.begin();
+        long start = _stats != null ? System.nanoTime() : 0;
+        Machine m = _configs == null ? readConfig()
+            : _configs.get(_configFile, this::readConfig);
+        int rotors = m.availableRotors().size();
+        if (_stats != null) {
+            _stats.configured(rotors, System.nanoTime() - start);
+        }
+        event.rotors = rotors;
+        event.commit();
+        return m;
+    }
+
+    /** Return MSG converted by M, as for M.convert(MSG), recording the
+     *  time it takes. */
+    private String convert(Machine m, String msg) {
+        Stats.ConvertEvent event = new Stats.ConvertEvent();
+        event.begin();
+        long start = _stats != null ? System.nanoTime() : 0;
+        String result = m.convert(msg);
+        if (_stats != null) {
+            _stats.converted(msg.length(), System.nanoTime() - start);
+        }
+        event.chars = msg.length();
+        event.commit();
+        return result;
+    }
+
+    /** Process _input as for process(), using M. */
+    private void processLines(Machine m) {
         String str, changed;
         int count = 0;
-        Machine m = readConfig();
-
         while (_input.hasNextLine()) {
             str = _input.nextLine();
             if (str.length() > 0 && str.charAt(0) == '*') {
-                setUp(m, str.substring(2));
+                setUp(m, str);
                 count = 1;
             } else {
                 if (count == 0) {
@@ -93,157 +323,381 @@ public final class Main {
                             + " can't be converted.");
                 }
                 count++;
-                changed = m.convert(str);
-                printMessageLine(changed);
+                if (_parallel != null
+                    && _parallel.worthwhile(m, str.length())) {
+                    Stats.ConvertEvent event = new Stats.ConvertEvent();
+                    event.begin();
+                    long start = _stats != null ? System.nanoTime() : 0;
+                    changed = _parallel.convertGrouped(m, str);
+                    if (_stats != null) {
+                        _stats.converted(str.length(),
+                                         System.nanoTime() - start);
+                    }
+                    event.chars = str.length();
+                    event.commit();
+                    _output.write(changed);
+                    _output.newLine();
+                } else {
+                    changed = convert(m, str);
+                    printMessageLine(changed);
+                }
             }
         }
     }
 
-    /** Return an Enigma machine configured from the contents of configuration
-     *  file _config. */
-    private Machine readConfig() {
-        try {
-            String alphabet, str;
-            int numRotors, numPawls;
-            ArrayList<Rotor> rotors = new ArrayList<>();
-            alphabet = _config.nextLine();
-
-            if (alphabet.length() == 0 || alphabet.indexOf(' ') != -1) {
-                throw new EnigmaException("Invalid input");
-            }
-            _alphabet = new Alphabet(alphabet);
-
-            if (!_config.hasNextInt()) {
-                throw new EnigmaException("No numRotors");
-            }
-            numRotors = _config.nextInt();
-
-            if (!_config.hasNextInt()) {
-                throw new EnigmaException("No numPawls");
+    /** Process _mapped as for process(), using M.  Each message line is
+     *  read, converted, and written a piece at a time, so that lines of
+     *  any length take a fixed amount of memory.  _mapped is left open
+     *  for close(). */
+    private void processMapped(Machine m) {
+        char[] in = new char[MAPPED_CHUNK];
+        char[] out = new char[2 * MAPPED_CHUNK];
+        boolean configured = false;
+        while (_mapped.nextLine()) {
+            if (_mapped.startsWith('*')) {
+                setUp(m, _mapped.restOfLine());
+                configured = true;
+            } else if (!configured) {
+                throw new EnigmaException("Message"
+                        + " can't be converted.");
+            } else {
+                Stats.ConvertEvent event = new Stats.ConvertEvent();
+                event.begin();
+                long chars = 0, nanos = 0;
+                for (int n = _mapped.read(in, 0, in.length); n >= 0;
+                     n = _mapped.read(in, 0, in.length)) {
+                    long start = _stats != null ? System.nanoTime() : 0;
+                    chars += n;
+                    n = m.convert(in, 0, n, out, 0);
+                    if (_stats != null) {
+                        nanos += System.nanoTime() - start;
+                    }
+                    _output.writeGroups(out, 0, n);
+                }
+                if (_stats != null) {
+                    _stats.converted(chars, nanos);
+                }
+                event.chars = chars;
+                event.commit();
+                _output.newLine();
             }
-            numPawls = _config.nextInt();
+        }
+    }
 
-            if (numRotors <= numPawls) {
-                throw new EnigmaException("insufficient rotors");
-            }
-            _config.nextLine();
-            while (_config.hasNextLine()) {
-                str = _config.nextLine();
-                if (str.charAt(1) == ' ') {
-                    rotors.get(rotors.size() - 1).permutation().addCycles(str);
-                } else {
-                    Rotor adding = readRotor(str.substring(1));
-                    for (Rotor r: rotors) {
-                        if (adding.name().equals(r.name())) {
-                            throw new EnigmaException("duplicate rotor");
-                        }
+    /** Process _input as for process(), using copies of M to convert the
+     *  blocks of messages that follow each setting line concurrently on
+     *  _blockThreads threads.  Results are written in input order, and the
+     *  first block (in input order) with an error stops processing after
+     *  its output preceding the error, just as in serial processing. */
+    private void processBlocks(Machine m) {
+        ExecutorService pool = Executors.newFixedThreadPool(_blockThreads);
+        ArrayDeque<Future<Block>> pending = new ArrayDeque<>();
+        try {
+            Block block = null;
+            while (_input.hasNextLine()) {
+                String str = _input.nextLine();
+                if (str.length() > 0 && str.charAt(0) == '*') {
+                    if (block != null) {
+                        pending.add(pool.submit(block));
                     }
-                    rotors.add(adding);
+                    block = new Block(m, str);
+                } else if (block == null) {
+                    block = new Block(m, null);
+                } else {
+                    block.add(str);
                 }
+                while (pending.size() > BLOCK_WINDOW * _blockThreads) {
+                    writeBlock(pending.remove());
+                }
+            }
+            if (block != null) {
+                pending.add(pool.submit(block));
             }
-            return new Machine(new Alphabet(alphabet),
-                    numRotors, numPawls, rotors);
-        } catch (NoSuchElementException excp) {
-            throw error("shortened configuration file");
+            while (!pending.isEmpty()) {
+                writeBlock(pending.remove());
+            }
+        } finally {
+            pool.shutdownNow();
         }
     }
 
-    /** Return a rotor, reading its description from _config.
-     * @param rotorConfig - string containing name,
-     *                              type, notches, and cycles.*/
-    private Rotor readRotor(String rotorConfig) {
+    /** Wait for the block computed by RESULT, write its output, and
+     *  report its error, if any. */
+    private void writeBlock(Future<Block> result) {
+        Block block;
         try {
-            String myName, myNotches, myCycles;
-            int elem = rotorConfig.indexOf(' ');
-            Rotor rotor;
+            block = result.get();
+        } catch (InterruptedException | ExecutionException excp) {
+            throw error("internal error: %s", excp);
+        }
+        _output.write(block.output());
+        if (block.error() != null) {
+            throw block.error();
+        }
+    }
 
-            myName = rotorConfig.substring(0, elem);
+    /** A setting line and the messages that follow it, to be converted by
+     *  a copy of a machine on its own thread. */
+    private class Block implements Callable<Block> {
 
-            rotorConfig = rotorConfig.substring(elem + 1);
-            elem = rotorConfig.indexOf(' ');
-            myNotches = rotorConfig.substring(0, elem);
-            elem = rotorConfig.indexOf('(');
-            myCycles = rotorConfig.substring(elem);
+        /** A block that converts with a copy of M, starting with setting
+         *  line SETTING.  A null SETTING stands for the messages that
+         *  precede the first setting line. */
+        Block(Machine m, String setting) {
+            _machine = m;
+            _setting = setting;
+        }
 
-            Permutation holder = new Permutation(myCycles, _alphabet);
+        /** Add message line MSG to me. */
+        void add(String msg) {
+            _messages.add(msg);
+        }
 
-            if (myNotches.charAt(0) == 'M') {
-                if (myNotches.length() < 2) {
-                    throw new EnigmaException("invalid rotor format");
+        @Override
+        public Block call() {
+            try {
+                if (_setting == null) {
+                    throw new EnigmaException("Message"
+                            + " can't be converted.");
                 }
-                rotor = new MovingRotor(myName, holder,
-                        myNotches.substring(1));
-            } else if (myNotches.charAt(0) == 'N') {
-                rotor = new FixedRotor(myName, holder);
-            } else if (myNotches.charAt(0) == 'R') {
-                rotor = new Reflector(myName, holder);
-            } else {
-                throw new EnigmaException("Invalid rotor");
+                Machine m = _machine.copy();
+                setUp(m, _setting);
+                for (String msg : _messages) {
+                    _text.append(groupMessageLine(convert(m, msg)))
+                        .append(System.lineSeparator());
+                }
+            } catch (EnigmaException excp) {
+                _error = excp;
             }
-            return rotor;
-        } catch (NoSuchElementException excp) {
-            throw error("invalid description");
+            _messages = null;
+            return this;
         }
+
+        /** Return the text I produced. */
+        String output() {
+            return _text.toString();
+        }
+
+        /** Return the error that stopped my conversion, or null. */
+        EnigmaException error() {
+            return _error;
+        }
+
+        /** The machine I copy. */
+        private final Machine _machine;
+        /** My setting line. */
+        private final String _setting;
+        /** My message lines. */
+        private ArrayList<String> _messages = new ArrayList<>();
+        /** My converted and formatted messages. */
+        private final StringBuilder _text = new StringBuilder();
+        /** The error that stopped my conversion, or null. */
+        private EnigmaException _error;
+    }
+
+    /** Return an Enigma machine configured from the contents of configuration
+     *  file _config. */
+    private Machine readConfig() {
+        return _config.read();
     }
 
-    /** Set M according to the specification given on SETTINGS,
-     *  which must have the format specified in the assignment. */
-    private void setUp(Machine M, String settings) {
-        int numRotors = M.numRotors(), elem;
-        String[] myRotors = new String[numRotors];
-        String mySettings;
+    /** Set M according to the setting line LINE, which must have the
+     *  format specified in the assignment. */
+    private void setUp(Machine M, String line) {
+        Stats.SetupEvent event = new Stats.SetupEvent();
+        event.begin();
+        if (event.isEnabled()) {
+            event.setting = line.substring(2);
+        }
+        long start = _stats != null ? System.nanoTime() : 0;
+        configure(M, line, 2);
+        if (_keystreamDir != null) {
+            useKeystream(M);
+        }
+        if (_stats != null) {
+            _stats.setUp(System.nanoTime() - start);
+        }
+        event.commit();
+    }
 
-        for (int i = 0; i < numRotors; i++) {
-            elem = settings.indexOf(' ');
-            if (elem != -1) {
-                myRotors[i] = settings.substring(0, elem);
-                settings = settings.substring(elem + 1);
-            } else {
-                myRotors[i] = settings;
+    /** Insert M's rotors, set them and their rings, and set its plugboard
+     *  according to SETTINGS, a setting line without its leading "* ". */
+    static void configure(Machine M, String settings) {
+        configure(M, settings, 0);
+    }
+
+    /** Insert M's rotors, set them and their rings, and set its plugboard
+     *  according to LINE[START ..], a setting line without its leading
+     *  "* ".  Fields are separated by single blanks: the rotors' names,
+     *  their settings, optionally their ring settings, in the same form,
+     *  and the plugboard's cycles.  The line is read in place, and only
+     *  the plugboard's cycles are copied, as the key under which M keeps
+     *  the plugboard they describe. */
+    static void configure(Machine M, CharSequence line, int start) {
+        int numRotors = M.numRotors(), end = line.length();
+        int[] names = new int[2 * numRotors];
+        int pos = start;
+        for (int i = 0; i < numRotors; i += 1) {
+            int blank = indexOf(line, ' ', pos, end);
+            names[2 * i] = pos;
+            names[2 * i + 1] = blank == -1 ? end : blank;
+            pos = blank == -1 ? pos : blank + 1;
+        }
+        int settingEnd = indexOf(line, ' ', pos, end);
+        int ringStart = -1, ringEnd = -1, cycles = end;
+        if (settingEnd == -1) {
+            settingEnd = end;
+        } else {
+            cycles = settingEnd + 1;
+            if (cycles < end && line.charAt(cycles) != '(') {
+                ringStart = cycles;
+                ringEnd = indexOf(line, ' ', ringStart, end);
+                ringEnd = ringEnd == -1 ? end : ringEnd;
+                cycles = Math.min(ringEnd + 1, end);
+            }
+        }
+        M.setPlugboard(line.subSequence(cycles, end).toString());
+        if (ringStart == -1) {
+            M.clearRings();
+        } else {
+            M.setRings(line, ringStart, ringEnd);
+        }
+        Rotor[] rotors = new Rotor[numRotors];
+        for (int i = 0; i < numRotors; i += 1) {
+            rotors[i] = M.findRotor(line, names[2 * i], names[2 * i + 1]);
+            if (rotors[i] == null) {
+                throw error("unknown rotor %s",
+                            line.subSequence(names[2 * i],
+                                             names[2 * i + 1]));
+            }
+        }
+        M.insertRotors(rotors);
+        M.setRotors(line, pos, settingEnd);
+    }
+
+    /** Return the position of the first C in TEXT[FROM .. END-1], or -1
+     *  if there is none. */
+    private static int indexOf(CharSequence text, char c, int from,
+                               int end) {
+        for (int i = from; i < end; i += 1) {
+            if (text.charAt(i) == c) {
+                return i;
             }
         }
-        elem = settings.indexOf(' ');
-        if (elem == -1) {
-            mySettings = settings;
-            M.setPlugboard(new Permutation("", _alphabet));
+        return -1;
+    }
+
+    /** Have M convert with the keystream for its current state, if its
+     *  table is not too large, using the tables in _keystreamDir. */
+    private synchronized void useKeystream(Machine M) {
+        ByteBuffer key = ByteBuffer.wrap(M.configurationKey());
+        Keystream keystream;
+        if (_keystreams.containsKey(key)) {
+            keystream = _keystreams.get(key);
         } else {
-            M.setPlugboard(new Permutation(settings.substring(elem + 1),
-                    _alphabet));
-            mySettings = settings.substring(0, elem);
+            keystream = Keystream.open(M, _keystreamDir,
+                                       Keystream.DEFAULT_MAX_BYTES);
+            _keystreams.put(key, keystream);
+        }
+        if (keystream != null) {
+            M.useKeystream(keystream);
         }
-        M.insertRotors(myRotors);
-        M.setRotors(mySettings);
     }
 
     /** Print MSG in groups of five (except that the last group may
      *  have fewer letters). */
     private void printMessageLine(String msg) {
-        String finalMsg = "";
+        _output.writeLine(msg);
+    }
+
+    /** Return MSG without blanks, in groups of five characters separated
+     *  (and, after a complete last group, followed) by blanks.  A
+     *  surrogate pair counts as one character and is never split. */
+    static String groupMessageLine(String msg) {
+        StringBuilder finalMsg = new StringBuilder(msg.length() * 6 / 5 + 1);
         int count = 0;
 
         for (int i = 0; i < msg.length(); i++) {
             char ch = msg.charAt(i);
             if (ch != ' ') {
-                finalMsg += ch;
-                count++;
+                finalMsg.append(ch);
+                if (!Character.isHighSurrogate(ch)) {
+                    count++;
+                }
             }
             if (count == 5) {
                 count = 0;
-                finalMsg += ' ';
+                finalMsg.append(' ');
             }
         }
-        _output.println(finalMsg);
+        return finalMsg.toString();
     }
 
-    /** Alphabet used in this machine. */
-    private Alphabet _alphabet;
+    /** Directory against which file names are resolved, or null for the
+     *  current directory. */
+    private final Path _dir;
+
+    /** Character set of the configuration, input, and output. */
+    private final Charset _charset;
+
+    /** Standard input. */
+    private final InputStream _stdin;
+    /** Standard output. */
+    private final GroupWriter _stdout;
+    /** Standard error. */
+    private final PrintStream _err;
+
+    /** Cache of configurations, or null. */
+    private final Daemon.Configs _configs;
+
+    /** The configuration file. */
+    private Path _configFile;
+
+    /** Number of file arguments. */
+    private int _args;
 
     /** Source of input messages. */
     private Scanner _input;
 
+    /** True iff messages are read with --mapped. */
+    private boolean _mapInput;
+
+    /** Source of input messages when they are read with --mapped, or
+     *  null. */
+    private MappedInput _mapped;
+
     /** Source of machine configuration. */
-    private Scanner _config;
+    private ConfigReader _config;
+
+    /** Destination of encoded/decoded messages. */
+    private GroupWriter _output;
+
+    /** Converter for long message lines, or null if they are converted
+     *  serially. */
+    private ParallelConverter _parallel;
+
+    /** Number of threads converting blocks concurrently, or 0 to process
+     *  blocks one at a time. */
+    private int _blockThreads;
+
+    /** Directory of keystream tables, when used with --keystream, or
+     *  null. */
+    private Path _keystreamDir;
+
+    /** Keystreams already opened, indexed by machine configuration key
+     *  (null for those too large to tabulate). */
+    private final HashMap<ByteBuffer, Keystream> _keystreams =
+        new HashMap<>();
+
+    /** Counts and latencies of this run, when kept with --stats, or
+     *  null. */
+    private Stats _stats;
+
+    /** Maximum number of blocks per thread read ahead of the block being
+     *  written. */
+    private static final int BLOCK_WINDOW = 4;
 
-    /** File for encoded/decoded messages. */
-    private PrintStream _output;
+    /** Number of characters of a message line converted at once with
+     *  --mapped. */
+    private static final int MAPPED_CHUNK = 1 << 14;
 }
@@ -0,0 +1,132 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.TemporaryFolder;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/** The suite of all JUnit tests for the Main class.
+ *  @author Won Shil Park
+ */
+public class MainTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /** Directory for files. */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Two supplementary characters. */
+    private static final String GRIN = "\ud83d\ude00", BEAM = "\ud83d\ude01";
+
+    /** A configuration whose alphabet ends with GRIN and BEAM. */
+    private static final String CONFIG = String.join("\n",
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZ" + GRIN + BEAM,
+        " 4 2",
+        " I MQ      (AELTPHQXRU" + GRIN + ") (BKNW) (CMOY" + BEAM
+        + ") (DFG) (IV) (JZ) (S)",
+        " II ME     (FIXVYOMW) (CDKLHUP) (ESZ) (BJ) (GR) (NT) (A) (Q)",
+        " III MV    (ABDHPEJT) (CFLVMZOYQIRWUKXSG) (N)",
+        " Beta N    (ALBEVFCYODJWUGNMQTZSKPR) (HIX)",
+        " B R       (AE) (BN) (CK) (DQ) (FU) (GY) (HW) (IJ) (LO) (MP)",
+        "           (RX) (SZ) (TV) (" + GRIN + BEAM + ")", "");
+
+    /** A setting for CONFIG. */
+    private static final String SETTING = "* B Beta II III AXL (HQ) (EX)";
+
+    /** The standard output and error of the last run. */
+    private String _out, _err;
+
+    /** Write TEXT to the file NAME in the temporary folder, in UTF-8. */
+    private void write(String name, String text) throws IOException {
+        Files.write(folder.getRoot().toPath().resolve(name),
+                    text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Run Main with ARGS in the temporary folder, in UTF-8, with standard
+     *  input STDIN, setting _out and _err, and return the exit code. */
+    private int run(String stdin, String... args) {
+        Charset charset = StandardCharsets.UTF_8;
+        ByteArrayOutputStream out = new ByteArrayOutputStream(),
+            err = new ByteArrayOutputStream();
+        int code = Main.run(args, folder.getRoot().toPath(), charset,
+                            new ByteArrayInputStream(stdin.getBytes(charset)),
+                            new GroupWriter(Channels.newChannel(out),
+                                            charset),
+                            new PrintStream(err, true, charset), null);
+        _out = new String(out.toByteArray(), charset);
+        _err = new String(err.toByteArray(), charset);
+        return code;
+    }
+
+    /** Check that every group of LINE has five characters, counting a
+     *  surrogate pair as one, except that the last may have fewer, and
+     *  that no surrogate pair is split. */
+    private static void checkGroups(String line) {
+        String[] groups = line.split(" ");
+        for (int k = 0; k < groups.length; k += 1) {
+            int n = groups[k].codePointCount(0, groups[k].length());
+            assertTrue(line, k == groups.length - 1 ? n <= 5 : n == 5);
+            assertTrue(line, groups[k].codePoints()
+                       .noneMatch(c -> c >= Character.MIN_SURROGATE
+                                  && c <= Character.MAX_SURROGATE));
+        }
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkGroupMessageLine() {
+        assertEquals("ABCDE FG", Main.groupMessageLine("AB CDEFG"));
+        assertEquals("ABCDE ", Main.groupMessageLine("ABCDE"));
+        assertEquals(GRIN + "ABCD " + GRIN + GRIN + GRIN + GRIN + GRIN + " "
+                     + GRIN,
+                     Main.groupMessageLine(GRIN + "ABCD" + GRIN + GRIN
+                                           + GRIN + GRIN + " " + GRIN
+                                           + GRIN));
+    }
+
+    @Test
+    public void checkSupplementary() throws IOException {
+        write("emoji.conf", CONFIG);
+        String msg = GRIN + GRIN + GRIN + GRIN + GRIN + GRIN;
+        String input = SETTING + "\n" + msg + "\n" + "HELLO" + BEAM
+            + " world\n";
+        assertEquals(0, run(input, "emoji.conf"));
+        assertEquals("", _err);
+        String[] lines = _out.split(System.lineSeparator());
+        assertEquals(2, lines.length);
+        for (String line : lines) {
+            checkGroups(line);
+        }
+        assertEquals(6, lines[0].replace(" ", "").codePointCount(
+                         0, lines[0].replace(" ", "").length()));
+        String expected = _out;
+        for (String option : new String[] {
+                "--blocks=2", "--mapped", "--parallel=2" }) {
+            write("emoji.in", input);
+            assertEquals(option, 0, run("", option, "emoji.conf",
+                                        "emoji.in"));
+            assertEquals(option, expected, _out);
+        }
+        assertEquals(0, run(SETTING + "\n" + lines[0] + "\n",
+                            "emoji.conf"));
+        assertEquals(Main.groupMessageLine(msg) + System.lineSeparator(),
+                     _out);
+    }
+}
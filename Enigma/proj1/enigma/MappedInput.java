@@ -0,0 +1,279 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static enigma.EnigmaException.*;
+
+/** A source of lines of UTF-8 text that hands out the characters of each
+ *  line in pieces, so that no line need be held in memory at once.  A file
+ *  is read by mapping it into memory a window at a time, which allows
+ *  files of any size; other sources are read through a large direct
+ *  buffer.  Lines end with "\n", "\r\n", or "\r", as for Scanner.nextLine.
+ *  @author Won Shil Park
+ */
+class MappedInput {
+
+    /** Input from the file named NAME. */
+    static MappedInput open(String name) {
+        return open(name, WINDOW);
+    }
+
+    /** Input from the file named NAME, mapped WINDOW bytes at a time. */
+    static MappedInput open(String name, long window) {
+        return open(null, name, window);
+    }
+
+    /** Input from the file named NAME in directory DIR (the current
+     *  directory if null). */
+    static MappedInput open(Path dir, String name) {
+        return open(dir, name, WINDOW);
+    }
+
+    /** Input from the file named NAME in directory DIR (the current
+     *  directory if null), mapped WINDOW bytes at a time. */
+    private static MappedInput open(Path dir, String name, long window) {
+        try {
+            Path file = dir == null ? Paths.get(name) : dir.resolve(name);
+            MappedInput result =
+                new MappedInput(FileChannel.open(file), true);
+            result._window = window;
+            return result;
+        } catch (IOException | java.nio.file.InvalidPathException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
+    /** Input from CHANNEL. */
+    MappedInput(ReadableByteChannel channel) {
+        this(channel, false);
+    }
+
+    /** Input from CHANNEL, which is a FileChannel to be mapped iff
+     *  MAPPED. */
+    private MappedInput(ReadableByteChannel channel, boolean mapped) {
+        _channel = channel;
+        if (mapped) {
+            _file = (FileChannel) channel;
+            _buf = ByteBuffer.allocate(0);
+        } else {
+            _buf = ByteBuffer.allocateDirect(STREAM_BUFFER);
+            _buf.flip();
+        }
+        _lineDone = true;
+    }
+
+    /** Skip any unread part of the current line and start the next one.
+     *  Return false if there is no next line. */
+    boolean nextLine() {
+        while (!_lineDone) {
+            skipChars();
+        }
+        if (peek() < 0) {
+            return false;
+        }
+        _lineDone = false;
+        return true;
+    }
+
+    /** Return true iff the current line has unread characters and the
+     *  next one is CH, which must be an ASCII character. */
+    boolean startsWith(char ch) {
+        return !_lineDone && peek() == ch;
+    }
+
+    /** Return the unread part of the current line, which is then
+     *  finished. */
+    String restOfLine() {
+        StringBuilder result = new StringBuilder();
+        char[] chars = new char[LINE_CHUNK];
+        for (int n = read(chars, 0, chars.length); n >= 0;
+             n = read(chars, 0, chars.length)) {
+            result.append(chars, 0, n);
+        }
+        return result.toString();
+    }
+
+    /** Read up to LEN > 1 characters of the current line into
+     *  BUF[OFF .. OFF+LEN-1], and return the number read, or -1 if the
+     *  line is finished.  Never splits a surrogate pair, and so may read
+     *  fewer than LEN characters before the end of the line. */
+    int read(char[] buf, int off, int len) {
+        if (_lineDone) {
+            return -1;
+        }
+        int k = off, end = off + len;
+        while (k < end) {
+            if (_pending >= 0) {
+                if (Character.charCount(_pending) > end - k) {
+                    break;
+                }
+                k += Character.toChars(_pending, buf, k);
+                _pending = -1;
+                continue;
+            }
+            if (!_buf.hasRemaining() && !fill()) {
+                _lineDone = true;
+                break;
+            }
+            int pos = _buf.position(), limit = _buf.limit();
+            ByteBuffer bytes = _buf;
+            while (k < end && pos < limit) {
+                byte b = bytes.get(pos);
+                if (b < 0 || b == '\n' || b == '\r') {
+                    break;
+                }
+                buf[k] = (char) b;
+                k += 1;
+                pos += 1;
+            }
+            _buf.position(pos);
+            if (k == end || pos == limit) {
+                continue;
+            }
+            int b = _buf.get(pos);
+            if (b == '\n' || b == '\r') {
+                _buf.position(pos + 1);
+                if (b == '\r' && peek() == '\n') {
+                    _buf.get();
+                }
+                _lineDone = true;
+                break;
+            }
+            _pending = decode();
+        }
+        return k == off && _lineDone ? -1 : k - off;
+    }
+
+    /** Read and discard characters of the current line. */
+    private void skipChars() {
+        read(_skip, 0, _skip.length);
+    }
+
+    /** Return the next byte of input, without consuming it, or -1 at the
+     *  end of input. */
+    private int peek() {
+        if (!_buf.hasRemaining() && !fill()) {
+            return -1;
+        }
+        return _buf.get(_buf.position()) & BYTE_MASK;
+    }
+
+    /** Consume and return the next code point of input, which starts with
+     *  a non-ASCII byte.  Malformed input yields U+FFFD. */
+    private int decode() {
+        int lead = _buf.get() & BYTE_MASK;
+        int more, cp;
+        if (lead >= 0xF5 || lead < 0xC2) {
+            return REPLACEMENT;
+        } else if (lead >= 0xF0) {
+            more = 3;
+            cp = lead & 0x07;
+        } else if (lead >= 0xE0) {
+            more = 2;
+            cp = lead & 0x0F;
+        } else {
+            more = 1;
+            cp = lead & 0x1F;
+        }
+        for (int i = 0; i < more; i += 1) {
+            if (!_buf.hasRemaining() && !fill()) {
+                return REPLACEMENT;
+            }
+            int b = _buf.get(_buf.position()) & BYTE_MASK;
+            if ((b & 0xC0) != 0x80) {
+                return REPLACEMENT;
+            }
+            _buf.get();
+            cp = (cp << 6) | (b & 0x3F);
+        }
+        if (cp < MIN_CODE_POINT[more] || cp > Character.MAX_CODE_POINT
+            || cp >= Character.MIN_SURROGATE
+               && cp <= Character.MAX_SURROGATE) {
+            return REPLACEMENT;
+        }
+        return cp;
+    }
+
+    /** Make more input available in _buf, which must be empty, returning
+     *  false if there is none. */
+    private boolean fill() {
+        try {
+            if (_file != null) {
+                _filePos += _buf.limit();
+                long size = _file.size();
+                if (_filePos >= size) {
+                    return false;
+                }
+                _buf = _file.map(FileChannel.MapMode.READ_ONLY, _filePos,
+                                 Math.min(_window, size - _filePos));
+                return true;
+            }
+            _buf.clear();
+            int n;
+            do {
+                n = _channel.read(_buf);
+            } while (n == 0);
+            _buf.flip();
+            return n > 0;
+        } catch (IOException excp) {
+            throw error("could not read input: %s", excp.getMessage());
+        }
+    }
+
+    /** Release the resources I use. */
+    void close() {
+        try {
+            _channel.close();
+        } catch (IOException excp) {
+            /* Ignore errors on closing an input. */
+        }
+    }
+
+    /** Size of the window of a file that is mapped at once. */
+    static final long WINDOW = 1L << 26;
+
+    /** Size of the buffer for input other than files. */
+    private static final int STREAM_BUFFER = 1 << 23;
+
+    /** Number of characters read at once for restOfLine. */
+    private static final int LINE_CHUNK = 256;
+
+    /** Mask giving the unsigned value of a byte. */
+    private static final int BYTE_MASK = 0xFF;
+
+    /** The Unicode replacement character, for malformed input. */
+    private static final int REPLACEMENT = 0xFFFD;
+
+    /** MIN_CODE_POINT[k] is the smallest code point encoded with K
+     *  continuation bytes. */
+    private static final int[] MIN_CODE_POINT = { 0, 0x80, 0x800, 0x10000 };
+
+    /** The source of my input. */
+    private final ReadableByteChannel _channel;
+
+    /** The source of my input if it is a file, or else null. */
+    private FileChannel _file;
+
+    /** Number of bytes of _file mapped at once. */
+    private long _window;
+
+    /** Position in _file of the start of _buf. */
+    private long _filePos;
+
+    /** Buffer holding the input that follows what has been read. */
+    private ByteBuffer _buf;
+
+    /** True iff all of the current line has been read. */
+    private boolean _lineDone;
+
+    /** A code point that has been decoded but not yet returned, or -1. */
+    private int _pending = -1;
+
+    /** Buffer for characters that are skipped. */
+    private final char[] _skip = new char[LINE_CHUNK];
+}
@@ -0,0 +1,124 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** The suite of all JUnit tests for the MappedInput class.
+ *  @author Won Shil Park
+ */
+public class MappedInputTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Sample input, with each kind of line ending and characters of one
+     *  to four bytes in UTF-8. */
+    private static final String SAMPLE =
+        "* B BETA III IV I AXLE (HQ)\nHELLO WORLD\r\n\r\n"
+        + "caf\u00e9 \u20ac\ud801\udc00 x\rlast";
+
+    /** The lines of SAMPLE. */
+    private static final List<String> SAMPLE_LINES =
+        Arrays.asList("* B BETA III IV I AXLE (HQ)", "HELLO WORLD", "",
+                      "caf\u00e9 \u20ac\ud801\udc00 x", "last");
+
+    /** Return the lines of IN, read CHUNK characters at a time. */
+    private static List<String> lines(MappedInput in, int chunk) {
+        ArrayList<String> result = new ArrayList<>();
+        char[] buf = new char[chunk];
+        while (in.nextLine()) {
+            StringBuilder line = new StringBuilder();
+            for (int n = in.read(buf, 0, chunk); n >= 0;
+                 n = in.read(buf, 0, chunk)) {
+                line.append(buf, 0, n);
+            }
+            result.add(line.toString());
+        }
+        in.close();
+        return result;
+    }
+
+    /** Return a temporary file containing TEXT in UTF-8. */
+    private static File tempFile(String text) throws IOException {
+        File file = File.createTempFile("mapped", ".in");
+        file.deleteOnExit();
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkStream() {
+        byte[] bytes = SAMPLE.getBytes(StandardCharsets.UTF_8);
+        MappedInput in = new MappedInput(
+            Channels.newChannel(new ByteArrayInputStream(bytes)));
+        assertEquals(SAMPLE_LINES, lines(in, 2));
+    }
+
+    @Test
+    public void checkWindows() throws IOException {
+        String name = tempFile(SAMPLE).getPath();
+        for (int window = 1; window <= 9; window += 1) {
+            for (int chunk = 2; chunk <= 4; chunk += 1) {
+                assertEquals("window " + window + ", chunk " + chunk,
+                             SAMPLE_LINES,
+                             lines(MappedInput.open(name, window), chunk));
+            }
+        }
+        assertEquals(SAMPLE_LINES, lines(MappedInput.open(name), 100));
+    }
+
+    @Test
+    public void checkSettingLines() throws IOException {
+        MappedInput in = MappedInput.open(tempFile(SAMPLE + "\n").getPath(),
+                                          5);
+        assertTrue(in.nextLine());
+        assertTrue(in.startsWith('*'));
+        assertEquals("* B BETA III IV I AXLE (HQ)", in.restOfLine());
+        assertTrue(in.nextLine());
+        assertFalse(in.startsWith('*'));
+        assertTrue(in.nextLine());
+        assertFalse(in.startsWith('*'));
+        assertEquals("", in.restOfLine());
+        assertTrue(in.nextLine());
+        assertTrue(in.nextLine());
+        assertEquals("last", in.restOfLine());
+        assertFalse(in.nextLine());
+        in.close();
+    }
+
+    @Test
+    public void checkMalformed() throws IOException {
+        File file = File.createTempFile("mapped", ".in");
+        file.deleteOnExit();
+        Files.write(file.toPath(), new byte[] {
+            'A', (byte) 0xC3, 'B', (byte) 0xFF, (byte) 0xED, (byte) 0xA0,
+            (byte) 0x80, '\n' });
+        assertEquals(Arrays.asList("A\ufffdB\ufffd\ufffd"),
+                     lines(MappedInput.open(file.getPath()), 8));
+    }
+
+    @Test
+    public void checkEmpty() throws IOException {
+        assertEquals(Arrays.asList(),
+                     lines(MappedInput.open(tempFile("").getPath()), 4));
+        assertEquals(Arrays.asList(""),
+                     lines(MappedInput.open(tempFile("\n").getPath()), 4));
+    }
+}
@@ -1,5 +1,6 @@
 package enigma;
 
+import static enigma.EnigmaException.*;
 
 /** Class that represents a rotating rotor in the enigma machine.
  *  @author Won Shil park
@@ -12,6 +13,22 @@ class MovingRotor extends Rotor {
      *  alphabet).
      */
     MovingRotor(String name, Permutation perm, String notches) {
+        super(name, perm);
+        _notches = new boolean[perm.size()];
+        for (int i = 0; i < notches.length(); i += Character.charCount(
+                 notches.codePointAt(i))) {
+            int k = perm.alphabet().indexOf(notches.codePointAt(i));
+            if (k < 0) {
+                throw error("notch of rotor %s not in alphabet", name);
+            }
+            _notches[k] = true;
+        }
+    }
+
+    /** A rotor named NAME whose permutation in its default setting is
+     *  PERM, with a notch at each setting K for which NOTCHES[K] is true.
+     *  NOTCHES becomes mine. */
+    MovingRotor(String name, Permutation perm, boolean[] notches) {
         super(name, perm);
         _notches = notches;
     }
@@ -22,19 +39,14 @@ class MovingRotor extends Rotor {
     }
 
     @Override
-    boolean atNotch() {
-        for (int i = 0; i < _notches.length(); i++) {
-            if (alphabet().toInt(_notches.charAt(i)) == this.setting()) {
-                return true;
-            }
-        }
-        return false;
+    boolean atNotch(int posn) {
+        return _notches[posn];
     }
 
     @Override
     void advance() {
         super.set(super.permutation().wrap(super.setting() + 1));
     }
-    /** Initialize string for notches. */
-    private String _notches;
+    /** _notches[k] is true iff there is a notch at setting K. */
+    private final boolean[] _notches;
 }
@@ -70,4 +70,31 @@ public class MovingRotorTest {
         rotor.set(25);
         checkRotor("Rotor I set", UPPER_STRING, NAVALZ_MAP.get("I"));
     }
+
+    @Test
+    public void checkOffsetTables() {
+        for (int size : new int[] { 255, 256, 257, 400 }) {
+            StringBuilder chars = new StringBuilder();
+            StringBuilder cycle = new StringBuilder();
+            for (int k = 0; k < size; k += 1) {
+                chars.append((char) (0x100 + k));
+                cycle.append((char) (0x100 + (k * 7) % size));
+            }
+            Alphabet alphabet = new Alphabet(chars.toString());
+            Permutation perm =
+                new Permutation("(" + cycle.substring(0, size / 2) + ")",
+                                alphabet);
+            rotor = new MovingRotor("X", perm, "");
+            assertEquals(size <= OffsetTables.LIMIT, rotor.offsets() != null);
+            for (int p = 0; p < size; p += 17) {
+                rotor.set(p);
+                for (int c = 0; c < size; c += 1) {
+                    assertEquals(perm.wrap(perm.permute(c + p) - p),
+                                 rotor.convertForward(c));
+                    assertEquals(perm.wrap(perm.invert(c + p) - p),
+                                 rotor.convertBackward(c));
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,86 @@
+package enigma;
+
+import static enigma.EnigmaException.*;
+
+/** Tables giving the substitution made by a rotor at each of its settings,
+ *  so that converting through the rotor at any setting is a single
+ *  lookup, with none of the wrapping around the alphabet needed to apply
+ *  its permutation directly.  The tables have the square of the size of
+ *  the alphabet in byte entries, 64K bytes each at most.  For alphabets
+ *  of more than LIMIT characters, larger tables (of shorts) would no
+ *  longer stay in cache and are no faster than the permutations, which
+ *  rotors then use instead.
+ *  @author Won Shil Park
+ */
+final class OffsetTables {
+
+    /** Largest alphabet for which tables are made. */
+    static final int LIMIT = 256;
+
+    /** Tables for a rotor whose permutation at setting 0 is PERM, which
+     *  must have at most LIMIT characters. */
+    OffsetTables(Permutation perm) {
+        int n = perm.size();
+        if (n > LIMIT) {
+            throw error("alphabet too large for offset tables");
+        }
+        _size = n;
+        _forward = new byte[n * n];
+        _backward = new byte[n * n];
+        for (int p = 0; p < n; p += 1) {
+            for (int c = 0; c < n; c += 1) {
+                _forward[p * n + c] =
+                    (byte) perm.wrap(perm.permute(c + p) - p);
+                _backward[p * n + c] =
+                    (byte) perm.wrap(perm.invert(c + p) - p);
+            }
+        }
+    }
+
+    /** Tables of SIZE characters with entries FORWARD and BACKWARD. */
+    private OffsetTables(int size, byte[] forward, byte[] backward) {
+        _size = size;
+        _forward = forward;
+        _backward = backward;
+    }
+
+    /** Return tables whose entries at each setting P are mine at setting
+     *  P - RING, where 0 <= RING < size(): those of my rotor with its
+     *  ring setting at RING. */
+    OffsetTables rotated(int ring) {
+        int n = _size, split = (n - ring) * n;
+        byte[] forward = new byte[n * n], backward = new byte[n * n];
+        System.arraycopy(_forward, split, forward, 0, ring * n);
+        System.arraycopy(_forward, 0, forward, ring * n, split);
+        System.arraycopy(_backward, split, backward, 0, ring * n);
+        System.arraycopy(_backward, 0, backward, ring * n, split);
+        return new OffsetTables(n, forward, backward);
+    }
+
+    /** Return the conversion of C, where 0 <= C < size(), by the rotor at
+     *  setting SETTING. */
+    int forward(int setting, int c) {
+        return _forward[setting * _size + c] & BYTE_MASK;
+    }
+
+    /** Return the conversion of C, where 0 <= C < size(), by the inverse
+     *  of the rotor at setting SETTING. */
+    int backward(int setting, int c) {
+        return _backward[setting * _size + c] & BYTE_MASK;
+    }
+
+    /** Return the size of the alphabet. */
+    int size() {
+        return _size;
+    }
+
+    /** Mask giving the unsigned value of a byte. */
+    private static final int BYTE_MASK = 0xFF;
+
+    /** Size of the alphabet. */
+    private final int _size;
+    /** Entry P * _size + C is the conversion of C at setting P. */
+    private final byte[] _forward;
+    /** Entry P * _size + C is the inverse conversion of C at setting P. */
+    private final byte[] _backward;
+}
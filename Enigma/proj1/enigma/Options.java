@@ -0,0 +1,58 @@
+package enigma;
+
+import static enigma.EnigmaException.*;
+
+/** Parsing of the command-line options of the programs in this package,
+ *  which are arguments of the form --NAME or --NAME=VALUE.
+ *  @author Won Shil Park
+ */
+final class Options {
+
+    /** Not instantiable. */
+    private Options() {
+    }
+
+    /** Return the name of option ARG: all of ARG before its first '=', or
+     *  all of ARG if it has none. */
+    static String name(String arg) {
+        int eq = arg.indexOf('=');
+        return eq == -1 ? arg : arg.substring(0, eq);
+    }
+
+    /** Return the value given in option ARG: all of ARG after its first
+     *  '=', or null if it has none. */
+    static String value(String arg) {
+        int eq = arg.indexOf('=');
+        return eq == -1 ? null : arg.substring(eq + 1);
+    }
+
+    /** Return the value given in option ARG, as for value, but throw an
+     *  EnigmaException if it has none. */
+    static String requiredValue(String arg) {
+        String value = value(arg);
+        if (value == null) {
+            throw error("missing value in option %s", arg);
+        }
+        return value;
+    }
+
+    /** Return VALUE, the value given in command-line option OPTION, as an
+     *  integer of at least MIN. */
+    static int intValue(String option, String value, int min) {
+        return intValue(option, value, min, Integer.MAX_VALUE);
+    }
+
+    /** Return VALUE, the value given in command-line option OPTION, as an
+     *  integer in the range MIN .. MAX. */
+    static int intValue(String option, String value, int min, int max) {
+        try {
+            int result = Integer.parseInt(value);
+            if (result >= min && result <= max) {
+                return result;
+            }
+        } catch (NumberFormatException excp) {
+            /* Fall through to the error below. */
+        }
+        throw error("bad value in option %s", option);
+    }
+}
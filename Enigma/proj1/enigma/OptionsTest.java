@@ -0,0 +1,59 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the Options class.
+ *  @author Won Shil Park
+ */
+public class OptionsTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Check that Options.intValue(OPTION, VALUE, MIN, MAX) reports a bad
+     *  value. */
+    private static void checkBad(String option, String value, int min,
+                                 int max) {
+        try {
+            Options.intValue(option, value, min, max);
+            fail(option + " accepted");
+        } catch (EnigmaException excp) {
+            assertEquals("bad value in option " + option, excp.getMessage());
+        }
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkNameAndValue() {
+        assertEquals("--threads", Options.name("--threads=4"));
+        assertEquals("4", Options.value("--threads=4"));
+        assertEquals("--stats", Options.name("--stats"));
+        assertNull(Options.value("--stats"));
+        assertEquals("a=b", Options.value("--order=a=b"));
+        assertEquals("", Options.requiredValue("--order="));
+        try {
+            Options.requiredValue("--order");
+            fail("missing value accepted");
+        } catch (EnigmaException excp) {
+            assertEquals("missing value in option --order",
+                         excp.getMessage());
+        }
+    }
+
+    @Test
+    public void checkIntValue() {
+        assertEquals(4, Options.intValue("--threads=4", "4", 1));
+        assertEquals(0, Options.intValue("--pairs=0", "0", 0));
+        assertEquals(65535, Options.intValue("--port=65535", "65535", 0,
+                                             65535));
+        checkBad("--threads=0", "0", 1, Integer.MAX_VALUE);
+        checkBad("--threads=x", "x", 1, Integer.MAX_VALUE);
+        checkBad("--threads=", "", 1, Integer.MAX_VALUE);
+        checkBad("--port=65536", "65536", 0, 65535);
+    }
+}
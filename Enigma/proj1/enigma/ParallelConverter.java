@@ -0,0 +1,143 @@
+package enigma;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/** Converts long messages by splitting them into chunks that are
+ *  converted concurrently, each by its own copy of a machine that has been
+ *  advanced to the chunk's starting point with Machine.seek.  The results
+ *  are the same as converting the whole message serially.
+ *  @author Won Shil Park
+ */
+class ParallelConverter {
+
+    /** A converter that runs its tasks in POOL, splitting messages into
+     *  chunks of about CHUNKSIZE characters. */
+    ParallelConverter(ForkJoinPool pool, int chunkSize) {
+        _pool = pool;
+        _chunkSize = chunkSize;
+    }
+
+    /** A converter using the common ForkJoinPool and a default chunk
+     *  size. */
+    ParallelConverter() {
+        this(ForkJoinPool.commonPool(), DEFAULT_CHUNK);
+    }
+
+    /** Stop the threads of my pool, unless it is the common pool. */
+    void shutdown() {
+        if (_pool != ForkJoinPool.commonPool()) {
+            _pool.shutdown();
+        }
+    }
+
+    /** Return true iff a message of LENGTH characters is worth splitting
+     *  for conversion by M.  It is not if M cannot seek to each chunk in
+     *  time independent of its distance, since the seeks would then cost
+     *  more than converting serially. */
+    boolean worthwhile(Machine m, int length) {
+        return m.charsOnly() && length >= 2 * _chunkSize
+            && _pool.getParallelism() > 1 && m.seeksDirectly();
+    }
+
+    /** Convert MSG with M, as M.convert(MSG) would, and return the result
+     *  formatted as for Main: the characters other than blanks, in groups
+     *  of five separated by blanks.  M is left as M.convert(MSG) would
+     *  leave it.  Requires M.charsOnly(). */
+    String convertGrouped(Machine m, String msg) {
+        char[] in = msg.toCharArray();
+        int chunks = Math.max(1, (in.length + _chunkSize - 1) / _chunkSize);
+        long[] keys = new long[chunks + 1];
+        int[] blanks = new int[chunks + 1];
+        _pool.invoke(new Chunks(0, chunks, in.length, (k, from, to) -> {
+            keys[k + 1] = m.countKeys(in, from, to - from);
+            int count = 0;
+            for (int i = from; i < to; i += 1) {
+                if (in[i] == ' ') {
+                    count += 1;
+                }
+            }
+            blanks[k + 1] = count;
+        }));
+        for (int k = 1; k <= chunks; k += 1) {
+            keys[k] += keys[k - 1];
+            blanks[k] += blanks[k - 1];
+        }
+
+        int letters = in.length - blanks[chunks];
+        char[] out = new char[letters + letters / GroupWriter.GROUP];
+        /* Copying M may first bring its rotor settings up to date with a
+         * keystream, which changes M, so it is copied once here, and the
+         * tasks copy that copy, which is already up to date. */
+        Machine start = m.copy();
+        _pool.invoke(new Chunks(0, chunks, in.length, (k, from, to) -> {
+            Machine copy = start.copy();
+            copy.seek(keys[k]);
+            copy.convert(in, from, to - from, in, from);
+            /* Each char is a whole character, since M.charsOnly(), so
+             * G, which counts the non-blank chars before I, also counts
+             * the characters, and a group is GROUP chars. */
+            int g = from - blanks[k];
+            for (int i = from; i < to; i += 1) {
+                if (in[i] != ' ') {
+                    out[g + g / GroupWriter.GROUP] = in[i];
+                    g += 1;
+                    if (g % GroupWriter.GROUP == 0) {
+                        out[g + g / GroupWriter.GROUP - 1] = ' ';
+                    }
+                }
+            }
+        }));
+        m.seek(keys[chunks]);
+        return new String(out);
+    }
+
+    /** Work to be done on one chunk of a message. */
+    private interface ChunkBody {
+        /** Process chunk #K, consisting of characters FROM .. TO-1. */
+        void chunk(int k, int from, int to);
+    }
+
+    /** A task that does the work of a ChunkBody on a range of the chunks
+     *  of a message, splitting the range among subtasks. */
+    private class Chunks extends RecursiveAction {
+
+        /** Tasks are never serialized. */
+        private static final long serialVersionUID = 1L;
+
+        /** A task doing BODY for chunks LO .. HI-1 of a message of LENGTH
+         *  characters. */
+        Chunks(int lo, int hi, int length, ChunkBody body) {
+            _lo = lo;
+            _hi = hi;
+            _length = length;
+            _body = body;
+        }
+
+        @Override
+        protected void compute() {
+            if (_hi - _lo == 1) {
+                int from = _lo * _chunkSize;
+                _body.chunk(_lo, from, Math.min(_length, from + _chunkSize));
+            } else {
+                int mid = (_lo + _hi) >>> 1;
+                invokeAll(new Chunks(_lo, mid, _length, _body),
+                          new Chunks(mid, _hi, _length, _body));
+            }
+        }
+
+        /** Range of chunks and message length. */
+        private final int _lo, _hi, _length;
+        /** The work to do on each chunk. */
+        private final ChunkBody _body;
+    }
+
+    /** Default number of characters in a chunk. */
+    static final int DEFAULT_CHUNK = 1 << 16;
+
+    /** Pool that runs my tasks. */
+    private final ForkJoinPool _pool;
+
+    /** Number of characters in each chunk but the last. */
+    private final int _chunkSize;
+}
@@ -0,0 +1,113 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.TemporaryFolder;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static enigma.MachineTest.setUpMachine;
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the ParallelConverter class.
+ *  @author Won Shil Park
+ */
+public class ParallelConverterTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Directory for keystream files. */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return MSG without blanks, in groups of five, as printed by Main. */
+    private static String group(String msg) {
+        StringBuilder result = new StringBuilder();
+        int count = 0;
+        for (char ch : msg.toCharArray()) {
+            if (ch != ' ') {
+                result.append(ch);
+                count += 1;
+                if (count % 5 == 0) {
+                    result.append(' ');
+                }
+            }
+        }
+        return result.toString();
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkMatchesSerial() {
+        Random random = new Random(61);
+        String chars = "ABCDEFGHIJKLMNOPQRSTUVWXYZ  abc.,!";
+        ForkJoinPool pool = new ForkJoinPool(4);
+        for (int chunk : new int[] { 1, 3, 5, 7, 64 }) {
+            ParallelConverter converter = new ParallelConverter(pool, chunk);
+            Machine serial = setUpMachine(), parallel = setUpMachine();
+            for (int line = 0; line < 20; line += 1) {
+                StringBuilder msg = new StringBuilder();
+                for (int k = random.nextInt(500); k > 0; k -= 1) {
+                    msg.append(chars.charAt(random.nextInt(chars.length())));
+                }
+                assertEquals(group(serial.convert(msg.toString())),
+                             converter.convertGrouped(parallel,
+                                                      msg.toString()));
+            }
+            assertEquals(serial.positionAt(0), parallel.positionAt(0));
+        }
+        pool.shutdown();
+    }
+
+    @Test
+    public void checkKeystreamMatchesSerial() {
+        Random random = new Random(61);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        ParallelConverter converter = new ParallelConverter(pool, 3);
+        Machine serial = setUpMachine(), parallel = setUpMachine();
+        parallel.useKeystream(Keystream.open(parallel,
+                                             folder.getRoot().toPath(),
+                                             Keystream.DEFAULT_MAX_BYTES));
+        for (int line = 0; line < 20; line += 1) {
+            StringBuilder msg = new StringBuilder();
+            for (int k = random.nextInt(500); k > 0; k -= 1) {
+                msg.append((char) ('A' + random.nextInt(26)));
+            }
+            assertEquals(serial.convert(msg.toString()),
+                         parallel.convert(msg.toString()));
+            assertEquals(group(serial.convert(msg.toString())),
+                         converter.convertGrouped(parallel,
+                                                  msg.toString()));
+        }
+        assertEquals(serial.positionAt(0), parallel.positionAt(0));
+        pool.shutdown();
+    }
+
+    @Test
+    public void checkIrregularNotWorthwhile() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        ParallelConverter converter = new ParallelConverter(pool, 64);
+        assertTrue(converter.worthwhile(setUpMachine(), 1000));
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("B", new Permutation(NAVALA.get("B"),
+                                                      UPPER)));
+        for (String name : new String[] { "I", "II", "III" }) {
+            rotors.add(new MovingRotor(name,
+                           new Permutation(NAVALA.get(name), UPPER), "QR"));
+        }
+        Machine m = new Machine(UPPER, 4, 3, rotors);
+        m.insertRotors(new String[] { "B", "I", "II", "III" });
+        assertFalse(m.seeksDirectly());
+        assertFalse(converter.worthwhile(m, 1000));
+        pool.shutdown();
+    }
+}
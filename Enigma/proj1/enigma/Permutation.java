@@ -15,40 +15,91 @@ class Permutation {
      *  Whitespace is ignored. */
     Permutation(String cycles, Alphabet alphabet) {
         _alphabet = alphabet;
-        _cycles = cycles;
+        _forward = new int[alphabet.size()];
+        _inverse = new int[alphabet.size()];
+        for (int i = 0; i < _forward.length; i += 1) {
+            _forward[i] = _inverse[i] = i;
+        }
+        _openLength = -1;
+        addCycles(cycles);
+    }
 
+    /** A permutation of ALPHABET whose mapping is FORWARD and whose
+     *  inverse mapping is INVERSE, as returned by forwardTable and
+     *  inverseTable.  The arrays become mine, and must be consistent;
+     *  they are not checked. */
+    Permutation(Alphabet alphabet, int[] forward, int[] inverse) {
+        _alphabet = alphabet;
+        _forward = forward;
+        _inverse = inverse;
+        _openLength = -1;
     }
 
     /** Add the cycles (c0->c1->...->cm->c0) to the permutation, where CYCLEs is
-     *  c0c1...cm.
+     *  c0c1...cm.  CYCLES may continue a cycle left open by a previous call,
+     *  as happens when a rotor description spans several lines.
      *  @param cycles - string of cycles */
     void addCycles(String cycles) {
-        _cycles += cycles;
+        addCycles(cycles, 0, cycles.length());
+    }
+
+    /** Add the cycles in TEXT[START .. END-1], as for addCycles(String),
+     *  so that cycles may be read from a larger text without copying
+     *  them. */
+    void addCycles(CharSequence text, int start, int end) {
+        for (int i = start; i < end; i += Character.charCount(
+                 Character.codePointAt(text, i))) {
+            int ch = Character.codePointAt(text, i);
+            if (Character.isWhitespace(ch)) {
+                continue;
+            } else if (ch == '(') {
+                if (_openLength >= 0) {
+                    throw error("nested cycle in %s",
+                                text.subSequence(start, end));
+                }
+                if (_open == null) {
+                    _open = new int[size()];
+                }
+                _openLength = 0;
+            } else if (ch == ')') {
+                if (_openLength < 0) {
+                    throw error("unbalanced ')' in %s",
+                                text.subSequence(start, end));
+                }
+                closeCycle();
+            } else if (_openLength < 0) {
+                throw error("character '%s' outside of a cycle",
+                            Character.toString(ch));
+            } else {
+                int k = _alphabet.indexOf(ch);
+                if (k < 0) {
+                    throw error("character '%s' not in alphabet",
+                                Character.toString(ch));
+                }
+                if (_used == null) {
+                    _used = new boolean[size()];
+                }
+                if (_used[k]) {
+                    throw error("character '%s' appears in two cycles",
+                                Character.toString(ch));
+                }
+                _used[k] = true;
+                _open[_openLength] = k;
+                _openLength += 1;
+            }
+        }
     }
 
-    /** Helper function to split the cycles.
-     * @param cycles - cycle1, cycle2, cycle3
-     * @return split */
-    static String[] helper(String cycles) {
-        /** declaring replace cases */
-        String cycles1 = cycles.replaceAll(" ", "");
-        String cycles2 = cycles.replaceAll("\\(", "");
-        String cycles3 = cycles.replaceAll("\\)", "");
-
-        if (cycles.contains(" ")) {
-            cycles = cycles1;
-            String[] mySplit = cycles.split("\\)\\(");
-            mySplit[0] = mySplit[0].substring(1);
-            int last = mySplit.length - 1;
-            mySplit[last] = mySplit[last].substring(0,
-                    mySplit[last].length() - 1);
-            return mySplit;
-        } else {
-            cycles = cycles2;
-            cycles = cycles3;
-            String[] split1 = {cycles};
-            return split1;
+    /** Link the elements of the cycle being read into my forward and
+     *  inverse tables, and start looking for the next cycle. */
+    private void closeCycle() {
+        for (int i = 0; i < _openLength; i += 1) {
+            int from = _open[i], to = _open[(i + 1) % _openLength];
+            _forward[from] = to;
+            _inverse[to] = from;
         }
+        _openLength = -1;
+        _derangement = -1;
     }
 
     /** Return the value of P modulo the size of this permutation. */
@@ -68,67 +119,42 @@ class Permutation {
     /** Return the result of applying this permutation to P modulo the
      *  alphabet size. */
     int permute(int p) {
-        int i = wrap(p);
-        char apply = _alphabet.toChar(i);
-        char output = permute(apply);
-        int finalOutput = _alphabet.toInt(output);
-        return finalOutput;
+        if (p < 0 || p >= _forward.length) {
+            p = wrap(p);
+        }
+        return _forward[p];
     }
 
     /** Return the result of applying the inverse of this permutation
      *  to  C modulo the alphabet size. */
     int invert(int c) {
-        int i = wrap(c);
-        char apply = _alphabet.toChar(i);
-        char output = invert(apply);
-        int finalOutput = _alphabet.toInt(output);
-        return finalOutput;
+        if (c < 0 || c >= _inverse.length) {
+            c = wrap(c);
+        }
+        return _inverse[c];
     }
 
     /** Return the result of applying this permutation to the index of P
      *  in ALPHABET, and converting the result to a character of ALPHABET. */
     char permute(char p) {
-        char myAnswer = p;
-        if (!_cycles.equals("")) {
-            String [] newCycles = helper(_cycles);
-            for (int i = 0; i < newCycles.length; i++) {
-                if (newCycles[i].contains(String.valueOf(p))) {
-                    String newCycles1 = newCycles[i];
-                    int index = newCycles1.indexOf(String.valueOf(p));
-                    if (index != newCycles1.length() - 1) {
-                        myAnswer = newCycles1.charAt(index + 1);
-                    } else {
-                        myAnswer = newCycles1.charAt(0);
-                    }
-                }
-            }
-            return myAnswer;
-        } else {
-            return myAnswer;
-        }
+        return _alphabet.toChar(_forward[_alphabet.toInt(p)]);
     }
 
     /** Return the result of applying the inverse of this permutation to C. */
     char invert(char c) {
-        char myAnswer = c;
-
-        if (!_cycles.equals("")) {
-            String [] newCycles = helper(_cycles);
-            for (int i = 0; i < newCycles.length; i++) {
-                if (newCycles[i].contains(String.valueOf(c))) {
-                    String theCycle = newCycles[i];
-                    int index = theCycle.indexOf(String.valueOf(c));
-                    if (index != 0) {
-                        myAnswer = theCycle.charAt(index - 1);
-                    } else {
-                        myAnswer = theCycle.charAt(theCycle.length() - 1);
-                    }
-                }
-            }
-            return myAnswer;
-        } else {
-            return myAnswer;
-        }
+        return _alphabet.toChar(_inverse[_alphabet.toInt(c)]);
+    }
+
+    /** Return my mapping as an array whose element #K is permute(K).
+     *  The array is shared with me and must not be modified. */
+    int[] forwardTable() {
+        return _forward;
+    }
+
+    /** Return my inverse mapping as an array whose element #K is
+     *  invert(K).  The array is shared with me and must not be modified. */
+    int[] inverseTable() {
+        return _inverse;
     }
 
     /** Return the alphabet used to initialize this Permutation. */
@@ -139,18 +165,39 @@ class Permutation {
     /** Return true iff this permutation is a derangement (i.e., a
      *  permutation for which no value maps to itself). */
     boolean derangement() {
-        String [] newCycles = helper(_cycles);
-        for (int i = 0; i < newCycles.length; i++) {
-            if (newCycles[i].length() == 1) {
-                return false;
+        if (_derangement < 0) {
+            _derangement = 1;
+            for (int i = 0; i < _forward.length; i += 1) {
+                if (_forward[i] == i) {
+                    _derangement = 0;
+                    break;
+                }
             }
         }
-        return true;
+        return _derangement == 1;
     }
 
     /** Alphabet of this permutation. */
     private Alphabet _alphabet;
 
-    /** Collection of cycles. */
-    private String _cycles;
+    /** _forward[k] is the image of index K under this permutation. */
+    private final int[] _forward;
+
+    /** _inverse[k] is the index that this permutation maps to K. */
+    private final int[] _inverse;
+
+    /** Indices of the cycle currently being read.  Only allocated once a
+     *  cycle has been started. */
+    private int[] _open;
+
+    /** Number of indices in _open, or -1 if no cycle is open. */
+    private int _openLength;
+
+    /** _used[k] is true iff index K has appeared in some cycle.  Only
+     *  allocated once a cycle has been read. */
+    private boolean[] _used;
+
+    /** 1 if I am known to be a derangement, 0 if known not to be, and -1
+     *  if not yet computed since the last change to my cycles. */
+    private int _derangement = -1;
 }
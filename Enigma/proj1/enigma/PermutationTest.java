@@ -51,5 +51,36 @@ public class PermutationTest {
         checkPerm("identity", UPPER_STRING, UPPER_STRING);
     }
 
+    @Test
+    public void checkNavalRotors() {
+        for (String name : NAVALA_MAP.keySet()) {
+            perm = new Permutation(NAVALA.get(name), UPPER);
+            checkPerm(name, UPPER_STRING, NAVALA_MAP.get(name));
+        }
+    }
+
+    @Test
+    public void checkContinuedCycles() {
+        perm = new Permutation("(AE) (BN) (CK) (DQ) (FU) (GY) (HW) (IJ) (LO) "
+                               + "(MP)", UPPER);
+        perm.addCycles("           (RX) (SZ) (TV)");
+        checkPerm("continued B", UPPER_STRING, "ENKQAUYWJICOPBLMDXZVFTHRGS");
+        assertTrue(perm.derangement());
+    }
+
+    @Test
+    public void checkDerangement() {
+        assertFalse(new Permutation("(AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) "
+                                    + "(JZ) (S)", UPPER).derangement());
+        assertFalse(new Permutation("(AB)", UPPER).derangement());
+        assertTrue(new Permutation("(ABCDEFGHIJKLMNOPQRSTUVWXYZ)", UPPER)
+                   .derangement());
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkRepeatedCharacter() {
+        new Permutation("(AB) (BC)", UPPER);
+    }
+
 
 }
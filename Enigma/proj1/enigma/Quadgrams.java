@@ -0,0 +1,200 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import static enigma.EnigmaException.*;
+
+/** A model of a language giving the log (base 10) probability of each
+ *  sequence of four characters of an alphabet, used to score candidate
+ *  decryptions.  The model is built once from a corpus and stored in a
+ *  file, which is memory mapped when used, so that the scores are a flat
+ *  array of floats indexed by the quadgram's value in the radix of the
+ *  alphabet: ((a * size + b) * size + c) * size + d for quadgram abcd.
+ *
+ *  A file holds MAGIC, the alphabet size, the code point of each
+ *  character of the alphabet, and then size^4 floats.
+ *  @author Won Shil Park
+ */
+public final class Quadgrams {
+
+    /** Build a model from a corpus, as specified by ARGS.
+     *  ARGS[0] is the name of a configuration file, as for Main, whose
+     *  alphabet the model uses.  ARGS[1] names the corpus, a UTF-8 text
+     *  file in which characters not in the alphabet (after conversion to
+     *  upper case) are ignored.  ARGS[2] names the model file to write.
+     *  Exits with code 1 after an error. */
+    public static void main(String... args) {
+        try {
+            if (args.length != 3) {
+                throw error("need a configuration file, corpus, and"
+                            + " output file");
+            }
+            Alphabet alpha = Main.readConfig(args[0]).alphabet();
+            MappedInput corpus = MappedInput.open(args[1]);
+            try {
+                build(alpha, corpus, Paths.get(args[2]));
+            } finally {
+                corpus.close();
+            }
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Largest alphabet for which a model can be made. */
+    static final int MAX_SIZE = 64;
+
+    /** Write to FILE the model for alphabet ALPHA made from the text read
+     *  from CORPUS.  Quadgrams that do not occur in the corpus are given a
+     *  probability of FLOOR occurrences. */
+    static void build(Alphabet alpha, MappedInput corpus, Path file) {
+        int n = alpha.size();
+        if (n > MAX_SIZE) {
+            throw error("alphabet too large for a quadgram model");
+        }
+        int entries = n * n * n * n;
+        int[] counts = new int[entries];
+        long total = 0;
+        int index = 0, seen = 0;
+        char[] chars = new char[BUFFER_SIZE];
+        while (corpus.nextLine()) {
+            for (int len = corpus.read(chars, 0, chars.length); len >= 0;
+                 len = corpus.read(chars, 0, chars.length)) {
+                for (int k = 0; k < len; ) {
+                    int cp = Character.codePointAt(chars, k, len);
+                    k += Character.charCount(cp);
+                    int c = alpha.indexOf(Character.toUpperCase(cp));
+                    if (c < 0) {
+                        continue;
+                    }
+                    index = (index * n + c) % entries;
+                    seen += seen < 4 ? 1 : 0;
+                    if (seen == 4) {
+                        counts[index] += 1;
+                        total += 1;
+                    }
+                }
+            }
+        }
+        if (total == 0) {
+            throw error("corpus has no quadgrams");
+        }
+
+        try (FileChannel out = FileChannel.open(file,
+                 StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                 StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.allocateDirect(WRITE_BUFFER);
+            buf.putInt(MAGIC).putInt(n);
+            for (int c = 0; c < n; c += 1) {
+                buf.putInt(alpha.toCodePoint(c));
+            }
+            double floor = Math.log10(FLOOR / total);
+            for (int q = 0; q < entries; q += 1) {
+                if (buf.remaining() < Float.BYTES) {
+                    drain(buf, out);
+                }
+                buf.putFloat(counts[q] == 0 ? (float) floor
+                             : (float) Math.log10((double) counts[q] / total));
+            }
+            drain(buf, out);
+        } catch (IOException excp) {
+            throw error("could not write %s: %s", file, excp.getMessage());
+        }
+    }
+
+    /** Write the contents of BUF to OUT, and clear BUF. */
+    private static void drain(ByteBuffer buf, FileChannel out)
+        throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) {
+            out.write(buf);
+        }
+        buf.clear();
+    }
+
+    /** Return the model in FILE, which must be for alphabet ALPHA. */
+    static Quadgrams open(Path file, Alphabet alpha) {
+        try (FileChannel in = FileChannel.open(file)) {
+            long length = in.size();
+            int n = alpha.size();
+            long header = (2L + n) * Integer.BYTES;
+            if (length > Integer.MAX_VALUE || length < header) {
+                throw error("%s is not a quadgram model", file);
+            }
+            MappedByteBuffer data =
+                in.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            if (data.getInt() != MAGIC || data.getInt() != n) {
+                throw error("%s is not a quadgram model for this alphabet",
+                            file);
+            }
+            for (int c = 0; c < n; c += 1) {
+                if (data.getInt() != alpha.toCodePoint(c)) {
+                    throw error("%s is not a quadgram model for this"
+                                + " alphabet", file);
+                }
+            }
+            if (length != header + (long) n * n * n * n * Float.BYTES) {
+                throw error("%s is truncated", file);
+            }
+            return new Quadgrams(data.slice().asFloatBuffer(), n);
+        } catch (IOException excp) {
+            throw error("could not read %s: %s", file, excp.getMessage());
+        }
+    }
+
+    /** A model for an alphabet of SIZE characters whose scores are
+     *  SCORES. */
+    private Quadgrams(FloatBuffer scores, int size) {
+        _scores = scores;
+        _size = size;
+    }
+
+    /** Return the size of my alphabet. */
+    int size() {
+        return _size;
+    }
+
+    /** Return the score of the quadgram whose value in the radix of my
+     *  alphabet is INDEX. */
+    float score(int index) {
+        return _scores.get(index);
+    }
+
+    /** Return the sum of the scores of the quadgrams in the first LEN
+     *  characters of TEXT, a sequence of alphabet indices. */
+    double score(int[] text, int len) {
+        final int n = _size, entries = n * n * n * n;
+        double result = 0;
+        int index = 0;
+        for (int k = 0; k < len; k += 1) {
+            index = (index * n + text[k]) % entries;
+            if (k >= 3) {
+                result += _scores.get(index);
+            }
+        }
+        return result;
+    }
+
+    /** Identifies a quadgram model file (version 1). */
+    private static final int MAGIC = 0x454e5134;
+    /** Number of occurrences assumed for quadgrams not in the corpus. */
+    private static final double FLOOR = 0.01;
+    /** Number of characters read from the corpus at once. */
+    private static final int BUFFER_SIZE = 1 << 14;
+    /** Size of the buffer used to write models. */
+    private static final int WRITE_BUFFER = 1 << 20;
+
+    /** Scores of all quadgrams, in the radix of the alphabet. */
+    private final FloatBuffer _scores;
+    /** Size of the alphabet. */
+    private final int _size;
+}
@@ -0,0 +1,96 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.TemporaryFolder;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static enigma.TestUtils.UPPER;
+
+/** The suite of all JUnit tests for the Quadgrams class.
+ *  @author Won Shil Park
+ */
+public class QuadgramsTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Directory for model files. */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return the model for alphabet ALPHA built from CORPUS, stored in a
+     *  new file in the temporary folder. */
+    Quadgrams model(Alphabet alpha, String corpus) throws Exception {
+        Path file = folder.newFile().toPath();
+        Quadgrams.build(alpha, corpusInput(corpus), file);
+        return Quadgrams.open(file, alpha);
+    }
+
+    /** Return input reading CORPUS. */
+    static MappedInput corpusInput(String corpus) {
+        byte[] bytes = corpus.getBytes(StandardCharsets.UTF_8);
+        return new MappedInput(Channels.newChannel(
+                                   new ByteArrayInputStream(bytes)));
+    }
+
+    /** Return the alphabet indices of the characters of TEXT in ALPHA. */
+    static int[] indices(Alphabet alpha, String text) {
+        int[] result = new int[text.length()];
+        for (int k = 0; k < result.length; k += 1) {
+            result[k] = alpha.toInt(text.charAt(k));
+        }
+        return result;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkScores() throws Exception {
+        Alphabet alpha = new Alphabet("ABCD");
+        Quadgrams model = model(alpha, "abca b\nCABCD xx ABCA");
+        assertEquals(4, model.size());
+        int abca = ((0 * 4 + 1) * 4 + 2) * 4 + 0;
+        int dddd = 255;
+        assertEquals(Math.log10(3.0 / 11), model.score(abca), 1e-6);
+        assertEquals(Math.log10(0.01 / 11), model.score(dddd), 1e-6);
+        assertEquals(Math.log10(3.0 / 11) + 2 * Math.log10(2.0 / 11),
+                     model.score(indices(alpha, "ABCABC"), 6), 1e-5);
+        assertTrue(model.score(indices(alpha, "ABCABC"), 6)
+                   > model.score(indices(alpha, "DDDDDD"), 6));
+    }
+
+    @Test
+    public void checkWrongAlphabet() throws Exception {
+        Path file = folder.newFile().toPath();
+        Quadgrams.build(UPPER, corpusInput("THE QUICK BROWN FOX"), file);
+        try {
+            Quadgrams.open(file, new Alphabet("ABCDEFGHIJKLMNOPQRSTUVWXYz"));
+            fail("model opened for a different alphabet");
+        } catch (EnigmaException excp) {
+            /* Expected. */
+        }
+        Files.write(file, new byte[] { 1, 2, 3 });
+        try {
+            Quadgrams.open(file, UPPER);
+            fail("malformed model opened");
+        } catch (EnigmaException excp) {
+            /* Expected. */
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkEmptyCorpus() throws Exception {
+        model(UPPER, "AB\nC 123");
+    }
+}
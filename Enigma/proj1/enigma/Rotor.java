@@ -2,7 +2,11 @@ package enigma;
 
 import static enigma.EnigmaException.*;
 
-/** Superclass that represents a rotor in the enigma machine.
+/** Superclass that represents a rotor in the enigma machine.  Apart from
+ *  its setting, a rotor never changes once made, so one rotor may be
+ *  shared by many machines.  Machines keep the settings of their rotors
+ *  themselves; a rotor's own setting applies only when it is used by
+ *  itself.
  *  @author Won Shil Park
  */
 class Rotor {
@@ -59,9 +63,25 @@ class Rotor {
         _setting = _permutation.alphabet().toInt(cposn);
     }
 
+    /** Return tables of my conversions at each setting, or null if my
+     *  alphabet is too large for them (see OffsetTables).  They are made
+     *  when first needed, since most rotors in a large configuration may
+     *  never be used. */
+    OffsetTables offsets() {
+        OffsetTables offsets = _offsets;
+        if (offsets == null && size() <= OffsetTables.LIMIT) {
+            offsets = _offsets = new OffsetTables(_permutation);
+        }
+        return offsets;
+    }
+
     /** Return the conversion of P (an integer in the range 0..size()-1)
      *  according to my permutation. */
     int convertForward(int p) {
+        OffsetTables offsets = offsets();
+        if (offsets != null) {
+            return offsets.forward(_setting, p);
+        }
         int convertTo = _permutation.permute(p + _setting);
         return _permutation.wrap(convertTo - _setting);
     }
@@ -69,6 +89,10 @@ class Rotor {
     /** Return the conversion of E (an integer in the range 0..size()-1)
      *  according to the inverse of my permutation. */
     int convertBackward(int e) {
+        OffsetTables offsets = offsets();
+        if (offsets != null) {
+            return offsets.backward(_setting, e);
+        }
         int convertTo = _permutation.invert(e + _setting);
         return _permutation.wrap(convertTo - _setting);
     }
@@ -76,6 +100,12 @@ class Rotor {
     /** Returns true iff I am positioned to allow the rotor to my left
      *  to advance. */
     boolean atNotch() {
+        return atNotch(_setting);
+    }
+
+    /** Returns true iff I would allow the rotor to my left to advance
+     *  when at setting POSN. */
+    boolean atNotch(int posn) {
         return false;
     }
 
@@ -92,9 +122,14 @@ class Rotor {
     private final String _name;
 
     /** The permutation implemented by this rotor in its 0 position. */
-    private Permutation _permutation;
+    private final Permutation _permutation;
 
     /** Current setting for rotor. */
     private int _setting;
 
+    /** Tables of my conversions, once made by offsets().  Since they
+     *  never change once made, threads that race to make them need no
+     *  synchronization. */
+    private OffsetTables _offsets;
+
 }
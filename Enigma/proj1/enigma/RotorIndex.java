@@ -0,0 +1,139 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+/** An index of a collection of rotors by name, ignoring case, as used to
+ *  insert rotors into a machine.  It is built once, on first use, and is
+ *  shared by all machines with the same collection, so that setting up a
+ *  machine takes time proportional to its number of slots rather than to
+ *  the number of rotors available.  Names are found directly in the text
+ *  that contains them, without first being copied into strings.  An index
+ *  may be used by any number of threads.
+ *  @author Won Shil Park
+ */
+final class RotorIndex {
+
+    /** An index of ROTORS, which must not change once it is used. */
+    RotorIndex(Collection<Rotor> rotors) {
+        _rotors = rotors;
+    }
+
+    /** Return the rotor whose name, in upper case, is TEXT[START .. END-1]
+     *  in upper case, or null if there is none.  If several are, it is
+     *  the last of them in my collection. */
+    Rotor find(CharSequence text, int start, int end) {
+        Table table = table();
+        int hash = 0;
+        for (int i = start; i < end; i += 1) {
+            char c = text.charAt(i);
+            if (c >= 0x80 || c >= 'a' && c <= 'z') {
+                return table.find(text.subSequence(start, end).toString()
+                                  .toUpperCase());
+            }
+            hash = 31 * hash + c;
+        }
+        return table.find(text, start, end, hash);
+    }
+
+    /** Return my table, building it if need be. */
+    private Table table() {
+        Table table = _table;
+        if (table == null) {
+            synchronized (this) {
+                table = _table;
+                if (table == null) {
+                    table = _table = new Table(_rotors);
+                }
+            }
+        }
+        return table;
+    }
+
+    /** An open-addressed hash table of the upper-case names of rotors. */
+    private static final class Table {
+
+        /** A table of ROTORS. */
+        Table(Collection<Rotor> rotors) {
+            if (rotors instanceof List && rotors instanceof RandomAccess) {
+                _rotors = (List<Rotor>) rotors;
+            } else {
+                _rotors = new ArrayList<>(rotors);
+            }
+            int n = _rotors.size();
+            CompiledConfig.Catalog catalog =
+                rotors instanceof CompiledConfig.Catalog
+                ? (CompiledConfig.Catalog) rotors : null;
+            _names = new String[n];
+            int capacity = Integer.highestOneBit(Math.max(2 * n, 2) - 1)
+                << 1;
+            _slots = new int[capacity];
+            _mask = capacity - 1;
+            for (int k = 0; k < n; k += 1) {
+                String name = catalog != null ? catalog.name(k)
+                    : _rotors.get(k).name();
+                _names[k] = name.toUpperCase();
+                int slot = slot(_names[k].hashCode());
+                while (_slots[slot] != 0
+                       && !_names[_slots[slot] - 1].equals(_names[k])) {
+                    slot = (slot + 1) & _mask;
+                }
+                _slots[slot] = k + 1;
+            }
+        }
+
+        /** Return the rotor whose upper-case name is NAME, or null. */
+        Rotor find(String name) {
+            return find(name, 0, name.length(), name.hashCode());
+        }
+
+        /** Return the rotor whose upper-case name is TEXT[START .. END-1],
+         *  whose hash code as a String is HASH, or null. */
+        Rotor find(CharSequence text, int start, int end, int hash) {
+            for (int slot = slot(hash); _slots[slot] != 0;
+                 slot = (slot + 1) & _mask) {
+                int k = _slots[slot] - 1;
+                if (matches(_names[k], text, start, end)) {
+                    return _rotors.get(k);
+                }
+            }
+            return null;
+        }
+
+        /** Return the first slot to probe for hash code HASH. */
+        private int slot(int hash) {
+            return (hash ^ hash >>> 16) & _mask;
+        }
+
+        /** Return true iff NAME is TEXT[START .. END-1]. */
+        private static boolean matches(String name, CharSequence text,
+                                       int start, int end) {
+            if (name.length() != end - start) {
+                return false;
+            }
+            for (int i = start; i < end; i += 1) {
+                if (name.charAt(i - start) != text.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /** The rotors. */
+        private final List<Rotor> _rotors;
+        /** _names[k] is the name of rotor #K in upper case. */
+        private final String[] _names;
+        /** Each non-zero _slots[s] is 1 + the index of the rotor whose
+         *  name hashes to S or, after collisions, to a slot before it. */
+        private final int[] _slots;
+        /** Mask selecting a slot from a hash code. */
+        private final int _mask;
+    }
+
+    /** The rotors I index. */
+    private final Collection<Rotor> _rotors;
+    /** My table, or null until first used. */
+    private volatile Table _table;
+}
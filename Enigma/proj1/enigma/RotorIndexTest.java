@@ -0,0 +1,72 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the RotorIndex class.
+ *  @author Won Shil Park
+ */
+public class RotorIndexTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return a fixed rotor named NAME. */
+    private static Rotor rotor(String name) {
+        return new FixedRotor(name, new Permutation("", UPPER));
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkFind() {
+        List<Rotor> rotors = new ArrayList<>();
+        for (String name : new String[] { "I", "II", "Beta", "\u00e9t\u00e9",
+                                          "" }) {
+            rotors.add(rotor(name));
+        }
+        RotorIndex index = new RotorIndex(rotors);
+        assertSame(rotors.get(0), index.find("I", 0, 1));
+        assertSame(rotors.get(1), index.find("* B II III", 4, 6));
+        assertSame(rotors.get(2), index.find("BETA", 0, 4));
+        assertSame(rotors.get(2), index.find("beta", 0, 4));
+        assertSame(rotors.get(3), index.find("\u00c9T\u00c9", 0, 3));
+        assertSame(rotors.get(4), index.find("x", 0, 0));
+        assertNull(index.find("III", 0, 3));
+        assertNull(index.find("Bet", 0, 3));
+        assertNull(index.find("gamma", 0, 5));
+    }
+
+    @Test
+    public void checkLastOfSameName() {
+        Rotor first = rotor("beta"), last = rotor("BETA");
+        RotorIndex index =
+            new RotorIndex(new LinkedHashSet<>(List.of(first, last)));
+        assertSame(last, index.find("Beta", 0, 4));
+    }
+
+    @Test
+    public void checkMany() {
+        List<Rotor> rotors = new ArrayList<>();
+        for (int k = 0; k < 100000; k += 1) {
+            rotors.add(rotor("R" + k));
+        }
+        RotorIndex index = new RotorIndex(rotors);
+        for (int k = 0; k < rotors.size(); k += 1) {
+            String name = "r" + k;
+            assertSame(rotors.get(k), index.find(name, 0, name.length()));
+        }
+        assertNull(index.find("R100000", 0, 7));
+    }
+}
@@ -0,0 +1,233 @@
+package enigma;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+import static enigma.EnigmaException.*;
+
+/** An Enigma service on a local socket.  The server reads a
+ *  configuration once, and then serves any number of connections, each a
+ *  session with its own machine, whose rotors keep their positions from
+ *  one request to the next.
+ *
+ *  The protocol is framed by lines of UTF-8 text.  Each request is a line
+ *  of input to Main: a setting line ("* " followed by rotors, settings,
+ *  and plugboard), which sets up the session's machine, or a message
+ *  line, which it converts.  Each request gets one reply line: "+"
+ *  followed by the converted message in groups of five (as Main writes
+ *  it), or by nothing for a setting line; or "-" followed by a
+ *  description of an error, after which the session continues (though
+ *  after a bad setting line, messages are refused until the next good
+ *  one).  Replies are flushed whenever the server has read all the
+ *  requests a client has sent, so that a client may send many requests
+ *  before it reads their replies.
+ *
+ *  Each session runs on a thread of its own: a virtual thread where the
+ *  JVM has them (Java 21 and later), and otherwise a platform thread with
+ *  a small stack.
+ *  @author Won Shil Park
+ */
+public final class Server {
+
+    /** Serve the configuration named by ARGS[0] on a loopback port until
+     *  killed, reporting the port on the standard output.  Exits with
+     *  code 1 after an error.
+     *  Options are arguments starting with "--", and may appear anywhere:
+     *    --port=N        Listen on port N (default: 0, for any free
+     *                    port). */
+    public static void main(String... args) {
+        try {
+            int port = 0;
+            ArrayList<String> files = new ArrayList<>();
+            for (String arg : args) {
+                if (Options.name(arg).equals("--port")) {
+                    port = Options.intValue(arg, Options.requiredValue(arg),
+                                            0, MAX_PORT);
+                } else if (arg.startsWith("--")) {
+                    throw error("unknown option %s", arg);
+                } else {
+                    files.add(arg);
+                }
+            }
+            if (files.size() != 1) {
+                throw error("need a configuration file");
+            }
+            Server server = new Server(Main.readConfig(files.get(0)), port);
+            System.out.printf("listening on %s:%d%n",
+                              InetAddress.getLoopbackAddress()
+                              .getHostAddress(), server.port());
+            System.out.flush();
+            server.serve();
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** A server of sessions with copies of MACHINE, which has no rotors
+     *  inserted, listening on loopback port PORT (any free port if 0). */
+    Server(Machine machine, int port) {
+        _machine = machine;
+        try {
+            _listener = new ServerSocket(port, BACKLOG,
+                                         InetAddress.getLoopbackAddress());
+        } catch (IOException excp) {
+            throw error("could not listen on port %d: %s", port,
+                        excp.getMessage());
+        }
+        _sessions = newSessionExecutor();
+    }
+
+    /** Return the port on which I listen. */
+    int port() {
+        return _listener.getLocalPort();
+    }
+
+    /** Return the number of sessions now open. */
+    int sessions() {
+        return _open.size();
+    }
+
+    /** Accept connections, starting a session for each, until I am
+     *  closed. */
+    void serve() {
+        while (true) {
+            Socket socket;
+            try {
+                socket = _listener.accept();
+            } catch (IOException excp) {
+                if (_listener.isClosed()) {
+                    return;
+                }
+                continue;
+            }
+            _open.add(socket);
+            try {
+                _sessions.execute(() -> session(socket));
+            } catch (RejectedExecutionException excp) {
+                close(socket);
+            }
+        }
+    }
+
+    /** Stop listening, and end all sessions. */
+    void close() {
+        try {
+            _listener.close();
+        } catch (IOException excp) {
+            /* Already closed. */
+        }
+        _sessions.shutdown();
+        for (Socket socket : _open) {
+            close(socket);
+        }
+    }
+
+    /** Serve the requests that arrive on SOCKET, with a machine of its
+     *  own, until the client closes it. */
+    private void session(Socket socket) {
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                 socket.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(
+                 socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            socket.setTcpNoDelay(true);
+            Machine m = _machine.copy();
+            boolean configured = false;
+            for (String line = in.readLine(); line != null;
+                 line = in.readLine()) {
+                try {
+                    if (line.startsWith("*")) {
+                        configured = false;
+                        if (!line.startsWith("* ")) {
+                            throw error("bad setting line");
+                        }
+                        Main.configure(m, line, 2);
+                        configured = true;
+                        out.write('+');
+                    } else if (!configured) {
+                        throw error("Message can't be converted.");
+                    } else {
+                        out.write('+');
+                        out.write(Main.groupMessageLine(m.convert(line)));
+                    }
+                } catch (EnigmaException excp) {
+                    out.write('-');
+                    out.write(excp.getMessage());
+                } catch (RuntimeException excp) {
+                    configured = false;
+                    out.write("-malformed request");
+                }
+                out.write('\n');
+                if (!in.ready()) {
+                    out.flush();
+                }
+            }
+        } catch (IOException excp) {
+            /* The client has gone. */
+        } finally {
+            close(socket);
+        }
+    }
+
+    /** Close SOCKET, and forget it. */
+    private void close(Socket socket) {
+        _open.remove(socket);
+        try {
+            socket.close();
+        } catch (IOException excp) {
+            /* Already closed. */
+        }
+    }
+
+    /** Return an executor that runs each task on a new virtual thread, if
+     *  this JVM has them, and otherwise on a cached daemon platform thread
+     *  with a small stack. */
+    static ExecutorService newSessionExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException
+                 | InvocationTargetException excp) {
+            ThreadFactory threads = r -> {
+                Thread t = new Thread(null, r, "enigma-session",
+                                      SESSION_STACK);
+                t.setDaemon(true);
+                return t;
+            };
+            return Executors.newCachedThreadPool(threads);
+        }
+    }
+
+    /** Largest port number. */
+    private static final int MAX_PORT = 65535;
+    /** Length of the queue of connections not yet accepted. */
+    private static final int BACKLOG = 4096;
+    /** Stack size of platform threads for sessions. */
+    private static final long SESSION_STACK = 256 << 10;
+
+    /** The machine copied by each session. */
+    private final Machine _machine;
+    /** Socket on which I accept connections. */
+    private final ServerSocket _listener;
+    /** Runs my sessions. */
+    private final ExecutorService _sessions;
+    /** Sockets of open sessions. */
+    private final Set<Socket> _open = ConcurrentHashMap.newKeySet();
+}
@@ -0,0 +1,177 @@
+package enigma;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static enigma.TestUtils.UPPER;
+
+/** The suite of all JUnit tests for the Server and Client classes.
+ *  @author Won Shil Park
+ */
+public class ServerTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(20);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** A setting line for BombeTest.shortNaval(). */
+    private static final String SETTING = "* B III I V QDV (HQ) (EX) (IP)";
+
+    /** The server under test. */
+    private Server _server;
+    /** The thread serving it. */
+    private Thread _serving;
+
+    /** Start a server of BombeTest.shortNaval() on any free port. */
+    @Before
+    public void startServer() {
+        _server = new Server(BombeTest.shortNaval(), 0);
+        _serving = new Thread(_server::serve);
+        _serving.start();
+    }
+
+    /** Stop the server. */
+    @After
+    public void stopServer() throws InterruptedException {
+        _server.close();
+        _serving.join();
+    }
+
+    /** Return a machine set as SETTING describes. */
+    private static Machine local(String setting) {
+        Machine m = BombeTest.shortNaval();
+        Main.configure(m, setting.substring(2));
+        return m;
+    }
+
+    /** Return the reply the server should give to MSG when its machine is
+     *  in the state of M, advancing M. */
+    private static String expected(Machine m, String msg) {
+        return Main.groupMessageLine(m.convert(msg));
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkSession() {
+        Client client = new Client(_server.port());
+        try {
+            Machine m = local(SETTING);
+            assertEquals("", client.request(SETTING));
+            assertEquals(expected(m, "HELLO WORLD"),
+                         client.request("HELLO WORLD"));
+            assertEquals(expected(m, "again, 1 2 3"),
+                         client.request("again, 1 2 3"));
+            assertEquals(expected(m, ""), client.request(""));
+            m = local(SETTING);
+            client.send(SETTING);
+            client.send("FROM THE START");
+            client.send("AND ON");
+            client.flush();
+            assertEquals("", client.receive());
+            assertEquals(expected(m, "FROM THE START"), client.receive());
+            assertEquals(expected(m, "AND ON"), client.receive());
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void checkIndependentSessions() {
+        String other = "* B I II IV AAZ";
+        Client a = new Client(_server.port()), b = new Client(_server.port());
+        try {
+            Machine ma = local(SETTING), mb = local(other);
+            a.request(SETTING);
+            b.request(other);
+            for (int k = 0; k < 10; k += 1) {
+                assertEquals(expected(ma, "ABCDE"), a.request("ABCDE"));
+                assertEquals(expected(mb, "ABCDE"), b.request("ABCDE"));
+            }
+        } finally {
+            a.close();
+            b.close();
+        }
+    }
+
+    @Test
+    public void checkErrors() {
+        Client client = new Client(_server.port());
+        try {
+            try {
+                client.request("TOO SOON");
+                fail("message converted before a setting line");
+            } catch (EnigmaException excp) {
+                assertEquals("Message can't be converted.",
+                             excp.getMessage());
+            }
+            try {
+                client.request("* B III I NOSUCH QDV");
+                fail("unknown rotor accepted");
+            } catch (EnigmaException excp) {
+                /* Expected. */
+            }
+            try {
+                client.request("HELLO");
+                fail("message converted after a bad setting line");
+            } catch (EnigmaException excp) {
+                /* Expected. */
+            }
+            try {
+                client.request("*");
+                fail("empty setting line accepted");
+            } catch (EnigmaException excp) {
+                /* Expected. */
+            }
+            Machine m = local(SETTING);
+            client.request(SETTING);
+            assertEquals(expected(m, "HELLO"), client.request("HELLO"));
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void checkManySessions() throws Exception {
+        int sessions = 200;
+        ExecutorService pool = Server.newSessionExecutor();
+        ArrayList<Future<Boolean>> results = new ArrayList<>();
+        try {
+            for (int k = 0; k < sessions; k += 1) {
+                String setting = SETTING.replace("QDV",
+                    "" + UPPER.toChar(k % 26) + UPPER.toChar(k / 26) + "A");
+                results.add(pool.submit(() -> {
+                    Client client = new Client(_server.port());
+                    try {
+                        Machine m = local(setting);
+                        client.request(setting);
+                        for (int i = 0; i < 20; i += 1) {
+                            if (!client.request("ATTACK AT DAWN")
+                                .equals(expected(m, "ATTACK AT DAWN"))) {
+                                return false;
+                            }
+                        }
+                        return true;
+                    } finally {
+                        client.close();
+                    }
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package enigma;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** Counters and latency histograms for the phases of a run of Main:
+ *  reading the configuration, setting up the machine for each setting
+ *  line, converting each message line, and writing output.  A Stats may
+ *  be updated by several threads at once.  Main keeps one only when
+ *  asked to (with --stats), and never inside Machine.convert, so that a
+ *  run without one does no extra work per character.
+ *
+ *  Independently, each phase is reported to Java Flight Recorder by the
+ *  events declared here (enigma.Configuration, enigma.Setup,
+ *  enigma.Conversion, and enigma.Output), which cost next to nothing
+ *  unless a recording enables them.
+ *  @author Won Shil Park
+ */
+final class Stats {
+
+    /** Record the reading of a configuration of ROTORS rotors, which took
+     *  NANOS nanoseconds. */
+    void configured(int rotors, long nanos) {
+        _rotors.add(rotors);
+        _config.add(nanos);
+    }
+
+    /** Record the setting up of a machine for one setting line, which
+     *  took NANOS nanoseconds. */
+    void setUp(long nanos) {
+        _setup.add(nanos);
+    }
+
+    /** Record the conversion of a message line of CHARS characters, which
+     *  took NANOS nanoseconds. */
+    void converted(long chars, long nanos) {
+        _chars.add(chars);
+        _convert.add(nanos);
+    }
+
+    /** Record the writing of BYTES bytes of output, which took NANOS
+     *  nanoseconds. */
+    void wrote(long bytes, long nanos) {
+        _bytes.add(bytes);
+        _output.add(nanos);
+    }
+
+    /** Return the number of characters converted so far. */
+    long chars() {
+        return _chars.sum();
+    }
+
+    /** Return the number of setting lines (blocks) processed so far. */
+    long blocks() {
+        return _setup.count();
+    }
+
+    /** Return the number of message lines converted so far. */
+    long messages() {
+        return _convert.count();
+    }
+
+    /** Return the number of bytes written so far. */
+    long bytes() {
+        return _bytes.sum();
+    }
+
+    /** Print a summary of my counts and latencies on OUT. */
+    void print(PrintStream out) {
+        out.printf("rotors configured %d, blocks %d, messages %d,"
+                   + " characters converted %d, bytes written %d%n",
+                   _rotors.sum(), blocks(), messages(), chars(), bytes());
+        Histogram.printHeader(out, "phase");
+        _config.print(out, "configuration");
+        _setup.print(out, "setup");
+        _convert.print(out, "conversion");
+        _output.print(out, "output");
+        out.flush();
+    }
+
+    /** A histogram of nanosecond latencies, kept in buckets that split
+     *  each power of two into SUB_BUCKETS equal parts, so that reported
+     *  quantiles are within 1/SUB_BUCKETS of the true ones. */
+    static final class Histogram {
+
+        /** Record a latency of NANOS nanoseconds (0 if negative). */
+        void add(long nanos) {
+            nanos = Math.max(0, nanos);
+            _counts.incrementAndGet(bucket(nanos));
+            _count.increment();
+            _total.add(nanos);
+            _max.accumulate(nanos);
+        }
+
+        /** Return the number of latencies recorded. */
+        long count() {
+            return _count.sum();
+        }
+
+        /** Return the sum of the latencies recorded. */
+        long total() {
+            return _total.sum();
+        }
+
+        /** Return the largest latency recorded, or 0 if none. */
+        long max() {
+            return _max.get();
+        }
+
+        /** Return an upper bound on the latency below which lies the
+         *  fraction Q of the recorded latencies, or 0 if there are none:
+         *  the largest latency in the bucket where that quantile falls,
+         *  but no more than max(). */
+        long quantile(double q) {
+            long count = 0;
+            for (int k = 0; k < _counts.length(); k += 1) {
+                count += _counts.get(k);
+            }
+            long rank = (long) Math.ceil(q * count);
+            long seen = 0;
+            for (int k = 0; k < _counts.length(); k += 1) {
+                seen += _counts.get(k);
+                if (seen >= rank && seen > 0) {
+                    return Math.min(max(), limit(k));
+                }
+            }
+            return 0;
+        }
+
+        /** Print on OUT the headings of the rows printed by print, with
+         *  LABEL over their labels. */
+        static void printHeader(PrintStream out, String label) {
+            out.printf("%-14s %10s %12s %10s %10s %10s %10s%n", label,
+                       "count", "total ms", "mean us", "p50 us", "p99 us",
+                       "max us");
+        }
+
+        /** Print my statistics on OUT in a row labelled PHASE. */
+        void print(PrintStream out, String phase) {
+            long count = count();
+            out.printf("%-14s %10d %12.3f %10.1f %10.1f %10.1f %10.1f%n",
+                       phase, count, total() / 1e6,
+                       count == 0 ? 0.0 : total() / 1e3 / count,
+                       quantile(0.5) / 1e3, quantile(0.99) / 1e3,
+                       max() / 1e3);
+        }
+
+        /** Return the bucket holding latency NANOS >= 0. */
+        static int bucket(long nanos) {
+            if (nanos < SUB_BUCKETS) {
+                return (int) nanos;
+            }
+            int exp = 63 - Long.numberOfLeadingZeros(nanos);
+            int sub = (int) (nanos >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1);
+            return (exp - SUB_BITS + 1) * SUB_BUCKETS + sub;
+        }
+
+        /** Return the largest latency in bucket K. */
+        static long limit(int k) {
+            if (k < SUB_BUCKETS) {
+                return k;
+            }
+            int exp = k / SUB_BUCKETS + SUB_BITS - 1;
+            long sub = k % SUB_BUCKETS;
+            return ((SUB_BUCKETS + sub + 1) << (exp - SUB_BITS)) - 1;
+        }
+
+        /** Bits of each latency below its leading one that choose its
+         *  bucket. */
+        private static final int SUB_BITS = 3;
+        /** Buckets per power of two. */
+        private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+        /** Count of latencies in each bucket. */
+        private final AtomicLongArray _counts =
+            new AtomicLongArray(bucket(Long.MAX_VALUE) + 1);
+        /** Number and sum of the latencies. */
+        private final LongAdder _count = new LongAdder(),
+            _total = new LongAdder();
+        /** Largest latency. */
+        private final LongAccumulator _max =
+            new LongAccumulator(Math::max, 0);
+    }
+
+    /** Flight Recorder event for reading a configuration. */
+    @Name("enigma.Configuration")
+    @Label("Configuration")
+    @Category("Enigma")
+    static final class ConfigEvent extends Event {
+        /** Number of rotors configured. */
+        @Label("Rotors")
+        int rotors;
+    }
+
+    /** Flight Recorder event for setting up a machine. */
+    @Name("enigma.Setup")
+    @Label("Setup")
+    @Category("Enigma")
+    static final class SetupEvent extends Event {
+        /** The setting line, without its leading "* ". */
+        @Label("Setting")
+        String setting;
+    }
+
+    /** Flight Recorder event for converting a message line. */
+    @Name("enigma.Conversion")
+    @Label("Conversion")
+    @Category("Enigma")
+    static final class ConvertEvent extends Event {
+        /** Number of characters in the line. */
+        @Label("Characters")
+        long chars;
+    }
+
+    /** Flight Recorder event for writing output. */
+    @Name("enigma.Output")
+    @Label("Output")
+    @Category("Enigma")
+    static final class OutputEvent extends Event {
+        /** Number of bytes written. */
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+    }
+
+    /** Number of rotors configured. */
+    private final LongAdder _rotors = new LongAdder();
+    /** Number of characters converted, and of bytes written. */
+    private final LongAdder _chars = new LongAdder(),
+        _bytes = new LongAdder();
+    /** Latencies of each phase. */
+    private final Histogram _config = new Histogram(),
+        _setup = new Histogram(), _convert = new Histogram(),
+        _output = new Histogram();
+}
@@ -0,0 +1,92 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+/** The suite of all JUnit tests for the Stats class.
+ *  @author Won Shil Park
+ */
+public class StatsTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkBuckets() {
+        long[] samples = { 0, 1, 7, 8, 9, 15, 16, 17, 18, 1000, 123456789,
+                           Long.MAX_VALUE };
+        for (long nanos : samples) {
+            int k = Stats.Histogram.bucket(nanos);
+            assertTrue(nanos <= Stats.Histogram.limit(k));
+            assertTrue(k == 0 || nanos > Stats.Histogram.limit(k - 1));
+            assertTrue(Stats.Histogram.limit(k) - nanos <= nanos / 8);
+        }
+        for (int k = 1; k <= Stats.Histogram.bucket(Long.MAX_VALUE); k += 1) {
+            assertTrue(Stats.Histogram.limit(k)
+                       > Stats.Histogram.limit(k - 1));
+        }
+    }
+
+    @Test
+    public void checkQuantiles() {
+        Stats.Histogram h = new Stats.Histogram();
+        assertEquals(0, h.quantile(0.5));
+        for (long nanos = 1; nanos <= 1000; nanos += 1) {
+            h.add(nanos);
+        }
+        assertEquals(1000, h.count());
+        assertEquals(500500, h.total());
+        assertEquals(1000, h.max());
+        long median = h.quantile(0.5), p99 = h.quantile(0.99);
+        assertTrue(median >= 500 && median <= 500 + 500 / 8);
+        assertTrue(p99 >= 990 && p99 <= 1000);
+        assertEquals(1000, h.quantile(1.0));
+    }
+
+    @Test
+    public void checkCounts() {
+        Stats stats = new Stats();
+        stats.configured(12, 5000);
+        stats.setUp(100);
+        stats.converted(40, 200);
+        stats.converted(2, 20);
+        stats.wrote(1024, 300);
+        assertEquals(1, stats.blocks());
+        assertEquals(2, stats.messages());
+        assertEquals(42, stats.chars());
+        assertEquals(1024, stats.bytes());
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        stats.print(new PrintStream(text, true));
+        String summary = text.toString();
+        assertTrue(summary.contains("rotors configured 12, blocks 1,"
+                                    + " messages 2, characters converted"
+                                    + " 42, bytes written 1024"));
+        assertTrue(summary.contains("conversion"));
+    }
+
+    @Test
+    public void checkOutput() {
+        Stats stats = new Stats();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GroupWriter out = new GroupWriter(Channels.newChannel(bytes),
+                                          StandardCharsets.UTF_8);
+        out.setStats(stats);
+        out.writeLine("HELLO WORLD");
+        out.flush();
+        out.flush();
+        assertEquals(bytes.size(), stats.bytes());
+        out.writeLine("AGAIN");
+        out.flush();
+        assertEquals(bytes.size(), stats.bytes());
+    }
+}
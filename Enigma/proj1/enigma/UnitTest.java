@@ -10,7 +10,26 @@ public class UnitTest {
     /** Run the JUnit tests in this package. Add xxxTest.class entries to
      *  the arguments of runClasses to run other JUnit tests. */
     public static void main(String[] ignored) {
-        System.exit(textui.runClasses(PermutationTest.class,
+        System.exit(textui.runClasses(AlphabetTest.class,
+                                      BatchMachineTest.class,
+                                      BombeTest.class,
+                                      CompiledConfigTest.class,
+                                      ConfigReaderTest.class,
+                                      DaemonTest.class,
+                                      GroupWriterTest.class,
+                                      JumpAheadTest.class,
+                                      KeySearchTest.class,
+                                      KeystreamTest.class,
+                                      MainTest.class,
+                                      MachineTest.class,
+                                      MappedInputTest.class,
+                                      OptionsTest.class,
+                                      ParallelConverterTest.class,
+                                      PermutationTest.class,
+                                      QuadgramsTest.class,
+                                      RotorIndexTest.class,
+                                      ServerTest.class,
+                                      StatsTest.class,
                                       MovingRotorTest.class));
     }
 
@@ -0,0 +1,137 @@
+package enigma;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/** A BatchMachine that does each step of a conversion for as many lanes
+ *  at once as a vector register of ints holds, looking up the rotor and
+ *  plugboard tables of all of them with one gather.  Lanes left over
+ *  after the last full vector are done by BatchMachine.  It is compiled
+ *  and run with the incubating module jdk.incubator.vector, and made by
+ *  BatchMachine.of when that module is present.
+ *  @author Won Shil Park
+ */
+final class VectorBatchMachine extends BatchMachine {
+
+    /** A batch whose lanes start as copies of the configured MACHINES (see
+     *  BatchMachine(MACHINES)). */
+    VectorBatchMachine(Machine... machines) {
+        super(machines);
+        _atNotch = new int[_slots][SPECIES.length()];
+    }
+
+    @Override
+    void convert(int[] in, int[] out) {
+        int bound = SPECIES.loopBound(_lanes);
+        for (int lane = 0; lane < bound; lane += SPECIES.length()) {
+            convertVector(in, out, lane);
+        }
+        if (bound < _lanes) {
+            convert(in, out, bound, _lanes);
+        }
+    }
+
+    /** Do the work of convert(IN, OUT) for the lanes of one vector,
+     *  starting at LANE.  No vector is passed to or returned from a
+     *  method, since one that the compiler did not inline would box
+     *  it; intermediate results go through arrays of ints instead. */
+    private void convertVector(int[] in, int[] out, int lane) {
+        final int last = _slots - 1;
+        for (int i = _firstMoving; i <= last; i += 1) {
+            findNotch(in, i, lane);
+        }
+        for (int i = _firstMoving; i <= last; i += 1) {
+            advance(in, i, lane);
+        }
+        enter(in, lane);
+        for (int j = last; j >= 0; j -= 1) {
+            through(_forward[j], _posn[j], lane);
+        }
+        for (int j = 1; j <= last; j += 1) {
+            through(_backward[j], _posn[j], lane);
+        }
+        leave(in, out, lane);
+    }
+
+    /** Set _atNotch[I] for the lanes of one vector starting at LANE,
+     *  whose inputs are in IN. */
+    private void findNotch(int[] in, int i, int lane) {
+        IntVector index = IntVector.fromArray(SPECIES, _notches[i], lane)
+            .add(IntVector.fromArray(SPECIES, _posn[i], lane));
+        index.intoArray(_index, 0);
+        IntVector.fromArray(SPECIES, _pool, 0, _index, 0)
+            .blend(0, IntVector.fromArray(SPECIES, in, lane)
+                   .compare(VectorOperators.LT, 0))
+            .intoArray(_atNotch[i], 0);
+    }
+
+    /** Advance the rotors in slot I of the lanes of one vector starting
+     *  at LANE, whose inputs are in IN, as _atNotch directs. */
+    private void advance(int[] in, int i, int lane) {
+        IntVector move;
+        if (i == _slots - 1) {
+            move = IntVector.broadcast(SPECIES, 1)
+                .blend(0, IntVector.fromArray(SPECIES, in, lane)
+                       .compare(VectorOperators.LT, 0));
+        } else {
+            move = IntVector.fromArray(SPECIES, _atNotch[i + 1], 0);
+            if (i > _firstMoving) {
+                move = move.or(IntVector.fromArray(SPECIES, _atNotch[i], 0));
+            }
+        }
+        IntVector p = IntVector.fromArray(SPECIES, _posn[i], lane).add(move);
+        p.blend(0, p.compare(VectorOperators.EQ, _size))
+            .intoArray(_posn[i], lane);
+    }
+
+    /** Set _c to the inputs IN of the lanes of one vector starting at
+     *  LANE after their plugboards, treating missing inputs as 0. */
+    private void enter(int[] in, int lane) {
+        IntVector.fromArray(SPECIES, _plug, lane)
+            .add(IntVector.fromArray(SPECIES, in, lane).max(0))
+            .intoArray(_index, 0);
+        IntVector.fromArray(SPECIES, _pool, 0, _index, 0).intoArray(_c, 0);
+    }
+
+    /** Pass _c through the tables at positions BASE[lane] in the pool, at
+     *  settings POSN[lane], for the lanes of one vector starting at
+     *  LANE. */
+    private void through(int[] base, int[] posn, int lane) {
+        IntVector p = IntVector.fromArray(SPECIES, posn, lane);
+        IntVector k = IntVector.fromArray(SPECIES, _c, 0).add(p);
+        k.sub(_size, k.compare(VectorOperators.GE, _size))
+            .add(IntVector.fromArray(SPECIES, base, lane))
+            .intoArray(_index, 0);
+        IntVector e = IntVector.fromArray(SPECIES, _pool, 0, _index, 0)
+            .sub(p);
+        e.add(_size, e.compare(VectorOperators.LT, 0)).intoArray(_c, 0);
+    }
+
+    /** Store _c, passed back through their plugboards, in OUT for the
+     *  lanes of one vector starting at LANE whose inputs IN are not
+     *  negative.  A masked store would box its vectors on JDK 17, so the
+     *  others are stored as they were. */
+    private void leave(int[] in, int[] out, int lane) {
+        IntVector.fromArray(SPECIES, _plug, lane)
+            .add(IntVector.fromArray(SPECIES, _c, 0)).intoArray(_index, 0);
+        IntVector.fromArray(SPECIES, _pool, 0, _index, 0)
+            .blend(IntVector.fromArray(SPECIES, out, lane),
+                   IntVector.fromArray(SPECIES, in, lane)
+                   .compare(VectorOperators.LT, 0))
+            .intoArray(out, lane);
+    }
+
+    /** Shape of the vectors used. */
+    private static final VectorSpecies<Integer> SPECIES =
+        IntVector.SPECIES_PREFERRED;
+
+    /** _atNotch[i][k] is 1 iff the rotor in slot I of lane K of the
+     *  current vector is at a notch as the key press begins. */
+    private final int[][] _atNotch;
+    /** Indices of a gather. */
+    private final int[] _index = new int[SPECIES.length()];
+    /** The characters being converted in the lanes of the current
+     *  vector. */
+    private final int[] _c = new int[SPECIES.length()];
+}
@@ -0,0 +1,57 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import static enigma.BatchMachineTest.randomMachine;
+import static enigma.BatchMachineTest.randomMessage;
+
+/** The suite of all JUnit tests for the VectorBatchMachine class.
+ *  @author Won Shil Park
+ */
+public class VectorBatchMachineTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkChosen() {
+        assertTrue(BatchMachine.vectorized());
+        Random random = new Random(61);
+        assertTrue(BatchMachine.of(randomMachine(random))
+                   instanceof VectorBatchMachine);
+    }
+
+    @Test
+    public void checkAgainstMachines() {
+        Random random = new Random(61);
+        for (int trial = 0; trial < 20; trial += 1) {
+            int lanes = 1 + random.nextInt(100);
+            Machine[] machines = new Machine[lanes];
+            String[] msgs = new String[lanes];
+            for (int lane = 0; lane < lanes; lane += 1) {
+                machines[lane] = randomMachine(random);
+                msgs[lane] = randomMessage(random, 2000);
+            }
+            BatchMachine batch = new VectorBatchMachine(machines);
+            String[] first = batch.convert(msgs);
+            String[] second = batch.convert(msgs);
+            for (int lane = 0; lane < lanes; lane += 1) {
+                assertEquals(machines[lane].convert(msgs[lane]), first[lane]);
+                assertEquals(machines[lane].convert(msgs[lane]),
+                             second[lane]);
+                for (int k = 1; k < machines[lane].numRotors(); k += 1) {
+                    assertEquals(machines[lane].setting(k),
+                                 batch.setting(lane, k));
+                }
+            }
+        }
+    }
+}